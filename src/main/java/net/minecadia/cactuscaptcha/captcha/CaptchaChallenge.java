@@ -1,45 +1,40 @@
 package net.minecadia.cactuscaptcha.captcha;
 
-import net.minecadia.cactuscaptcha.CactusCaptcha;
 import net.minecadia.cactuscaptcha.challenge.CaptchaQuestion;
+import net.minecadia.cactuscaptcha.challenge.ChallengeRing;
 import net.minecadia.cactuscaptcha.challenge.QuestionPool;
 import org.bukkit.entity.Player;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.UUID;
 
 /**
  * Represents a single text-logic captcha challenge for a player.
- * Contains the question, randomized choice positions, and tracks the correct slot.
+ * The question and the order of its choices are one packed int from a ChallengeRing,
+ * so the choice in a slot and the correct slot are table lookups.
  */
 public class CaptchaChallenge {
 
-    private final CactusCaptcha plugin;
     private final UUID playerId;
+    private final int packed;
     private final CaptchaQuestion question;
-    private final List<String> shuffledChoices;
     private final int correctSlot;
+    private final int timeoutSeconds;
     private final long startTime;
 
     /**
      * Creates a new text-logic captcha challenge for the specified player.
      * 
-     * @param plugin The plugin instance
      * @param player The player who will receive this challenge
+     * @param packed The packed question and choice order, from ChallengeRing.pop()
+     * @param timeoutSeconds Seconds the player has to answer
      */
-    public CaptchaChallenge(CactusCaptcha plugin, Player player) {
-        this.plugin = plugin;
+    public CaptchaChallenge(Player player, int packed, int timeoutSeconds) {
         this.playerId = player.getUniqueId();
-        this.question = QuestionPool.getRandomQuestion();
+        this.packed = packed;
+        this.question = QuestionPool.getQuestion(ChallengeRing.questionId(packed));
+        this.correctSlot = ChallengeRing.slotOf(packed, question.getCorrectIndex());
+        this.timeoutSeconds = timeoutSeconds;
         this.startTime = System.currentTimeMillis();
-        
-        // Create a shuffled copy of choices and track where the correct answer ends up
-        this.shuffledChoices = new ArrayList<>(question.getChoices());
-        String correctAnswer = question.getCorrectAnswer();
-        Collections.shuffle(shuffledChoices);
-        this.correctSlot = shuffledChoices.indexOf(correctAnswer);
     }
 
     /**
@@ -61,13 +56,14 @@ public class CaptchaChallenge {
     }
 
     /**
-     * Gets the shuffled choices for display in the GUI.
+     * Gets the choice shown in the given GUI slot.
      * The choices are randomized so the correct answer isn't always in the same position.
      * 
-     * @return List of 4 shuffled answer choices
+     * @param slot The slot index (0-3)
+     * @return The answer choice in that slot
      */
-    public List<String> getShuffledChoices() {
-        return new ArrayList<>(shuffledChoices);
+    public String getChoice(int slot) {
+        return question.getChoices().get(ChallengeRing.choiceAt(packed, slot));
     }
 
     /**
@@ -107,13 +103,21 @@ public class CaptchaChallenge {
         return startTime;
     }
 
+    /**
+     * Gets the packed question and choice order.
+     * 
+     * @return The packed challenge
+     */
+    public int getPacked() {
+        return packed;
+    }
+
     /**
      * Checks if this challenge has timed out based on the configured timeout.
      * 
      * @return true if the challenge has timed out, false otherwise
      */
     public boolean hasTimedOut() {
-        int timeoutSeconds = plugin.getConfig().getInt("captchaTimeoutSeconds", 3);
         long timeoutMillis = timeoutSeconds * 1000L;
         return (System.currentTimeMillis() - startTime) > timeoutMillis;
     }
@@ -124,7 +128,6 @@ public class CaptchaChallenge {
      * @return Remaining seconds, or 0 if already timed out
      */
     public int getRemainingSeconds() {
-        int timeoutSeconds = plugin.getConfig().getInt("captchaTimeoutSeconds", 3);
         long elapsed = (System.currentTimeMillis() - startTime) / 1000L;
         return Math.max(0, timeoutSeconds - (int) elapsed);
     }
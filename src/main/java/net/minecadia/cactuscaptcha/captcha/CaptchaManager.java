@@ -1,8 +1,13 @@
 package net.minecadia.cactuscaptcha.captcha;
 
 import net.minecadia.cactuscaptcha.CactusCaptcha;
+import net.minecadia.cactuscaptcha.challenge.ChallengeRing;
+import net.minecadia.cactuscaptcha.challenge.QuestionPool;
+import net.minecadia.cactuscaptcha.config.CaptchaSettings;
 import net.minecadia.cactuscaptcha.gui.CaptchaGUI;
 import net.minecadia.cactuscaptcha.manager.WatchManager;
+import net.minecadia.cactuscaptcha.util.PlayerStateRegistry;
+import net.minecadia.cactuscaptcha.util.TimingWheel;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -16,36 +21,43 @@ import org.bukkit.scheduler.BukkitTask;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class CaptchaManager {
 
+    private static final int CHALLENGE_RING_SIZE = 256;
+    private static final long PASS_GRACE_SECONDS = 300L; // No new captcha this long after a pass
+
     private static CaptchaManager instance;
     private final CactusCaptcha plugin;
-    private final Map<UUID, CaptchaChallenge> activeChallenges;
-    private final Map<UUID, Location> pendingPlacements;
-    private final Map<UUID, Long> lastCaptchaTime;
-    
-    // Behavioral detection tracking
-    private final Map<UUID, Long> captchaStartTimes;
-    private final Map<UUID, List<Integer>> recentFailedSlots;
-    private final Map<UUID, List<Long>> solveTimes;
+    // One session per player holding all of their captcha state; released on quit
+    private final Map<UUID, CaptchaSession> sessions;
+    // Epoch seconds of each player's last pass; kept past quit so relogging doesn't skip the grace period
+    private final Map<UUID, Long> lastPassTimes;
+
+    // Captcha countdowns: one wheel advanced once per tick replaces a timer task per captcha.
+    // Main thread only.
+    private final TimingWheel<UUID> timeouts = new TimingWheel<>(64);
+    private final BukkitTask tickTask;
+
+    // Challenges drawn ahead of time; refilled off the main thread once half used
+    private final ChallengeRing challengeRing;
+    private final AtomicBoolean refilling = new AtomicBoolean();
 
     public CaptchaManager(CactusCaptcha plugin) {
         this.plugin = plugin;
-        this.activeChallenges = new ConcurrentHashMap<>();
-        this.pendingPlacements = new HashMap<>();
-        this.lastCaptchaTime = new ConcurrentHashMap<>();
+        this.sessions = new ConcurrentHashMap<>();
+        this.lastPassTimes = new ConcurrentHashMap<>();
+        this.tickTask = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        this.challengeRing = new ChallengeRing(CHALLENGE_RING_SIZE, QuestionPool.getQuestionCount());
+        challengeRing.fill();
         
-        // Initialize behavioral detection tracking
-        this.captchaStartTimes = new ConcurrentHashMap<>();
-        this.recentFailedSlots = new ConcurrentHashMap<>();
-        this.solveTimes = new ConcurrentHashMap<>();
+        PlayerStateRegistry registry = PlayerStateRegistry.get();
+        registry.register("captcha.sessions", this::releaseSession, sessions::size);
+        registry.registerRetained("captcha.lastPass", lastPassTimes, PASS_GRACE_SECONDS);
         
         instance = this;
     }
@@ -55,8 +67,24 @@ public class CaptchaManager {
     }
 
     public boolean shouldChallenge(Player player) {
-        long last = lastCaptchaTime.getOrDefault(player.getUniqueId(), 0L);
-        return (Instant.now().getEpochSecond() - last) >= 300;
+        long last = lastPassTimes.getOrDefault(player.getUniqueId(), 0L);
+        return (Instant.now().getEpochSecond() - last) >= PASS_GRACE_SECONDS;
+    }
+
+    /**
+     * Gets the player's session, creating it on first use.
+     */
+    private CaptchaSession session(UUID playerId) {
+        return sessions.computeIfAbsent(playerId, id -> new CaptchaSession());
+    }
+
+    /**
+     * Drops all captcha state for a player who left. Closes nothing; the player is gone.
+     * Called through PlayerStateRegistry on quit.
+     */
+    public void releaseSession(UUID playerId) {
+        sessions.remove(playerId);
+        timeouts.cancel(playerId);
     }
 
     public void startChallenge(Player player, Location cactusLocation) {
@@ -65,61 +93,96 @@ public class CaptchaManager {
 
     public void openCaptcha(Player player, Location cactusLocation) {
         UUID playerId = player.getUniqueId();
+        CaptchaSession session = session(playerId);
         
         // Close any existing captcha for this player
-        if (activeChallenges.containsKey(playerId)) {
+        if (session.challenge != null) {
             closeCaptcha(player, false);
         }
 
         // Store the pending placement location
-        pendingPlacements.put(playerId, cactusLocation);
+        session.pendingPlacement = cactusLocation;
 
         // Create new captcha challenge
-        CaptchaChallenge challenge = new CaptchaChallenge(plugin, player);
-        activeChallenges.put(playerId, challenge);
+        CaptchaSettings settings = CaptchaSettings.get();
+        CaptchaChallenge challenge = nextChallenge(player, settings);
+        session.challenge = challenge;
 
         // Start tracking solve time for behavioral detection
-        captchaStartTimes.put(playerId, System.currentTimeMillis());
+        session.captchaStartTime = System.currentTimeMillis();
 
         // Create and open GUI
         Inventory gui = CaptchaGUI.createCaptchaGUI(challenge);
         player.openInventory(gui);
 
-        // Start timeout timer
-        int timeoutSeconds = plugin.getConfig().getInt("captchaTimeoutSeconds", 3);
-        new BukkitRunnable() {
-            int timeLeft = timeoutSeconds;
-
-            @Override
-            public void run() {
-                if (!activeChallenges.containsKey(playerId)) {
-                    cancel();
-                    return;
-                }
+        // Start the countdown; reopening replaces the previous one instead of adding another
+        int timeoutSeconds = settings.getCaptchaTimeoutSeconds();
+        session.secondsLeft = timeoutSeconds;
+        showTimer(player, timeoutSeconds);
+        timeouts.schedule(playerId, 20L);
+    }
 
-                if (timeLeft <= 0) {
-                    // Timeout - send timeout message and mark as fail
-                    if (!plugin.getConfig().getBoolean("silentMode", false)) {
-                        player.sendMessage(plugin.getMessage("timeout"));
+    /**
+     * Pops a pre-generated challenge for the player and tops the ring up in the background
+     * once it is half empty.
+     */
+    private CaptchaChallenge nextChallenge(Player player, CaptchaSettings settings) {
+        CaptchaChallenge challenge = new CaptchaChallenge(player, challengeRing.pop(),
+                settings.getCaptchaTimeoutSeconds());
+        if (challengeRing.needsRefill() && refilling.compareAndSet(false, true)) {
+            new BukkitRunnable() {
+                @Override
+                public void run() {
+                    try {
+                        challengeRing.fill();
+                    } finally {
+                        refilling.set(false);
                     }
-                    closeCaptcha(player, false);
-                    cancel();
-                    return;
                 }
+            }.runTaskAsynchronously(plugin);
+        }
+        return challenge;
+    }
 
-                // Update timer display
-                if (player.getOpenInventory() != null) {
-                    CaptchaGUI.updateTimer(player.getOpenInventory().getTopInventory(), timeLeft);
-                }
-                timeLeft--;
+    /**
+     * Advances the countdown wheel by one tick. Only challenges whose second is up are touched.
+     */
+    private void tick() {
+        timeouts.advance(this::onSecondElapsed);
+    }
+
+    private void onSecondElapsed(UUID playerId) {
+        Player player = Bukkit.getPlayer(playerId);
+        CaptchaSession session = sessions.get(playerId);
+        if (player == null || session == null || session.challenge == null) {
+            return;
+        }
+
+        int left = --session.secondsLeft;
+
+        if (left <= 0) {
+            // Timeout - send timeout message and mark as fail
+            if (!CaptchaSettings.get().isSilentMode()) {
+                player.sendMessage(plugin.getMessage("timeout"));
             }
-        }.runTaskTimer(plugin, 0L, 20L); // Run every second
+            closeCaptcha(player, false);
+            return;
+        }
+
+        showTimer(player, left);
+        timeouts.schedule(playerId, 20L);
+    }
+
+    private void showTimer(Player player, int seconds) {
+        if (player.getOpenInventory() != null) {
+            CaptchaGUI.updateTimer(player.getOpenInventory().getTopInventory(), seconds);
+        }
     }
 
 
     public boolean handleGuiClick(Player player, int slot) {
-        UUID playerId = player.getUniqueId();
-        CaptchaChallenge challenge = activeChallenges.get(playerId);
+        CaptchaSession session = sessions.get(player.getUniqueId());
+        CaptchaChallenge challenge = session != null ? session.challenge : null;
         
         if (challenge == null) {
             return false;
@@ -130,7 +193,7 @@ public class CaptchaManager {
             WatchManager.notifyIfWatched(player, "Clicked honeytoken slot " + slot + " (potential automation)");
             plugin.getLogger().info("Player " + player.getName() + " clicked honeytoken slot " + slot);
             // Still allow the click to proceed as if it was a wrong answer
-            handleWrongAnswer(player);
+            handleWrongAnswer(player, session);
             return false;
         }
 
@@ -143,24 +206,24 @@ public class CaptchaManager {
         
         if (correct) {
             // Correct answer - calculate solve time and update behavioral stats
-            handleCorrectAnswer(player);
+            handleCorrectAnswer(player, session);
             return true;
         } else {
             // Wrong answer - track slot click repetition
-            trackFailedSlotClick(player, slot);
-            handleWrongAnswer(player);
+            trackFailedSlotClick(player, session, slot);
+            handleWrongAnswer(player, session);
             return false;
         }
     }
 
-    private void handleCorrectAnswer(Player player) {
+    private void handleCorrectAnswer(Player player, CaptchaSession session) {
         UUID playerId = player.getUniqueId();
         
         // Track solve time for behavioral detection
-        trackSolveTime(player);
+        trackSolveTime(player, session);
         
         // Record the timestamp of successful CAPTCHA completion
-        lastCaptchaTime.put(playerId, Instant.now().getEpochSecond());
+        lastPassTimes.put(playerId, Instant.now().getEpochSecond());
         
         // Increment passes in storage
         plugin.getStorageManager().incrementPasses(playerId);
@@ -177,7 +240,7 @@ public class CaptchaManager {
         // Note: No longer auto-placing blocks - let original placement event proceed
         
         // Send success message and sound
-        if (!plugin.getConfig().getBoolean("silentMode", false)) {
+        if (!CaptchaSettings.get().isSilentMode()) {
             player.sendMessage(plugin.getMessage("success"));
             player.playSound(player.getLocation(), org.bukkit.Sound.LEVEL_UP, 1.0f, 1.0f);
         }
@@ -186,7 +249,7 @@ public class CaptchaManager {
         closeCaptcha(player, true);
     }
 
-    private void handleWrongAnswer(Player player) {
+    private void handleWrongAnswer(Player player, CaptchaSession session) {
         UUID playerId = player.getUniqueId();
         
         // Increment fails in storage for overall statistics
@@ -196,7 +259,7 @@ public class CaptchaManager {
         plugin.getStorageManager().incrementCaptchaFails(playerId);
         
         // Send fail message
-        if (!plugin.getConfig().getBoolean("silentMode", false)) {
+        if (!CaptchaSettings.get().isSilentMode()) {
             player.sendMessage(plugin.getMessage("fail"));
         }
         
@@ -204,7 +267,8 @@ public class CaptchaManager {
         WatchManager.notifyIfWatched(player, "Failed CAPTCHA attempt");
         
         // Check if max tries reached for this CAPTCHA instance
-        int maxTries = plugin.getConfig().getInt("captcha.maxTries", 3);
+        CaptchaSettings settings = CaptchaSettings.get();
+        int maxTries = settings.getMaxTries();
         int currentFails = plugin.getStorageManager().getCaptchaFails(playerId);
         
         if (currentFails >= maxTries) {
@@ -214,15 +278,11 @@ public class CaptchaManager {
 
             // Calculate cooldown based on failure chain count
             int chain = plugin.getStorageManager().getFailChainCount(playerId) - 1;
-            java.util.List<Integer> punishments = plugin.getConfig().getIntegerList("captcha.punishmentCooldownsMinutes");
-            if (punishments.isEmpty()) {
-                punishments = java.util.Arrays.asList(3, 10, 60, 120); // fallback
-            }
-            int minutes = punishments.get(Math.min(chain, punishments.size() - 1));
+            int minutes = settings.getPunishmentMinutes(chain);
 
             // Set cooldown
             plugin.getStorageManager().setCooldownUntil(playerId, System.currentTimeMillis() + (minutes * 60 * 1000L));
-            if (!plugin.getConfig().getBoolean("silentMode", false)) {
+            if (!CaptchaSettings.get().isSilentMode()) {
                 player.sendMessage("§cYou've failed the CAPTCHA 3 times. Cactus & sand are now disabled for " + minutes + " minutes.");
             }
             
@@ -232,8 +292,8 @@ public class CaptchaManager {
             closeCaptcha(player, false);
         } else {
             // Generate new challenge for retry
-            CaptchaChallenge newChallenge = new CaptchaChallenge(plugin, player);
-            activeChallenges.put(playerId, newChallenge);
+            CaptchaChallenge newChallenge = nextChallenge(player, settings);
+            session.challenge = newChallenge;
             
             // Update GUI with new challenge
             Inventory gui = CaptchaGUI.createCaptchaGUI(newChallenge);
@@ -243,63 +303,49 @@ public class CaptchaManager {
 
     public void closeCaptcha(Player player, boolean success) {
         UUID playerId = player.getUniqueId();
+        CaptchaSession session = sessions.get(playerId);
         
-        activeChallenges.remove(playerId);
-        if (!success) {
-            pendingPlacements.remove(playerId);
+        timeouts.cancel(playerId);
+        if (session != null) {
+            session.challenge = null;
+            if (!success) {
+                session.pendingPlacement = null;
+            }
         }
         
         player.closeInventory();
     }
 
     public boolean hasActiveChallenge(Player player) {
-        return activeChallenges.containsKey(player.getUniqueId());
+        CaptchaSession session = sessions.get(player.getUniqueId());
+        return session != null && session.challenge != null;
     }
     
     /**
      * Tracks failed slot clicks for behavioral detection
      */
-    private void trackFailedSlotClick(Player player, int slot) {
-        UUID playerId = player.getUniqueId();
-        List<Integer> failedSlots = recentFailedSlots.computeIfAbsent(playerId, k -> new LinkedList<>());
-        
-        // Keep only the last 10 failed clicks
-        if (failedSlots.size() >= 10) {
-            failedSlots.remove(0);
-        }
-        failedSlots.add(slot);
-        
-        // Check for slot click repetition (same slot clicked 2+ times in a row)
-        if (failedSlots.size() >= 2) {
-            int lastSlot = failedSlots.get(failedSlots.size() - 1);
-            int secondLastSlot = failedSlots.get(failedSlots.size() - 2);
-            
-            if (lastSlot == secondLastSlot) {
-                WatchManager.notifyIfWatched(player, "Slot click repetition detected (slot " + slot + " clicked repeatedly)");
-            }
+    private void trackFailedSlotClick(Player player, CaptchaSession session, int slot) {
+        // Keeps the last 10 failed clicks; checks for the same slot clicked 2+ times in a row
+        if (session.recordFailedSlot(slot)) {
+            WatchManager.notifyIfWatched(player, "Slot click repetition detected (slot " + slot + " clicked repeatedly)");
         }
     }
     
     /**
      * Calculates and categorizes solve time for behavioral detection
      */
-    private void trackSolveTime(Player player) {
-        UUID playerId = player.getUniqueId();
-        Long startTime = captchaStartTimes.get(playerId);
+    private void trackSolveTime(Player player, CaptchaSession session) {
+        long startTime = session.captchaStartTime;
         
-        if (startTime == null) {
+        if (startTime == 0L) {
             return;
         }
         
         long solveTimeMs = System.currentTimeMillis() - startTime;
         double solveTimeSeconds = solveTimeMs / 1000.0;
         
-        // Store solve time
-        List<Long> playerSolveTimes = solveTimes.computeIfAbsent(playerId, k -> new LinkedList<>());
-        if (playerSolveTimes.size() >= 10) {
-            playerSolveTimes.remove(0);
-        }
-        playerSolveTimes.add(solveTimeMs);
+        // Store solve time (last 10 kept)
+        session.recordSolveTime(solveTimeMs);
         
         // Categorize solve time
         String category;
@@ -314,9 +360,8 @@ public class CaptchaManager {
         }
         
         // Check for suspicious fast solving pattern
-        if (playerSolveTimes.size() >= 10) {
-            long fastSolves = playerSolveTimes.stream().mapToLong(time -> time < 1000 ? 1 : 0).sum();
-            if (fastSolves >= 10) {
+        if (session.getSolveTimeCount() >= CaptchaSession.HISTORY_SIZE) {
+            if (session.countSolvesUnder(1000L) >= 10) {
                 WatchManager.notifyIfWatched(player, "Suspicious solve speed pattern (10 CAPTCHAs solved in <1s)");
             }
         }
@@ -325,15 +370,13 @@ public class CaptchaManager {
                                String.format("%.2f", solveTimeSeconds) + "s (" + category + ")");
         
         // Clean up tracking data
-        captchaStartTimes.remove(playerId);
+        session.captchaStartTime = 0L;
     }
 
     public void shutdown() {
-        activeChallenges.clear();
-        pendingPlacements.clear();
-        lastCaptchaTime.clear();
-        captchaStartTimes.clear();
-        recentFailedSlots.clear();
-        solveTimes.clear();
+        tickTask.cancel();
+        timeouts.clear();
+        sessions.clear();
+        lastPassTimes.clear();
     }
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package net.minecadia.cactuscaptcha.captcha;
+
+import org.bukkit.Location;
+
+/**
+ * All captcha state for one online player: the open challenge, the placement it guards,
+ * the countdown, and the recent failed slots and solve times used for behavioral detection.
+ * The history is kept in fixed-size primitive rings, so recording a click allocates nothing.
+ *
+ * Owned by CaptchaManager and only touched from the main thread.
+ */
+final class CaptchaSession {
+
+    /**
+     * Number of failed slots and solve times remembered.
+     */
+    static final int HISTORY_SIZE = 10;
+
+    CaptchaChallenge challenge;
+    Location pendingPlacement;
+    int secondsLeft;
+    long captchaStartTime; // Millis the current captcha was opened, 0 if none
+
+    private final int[] failedSlots = new int[HISTORY_SIZE];
+    private int failedSlotCount;
+    private int failedSlotNext;
+
+    private final long[] solveTimes = new long[HISTORY_SIZE];
+    private int solveTimeCount;
+    private int solveTimeNext;
+
+    /**
+     * Records a failed slot click, dropping the oldest once full.
+     *
+     * @return true if the same slot was also the previous failed click
+     */
+    boolean recordFailedSlot(int slot) {
+        boolean repeated = failedSlotCount > 0
+                && failedSlots[(failedSlotNext + HISTORY_SIZE - 1) % HISTORY_SIZE] == slot;
+        failedSlots[failedSlotNext] = slot;
+        failedSlotNext = (failedSlotNext + 1) % HISTORY_SIZE;
+        failedSlotCount = Math.min(HISTORY_SIZE, failedSlotCount + 1);
+        return repeated;
+    }
+
+    /**
+     * Records a solve time, dropping the oldest once full.
+     */
+    void recordSolveTime(long solveTimeMs) {
+        solveTimes[solveTimeNext] = solveTimeMs;
+        solveTimeNext = (solveTimeNext + 1) % HISTORY_SIZE;
+        solveTimeCount = Math.min(HISTORY_SIZE, solveTimeCount + 1);
+    }
+
+    int getSolveTimeCount() {
+        return solveTimeCount;
+    }
+
+    /**
+     * Counts the remembered solve times below the given threshold.
+     */
+    int countSolvesUnder(long thresholdMs) {
+        int count = 0;
+        for (int i = 0; i < solveTimeCount; i++) {
+            if (solveTimes[i] < thresholdMs) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,163 @@
+package net.minecadia.cactuscaptcha.challenge;
+
+import java.security.SecureRandom;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ring of pre-generated challenges. A challenge is packed into one int: the question id from
+ * QuestionPool in the high bits and one of the 24 orderings of its four choices in the low five
+ * bits. Which choice sits in a slot, and which slot holds the correct answer, are then lookups
+ * in two small tables instead of a shuffled list per challenge.
+ *
+ * One producer (an async refill task) fills the ring and one consumer (the main thread) pops
+ * from it, so head and tail only need to be published, not locked. If the ring ever runs dry
+ * the consumer draws a challenge itself from its own random stream.
+ */
+public final class ChallengeRing {
+
+    /**
+     * Number of orderings of four choices.
+     */
+    public static final int PERMUTATIONS = 24;
+    private static final int PERMUTATION_BITS = 5;
+    private static final int PERMUTATION_MASK = (1 << PERMUTATION_BITS) - 1;
+
+    // [permutation * 4 + slot] = choice index shown in that slot
+    private static final byte[] CHOICE_AT = new byte[PERMUTATIONS * 4];
+    // [permutation * 4 + choice index] = slot the choice is shown in
+    private static final byte[] SLOT_OF = new byte[PERMUTATIONS * 4];
+
+    static {
+        int permutation = 0;
+        for (int a = 0; a < 4; a++) {
+            for (int b = 0; b < 4; b++) {
+                for (int c = 0; c < 4; c++) {
+                    int d = 6 - a - b - c;
+                    if (a == b || a == c || b == c || d < 0 || d > 3 || d == a || d == b || d == c) {
+                        continue;
+                    }
+                    int[] order = {a, b, c, d};
+                    for (int slot = 0; slot < 4; slot++) {
+                        CHOICE_AT[permutation * 4 + slot] = (byte) order[slot];
+                        SLOT_OF[permutation * 4 + order[slot]] = (byte) slot;
+                    }
+                    permutation++;
+                }
+            }
+        }
+    }
+
+    private final int[] ring;
+    private final int mask;
+    private final int questionCount;
+    private final SplittableRandom producerRandom;
+    private final SplittableRandom consumerRandom;
+    private final AtomicLong head = new AtomicLong(); // Next index to pop, written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // Next index to fill, written by the producer
+
+    /**
+     * Creates an empty ring seeded from SecureRandom.
+     *
+     * @param capacity Number of challenges kept ready, rounded up to a power of two
+     * @param questionCount Number of questions to draw from
+     */
+    public ChallengeRing(int capacity, int questionCount) {
+        this(capacity, questionCount, new SecureRandom().nextLong());
+    }
+
+    /**
+     * Creates an empty ring with a fixed seed.
+     */
+    public ChallengeRing(int capacity, int questionCount, long seed) {
+        if (questionCount <= 0) {
+            throw new IllegalArgumentException("Question pool is empty");
+        }
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.ring = new int[size];
+        this.mask = size - 1;
+        this.questionCount = questionCount;
+        this.producerRandom = new SplittableRandom(seed);
+        this.consumerRandom = producerRandom.split();
+    }
+
+    /**
+     * Takes the next challenge. Consumer thread only.
+     *
+     * @return A packed challenge
+     */
+    public int pop() {
+        long index = head.get();
+        if (index == tail.get()) {
+            return draw(consumerRandom);
+        }
+        int packed = ring[(int) (index & mask)];
+        head.lazySet(index + 1);
+        return packed;
+    }
+
+    /**
+     * Fills every free place in the ring. Producer thread only.
+     *
+     * @return The number of challenges added
+     */
+    public int fill() {
+        long index = tail.get();
+        long end = head.get() + ring.length;
+        int added = 0;
+        while (index < end) {
+            ring[(int) (index & mask)] = draw(producerRandom);
+            index++;
+            added++;
+        }
+        tail.set(index); // Publishes the filled entries to the consumer
+        return added;
+    }
+
+    /**
+     * Gets the number of challenges ready to pop.
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Whether the ring has fallen to half full or less.
+     */
+    public boolean needsRefill() {
+        return size() <= ring.length / 2;
+    }
+
+    private int draw(SplittableRandom random) {
+        return pack(random.nextInt(questionCount), random.nextInt(PERMUTATIONS));
+    }
+
+    /**
+     * Packs a question id and a permutation (0-23) into one int.
+     */
+    public static int pack(int questionId, int permutation) {
+        return (questionId << PERMUTATION_BITS) | permutation;
+    }
+
+    public static int questionId(int packed) {
+        return packed >>> PERMUTATION_BITS;
+    }
+
+    public static int permutation(int packed) {
+        return packed & PERMUTATION_MASK;
+    }
+
+    /**
+     * Gets the index of the question's choice shown in the given slot (0-3).
+     */
+    public static int choiceAt(int packed, int slot) {
+        return CHOICE_AT[permutation(packed) * 4 + slot];
+    }
+
+    /**
+     * Gets the slot (0-3) the given choice index is shown in.
+     */
+    public static int slotOf(int packed, int choiceIndex) {
+        return SLOT_OF[permutation(packed) * 4 + choiceIndex];
+    }
+}
@@ -84,6 +84,16 @@ public class QuestionPool {
         return QUESTIONS.get(RANDOM.nextInt(QUESTIONS.size()));
     }
     
+    /**
+     * Gets a question by its id, its position in the pool.
+     * 
+     * @param id The question id (0 to getQuestionCount() - 1)
+     * @return The CaptchaQuestion with that id
+     */
+    public static CaptchaQuestion getQuestion(int id) {
+        return QUESTIONS.get(id);
+    }
+    
     /**
      * Gets the total number of questions in the pool.
      * 
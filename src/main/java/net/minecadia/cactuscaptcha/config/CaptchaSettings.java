@@ -0,0 +1,150 @@
+package net.minecadia.cactuscaptcha.config;
+
+import net.minecadia.cactuscaptcha.CactusCaptcha;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.List;
+
+/**
+ * Immutable, typed snapshot of the settings the captcha hot paths read. config.yml is parsed
+ * once per load; readers call get() and read plain fields, with no map lookups or parsing.
+ *
+ * A reload parses a fresh snapshot and swaps it in through a volatile reference, so every
+ * reader sees either the old settings or the new ones, never a mix of both.
+ */
+public final class CaptchaSettings {
+
+    private static final int[] DEFAULT_PUNISHMENT_MINUTES = {3, 10, 60, 120};
+
+    /**
+     * Settings used until config.yml has been loaded.
+     */
+    public static final CaptchaSettings DEFAULTS = new CaptchaSettings(false, 3, 3,
+            DEFAULT_PUNISHMENT_MINUTES, true, 60, true, 20, 0.75, 15);
+
+    private static volatile CaptchaSettings current;
+
+    private final boolean silentMode;
+    private final int captchaTimeoutSeconds;
+    private final int maxTries;
+    private final int[] punishmentCooldownsMinutes;
+    private final boolean timerEnabled;
+    private final int secondsBetweenCaptchas;
+    private final boolean movementEnabled;
+    private final int movementSampleSize;
+    private final double movementRepeatThreshold;
+    private final int movementSuspicionIncrease;
+
+    private CaptchaSettings(boolean silentMode, int captchaTimeoutSeconds, int maxTries,
+                            int[] punishmentCooldownsMinutes, boolean timerEnabled, int secondsBetweenCaptchas,
+                            boolean movementEnabled, int movementSampleSize, double movementRepeatThreshold,
+                            int movementSuspicionIncrease) {
+        this.silentMode = silentMode;
+        this.captchaTimeoutSeconds = captchaTimeoutSeconds;
+        this.maxTries = maxTries;
+        this.punishmentCooldownsMinutes = punishmentCooldownsMinutes;
+        this.timerEnabled = timerEnabled;
+        this.secondsBetweenCaptchas = secondsBetweenCaptchas;
+        this.movementEnabled = movementEnabled;
+        this.movementSampleSize = movementSampleSize;
+        this.movementRepeatThreshold = movementRepeatThreshold;
+        this.movementSuspicionIncrease = movementSuspicionIncrease;
+    }
+
+    /**
+     * Parses a snapshot from the given configuration, using the defaults for missing keys.
+     */
+    public static CaptchaSettings from(ConfigurationSection config) {
+        List<Integer> punishments = config.getIntegerList("captcha.punishmentCooldownsMinutes");
+        int[] minutes = DEFAULT_PUNISHMENT_MINUTES;
+        if (punishments != null && !punishments.isEmpty()) {
+            minutes = new int[punishments.size()];
+            for (int i = 0; i < minutes.length; i++) {
+                minutes[i] = punishments.get(i);
+            }
+        }
+
+        return new CaptchaSettings(
+                config.getBoolean("silentMode", DEFAULTS.silentMode),
+                config.getInt("captchaTimeoutSeconds", DEFAULTS.captchaTimeoutSeconds),
+                config.getInt("captcha.maxTries", DEFAULTS.maxTries),
+                minutes,
+                config.getBoolean("captchaTimer.enabled", DEFAULTS.timerEnabled),
+                config.getInt("captchaTimer.secondsBetweenCaptchas", DEFAULTS.secondsBetweenCaptchas),
+                config.getBoolean("movement-repetition.enabled", DEFAULTS.movementEnabled),
+                config.getInt("movement-repetition.sample-size", DEFAULTS.movementSampleSize),
+                config.getDouble("movement-repetition.repeat-threshold", DEFAULTS.movementRepeatThreshold),
+                config.getInt("movement-repetition.suspicion-increase", DEFAULTS.movementSuspicionIncrease));
+    }
+
+    /**
+     * Gets the current settings. Parses config.yml on first use if nothing has loaded it yet.
+     */
+    public static CaptchaSettings get() {
+        CaptchaSettings settings = current;
+        if (settings == null) {
+            CactusCaptcha plugin = CactusCaptcha.getInstance();
+            if (plugin == null || plugin.getConfig() == null) {
+                return DEFAULTS;
+            }
+            settings = from(plugin.getConfig());
+            current = settings;
+        }
+        return settings;
+    }
+
+    /**
+     * Reloads config.yml from disk and publishes a new snapshot of it.
+     *
+     * @return The new settings
+     */
+    public static CaptchaSettings reload(CactusCaptcha plugin) {
+        plugin.reloadConfig();
+        CaptchaSettings settings = from(plugin.getConfig());
+        current = settings;
+        return settings;
+    }
+
+    public boolean isSilentMode() {
+        return silentMode;
+    }
+
+    public int getCaptchaTimeoutSeconds() {
+        return captchaTimeoutSeconds;
+    }
+
+    public int getMaxTries() {
+        return maxTries;
+    }
+
+    /**
+     * Gets the cooldown for the given failure chain (0 for the first), capped at the last entry.
+     */
+    public int getPunishmentMinutes(int chain) {
+        return punishmentCooldownsMinutes[Math.max(0, Math.min(chain, punishmentCooldownsMinutes.length - 1))];
+    }
+
+    public boolean isTimerEnabled() {
+        return timerEnabled;
+    }
+
+    public int getSecondsBetweenCaptchas() {
+        return secondsBetweenCaptchas;
+    }
+
+    public boolean isMovementEnabled() {
+        return movementEnabled;
+    }
+
+    public int getMovementSampleSize() {
+        return movementSampleSize;
+    }
+
+    public double getMovementRepeatThreshold() {
+        return movementRepeatThreshold;
+    }
+
+    public int getMovementSuspicionIncrease() {
+        return movementSuspicionIncrease;
+    }
+}
@@ -1,7 +1,9 @@
 package net.minecadia.cactuscaptcha.gui;
 
 import net.minecadia.cactuscaptcha.CactusCaptcha;
+import net.minecadia.cactuscaptcha.storage.StatsAggregates;
 import net.minecadia.cactuscaptcha.storage.StorageManager;
+import net.minecadia.cactuscaptcha.util.PlayerStateRegistry;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
@@ -14,7 +16,9 @@ import org.bukkit.inventory.meta.SkullMeta;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Main admin GUI that displays all players with their captcha statistics.
@@ -24,11 +28,16 @@ public class AdminMainGUI {
     
     private static final String GUI_TITLE = "§6CactusCaptcha Admin Panel";
     private static final int GUI_SIZE = 54; // 6 rows
+    private static final int PLAYER_SLOTS = GUI_SIZE - 9; // Bottom row is for controls
+    
+    // Players shown to each admin, in slot order, so clicks resolve to the head that was displayed
+    private static final Map<UUID, List<UUID>> displayedPlayers = new ConcurrentHashMap<>();
     
     private final CactusCaptcha plugin;
     
     public AdminMainGUI(CactusCaptcha plugin) {
         this.plugin = plugin;
+        PlayerStateRegistry.get().register("admin.displayed", displayedPlayers);
     }
     
     /**
@@ -37,31 +46,37 @@ public class AdminMainGUI {
      * @param admin The admin player to show the GUI to
      */
     public void openGUI(Player admin) {
-        Inventory gui = createMainGUI();
-        admin.openInventory(gui);
+        // The page may come from storage (including offline players), so the GUI opens once it arrives
+        plugin.getStorageManager().getPlayerPage(null, PLAYER_SLOTS, page -> {
+            if (admin.isOnline()) {
+                admin.openInventory(createMainGUI(admin, page));
+            }
+        });
     }
     
     /**
      * Creates the main admin GUI inventory.
      * 
+     * @param admin The admin the GUI is built for
+     * @param page The player statistics to show
      * @return The created inventory
      */
-    private Inventory createMainGUI() {
+    private Inventory createMainGUI(Player admin, List<StorageManager.PlayerStats> page) {
         Inventory gui = Bukkit.createInventory(null, GUI_SIZE, GUI_TITLE);
         
-        // Get all players who have captcha data
-        List<UUID> playersWithData = new ArrayList<>(plugin.getStorageManager().getAllPlayerStats().keySet());
-        
+        List<UUID> shown = new ArrayList<>(page.size());
         int slot = 0;
-        for (UUID playerId : playersWithData) {
-            if (slot >= GUI_SIZE - 9) { // Leave bottom row for navigation/controls
+        for (StorageManager.PlayerStats stats : page) {
+            if (slot >= PLAYER_SLOTS) { // Leave bottom row for navigation/controls
                 break;
             }
             
-            ItemStack playerHead = createPlayerHeadItem(playerId);
+            ItemStack playerHead = createPlayerHeadItem(stats);
             gui.setItem(slot, playerHead);
+            shown.add(stats.uuid);
             slot++;
         }
+        displayedPlayers.put(admin.getUniqueId(), shown);
         
         // Add control items in bottom row
         addControlItems(gui);
@@ -72,10 +87,11 @@ public class AdminMainGUI {
     /**
      * Creates a player head item with captcha statistics in the lore.
      * 
-     * @param playerId The player's UUID
+     * @param stats The player's statistics
      * @return The player head ItemStack
      */
-    private ItemStack createPlayerHeadItem(UUID playerId) {
+    private ItemStack createPlayerHeadItem(StorageManager.PlayerStats stats) {
+        UUID playerId = stats.uuid;
         ItemStack head = new ItemStack(Material.SKULL_ITEM, 1, (short) 3); // Player head
         SkullMeta meta = (SkullMeta) head.getItemMeta();
         
@@ -85,9 +101,6 @@ public class AdminMainGUI {
         meta.setOwner(playerName);
         meta.setDisplayName("§e" + playerName);
         
-        // Get player statistics
-        StorageManager.PlayerStats stats = plugin.getStorageManager().getPlayerStats(playerId);
-        
         // Get timer information
         int remainingTime = -1;
         if (plugin.getTimerRunnable() != null) {
@@ -95,7 +108,7 @@ public class AdminMainGUI {
         }
         
         // Get penalty information
-        long penaltyUntil = plugin.getStorageManager().getPenaltyUntil(playerId);
+        long penaltyUntil = stats.getPenaltyUntil();
         long currentTime = System.currentTimeMillis();
         boolean hasPenalty = penaltyUntil > currentTime;
         long penaltyMinutesLeft = hasPenalty ? (penaltyUntil - currentTime) / (60 * 1000) : 0;
@@ -103,8 +116,8 @@ public class AdminMainGUI {
         // Create lore with statistics
         List<String> lore = new ArrayList<>();
         lore.add("§7Player Statistics:");
-        lore.add("§aPasses: §f" + stats.passes);
-        lore.add("§cFails: §f" + stats.fails);
+        lore.add("§aPasses: §f" + stats.getPasses());
+        lore.add("§cFails: §f" + stats.getFails());
         lore.add("§7Repetition % Detected: §f" + stats.getMovementPatternPercent() + "%");
         
         if (hasPenalty) {
@@ -178,9 +191,10 @@ public class AdminMainGUI {
         ItemMeta statsMeta = statsItem.getItemMeta();
         statsMeta.setDisplayName("§6Server Statistics");
         
-        int totalPasses = plugin.getStorageManager().getTotalPasses();
-        int totalFails = plugin.getStorageManager().getTotalFails();
-        int totalPlayers = plugin.getStorageManager().getAllPlayersWithData().size();
+        StatsAggregates aggregates = plugin.getStorageManager().getAggregates();
+        long totalPasses = aggregates.getTotalPasses();
+        long totalFails = aggregates.getTotalFails();
+        long totalPlayers = aggregates.getPlayerCount();
         
         List<String> statsLore = new ArrayList<>();
         statsLore.add("§7Total Players: §f" + totalPlayers);
@@ -190,6 +204,8 @@ public class AdminMainGUI {
             double successRate = (double) totalPasses / (totalPasses + totalFails) * 100;
             statsLore.add("§7Success Rate: §f" + String.format("%.1f%%", successRate));
         }
+        statsLore.add("§7Penalized: §f" + aggregates.getPenalizedCount());
+        statsLore.add("§7On Cooldown: §f" + aggregates.getOnCooldownCount());
         
         statsMeta.setLore(statsLore);
         statsItem.setItemMeta(statsMeta);
@@ -222,16 +238,17 @@ public class AdminMainGUI {
     /**
      * Gets the player UUID from a clicked slot in the admin GUI.
      * 
+     * @param admin The admin who clicked
      * @param slot The clicked slot
      * @return The player UUID, or null if not a player head slot
      */
-    public UUID getPlayerFromSlot(int slot) {
-        if (slot < 0 || slot >= GUI_SIZE - 9) { // Not in player area
+    public UUID getPlayerFromSlot(Player admin, int slot) {
+        if (slot < 0 || slot >= PLAYER_SLOTS) { // Not in player area
             return null;
         }
         
-        List<UUID> playersWithData = plugin.getStorageManager().getAllPlayersWithData();
-        if (slot >= playersWithData.size()) {
+        List<UUID> playersWithData = displayedPlayers.get(admin.getUniqueId());
+        if (playersWithData == null || slot >= playersWithData.size()) {
             return null;
         }
         
@@ -2,24 +2,19 @@ package net.minecadia.cactuscaptcha.gui;
 
 import net.minecadia.cactuscaptcha.captcha.CaptchaChallenge;
 import org.bukkit.Bukkit;
-import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
-import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.ItemMeta;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Handles the creation and management of the text-logic captcha GUI.
  * Creates a 9-slot inventory with question display and multiple choice answers.
+ * Items come pre-rendered from CaptchaItemCache.
  */
 public class CaptchaGUI {
     
     private static final String GUI_TITLE = "§aCactus Captcha – Answer the question!";
-    private static final short[] GLASS_COLORS = {1, 2, 3, 4}; // Orange, Magenta, Light Blue, Yellow
     
     /**
      * Creates a new captcha GUI for the given challenge.
@@ -56,12 +51,7 @@ public class CaptchaGUI {
             return;
         }
         
-        ItemStack timerItem = new ItemStack(Material.STAINED_GLASS_PANE, 1, (short) 14); // Red stained glass
-        ItemMeta timerMeta = timerItem.getItemMeta();
-        timerMeta.setDisplayName("§cTime Remaining");
-        timerMeta.setLore(Arrays.asList("§cTime: §f" + timeLeft + "s"));
-        timerItem.setItemMeta(timerMeta);
-        gui.setItem(8, timerItem);
+        gui.setItem(8, CaptchaItemCache.timer(timeLeft));
     }
     
     /**
@@ -81,11 +71,7 @@ public class CaptchaGUI {
      * These slots appear in positions 5-7 and look like legitimate answers.
      */
     private static void addHoneytokenSlots(Inventory gui, CaptchaChallenge challenge) {
-        Random random = new Random();
-        String[] fakeAnswers = {
-            "Click here", "Select this", "Choose me", "Answer here", 
-            "Pick this", "Correct", "Right answer", "Solution"
-        };
+        ThreadLocalRandom random = ThreadLocalRandom.current();
         
         // Randomly place 1-2 honeytoken slots in positions 5-7
         int numTokens = random.nextInt(2) + 1; // 1 or 2 tokens
@@ -100,13 +86,10 @@ public class CaptchaGUI {
             usedSlots[slotIndex] = true;
             int actualSlot = 5 + slotIndex;
             
-            // Create honeytoken item that looks like a legitimate answer
-            ItemStack honeytokenItem = new ItemStack(Material.STAINED_GLASS_PANE, 1, (short) (random.nextInt(4) + 1));
-            ItemMeta honeytokenMeta = honeytokenItem.getItemMeta();
-            honeytokenMeta.setDisplayName("§f" + fakeAnswers[random.nextInt(fakeAnswers.length)]);
-            honeytokenMeta.setLore(Arrays.asList("§7Click to select this answer"));
-            honeytokenItem.setItemMeta(honeytokenMeta);
-            gui.setItem(actualSlot, honeytokenItem);
+            // Honeytoken item that looks like a legitimate answer
+            gui.setItem(actualSlot, CaptchaItemCache.honeytoken(
+                    random.nextInt(CaptchaItemCache.HONEYTOKEN_LABELS.length),
+                    random.nextInt(CaptchaItemCache.GLASS_COLORS.length)));
         }
     }
     
@@ -114,27 +97,15 @@ public class CaptchaGUI {
      * Adds the question display item to the GUI.
      */
     private static void addQuestionItem(Inventory gui, CaptchaChallenge challenge) {
-        ItemStack questionItem = new ItemStack(Material.PAPER);
-        ItemMeta questionMeta = questionItem.getItemMeta();
-        questionMeta.setDisplayName("§e" + challenge.getPrompt());
-        questionMeta.setLore(Arrays.asList("§7Click one of the choices below"));
-        questionItem.setItemMeta(questionMeta);
-        gui.setItem(4, questionItem);
+        gui.setItem(4, CaptchaItemCache.question(challenge.getPrompt()));
     }
     
     /**
      * Adds the choice items to the GUI in slots 0-3.
      */
     private static void addChoiceItems(Inventory gui, CaptchaChallenge challenge) {
-        List<String> choices = challenge.getShuffledChoices();
-        
         for (int i = 0; i < 4; i++) {
-            ItemStack choiceItem = new ItemStack(Material.STAINED_GLASS_PANE, 1, GLASS_COLORS[i]);
-            ItemMeta choiceMeta = choiceItem.getItemMeta();
-            choiceMeta.setDisplayName("§f" + choices.get(i));
-            choiceMeta.setLore(Arrays.asList("§7Click to select this answer"));
-            choiceItem.setItemMeta(choiceMeta);
-            gui.setItem(i, choiceItem);
+            gui.setItem(i, CaptchaItemCache.choice(i, challenge.getChoice(i)));
         }
     }
     
@@ -142,12 +113,6 @@ public class CaptchaGUI {
      * Adds the timer display item to the GUI.
      */
     private static void addTimerItem(Inventory gui, CaptchaChallenge challenge) {
-        int remainingSeconds = challenge.getRemainingSeconds();
-        ItemStack timerItem = new ItemStack(Material.STAINED_GLASS_PANE, 1, (short) 14); // Red stained glass
-        ItemMeta timerMeta = timerItem.getItemMeta();
-        timerMeta.setDisplayName("§cTime Remaining");
-        timerMeta.setLore(Arrays.asList("§cTime: §f" + remainingSeconds + "s"));
-        timerItem.setItemMeta(timerMeta);
-        gui.setItem(8, timerItem);
+        gui.setItem(8, CaptchaItemCache.timer(challenge.getRemainingSeconds()));
     }
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+package net.minecadia.cactuscaptcha.gui;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-rendered item templates for the captcha GUI. Every question, choice, honeytoken and
+ * timer item is built once (ItemStack plus ItemMeta plus lore) and then handed out as is,
+ * so opening a captcha or ticking its timer no longer builds any items.
+ *
+ * Templates must never be modified. Handing them to Inventory.setItem is safe because the
+ * inventory stores its own copy of the stack. Only used from the main thread.
+ */
+final class CaptchaItemCache {
+
+    static final short[] GLASS_COLORS = {1, 2, 3, 4}; // Orange, Magenta, Light Blue, Yellow
+    private static final short TIMER_COLOR = 14; // Red stained glass
+
+    static final String[] HONEYTOKEN_LABELS = {
+        "Click here", "Select this", "Choose me", "Answer here",
+        "Pick this", "Correct", "Right answer", "Solution"
+    };
+
+    private static final List<String> QUESTION_LORE = Collections.singletonList("§7Click one of the choices below");
+    private static final List<String> CHOICE_LORE = Collections.singletonList("§7Click to select this answer");
+
+    private static final Map<String, ItemStack> QUESTIONS = new HashMap<>();
+    @SuppressWarnings("unchecked")
+    private static final Map<String, ItemStack>[] CHOICES = new Map[GLASS_COLORS.length];
+    private static ItemStack[] honeytokens; // [label * colours + colour]
+    private static ItemStack[] timers = new ItemStack[0];
+
+    static {
+        for (int i = 0; i < CHOICES.length; i++) {
+            CHOICES[i] = new HashMap<>();
+        }
+    }
+
+    private CaptchaItemCache() {
+    }
+
+    /**
+     * Gets the paper item showing the given prompt.
+     */
+    static ItemStack question(String prompt) {
+        ItemStack item = QUESTIONS.get(prompt);
+        if (item == null) {
+            item = render(Material.PAPER, (short) 0, "§e" + prompt, QUESTION_LORE);
+            QUESTIONS.put(prompt, item);
+        }
+        return item;
+    }
+
+    /**
+     * Gets the pane for an answer choice in the given colour slot (0-3).
+     */
+    static ItemStack choice(int colorIndex, String choice) {
+        Map<String, ItemStack> byText = CHOICES[colorIndex];
+        ItemStack item = byText.get(choice);
+        if (item == null) {
+            item = render(Material.STAINED_GLASS_PANE, GLASS_COLORS[colorIndex], "§f" + choice, CHOICE_LORE);
+            byText.put(choice, item);
+        }
+        return item;
+    }
+
+    /**
+     * Gets a honeytoken pane; it looks exactly like a real choice.
+     *
+     * @param labelIndex Index into HONEYTOKEN_LABELS
+     * @param colorIndex Colour slot (0-3)
+     */
+    static ItemStack honeytoken(int labelIndex, int colorIndex) {
+        if (honeytokens == null) {
+            ItemStack[] rendered = new ItemStack[HONEYTOKEN_LABELS.length * GLASS_COLORS.length];
+            for (int label = 0; label < HONEYTOKEN_LABELS.length; label++) {
+                for (int color = 0; color < GLASS_COLORS.length; color++) {
+                    rendered[label * GLASS_COLORS.length + color] = render(Material.STAINED_GLASS_PANE,
+                            GLASS_COLORS[color], "§f" + HONEYTOKEN_LABELS[label], CHOICE_LORE);
+                }
+            }
+            honeytokens = rendered;
+        }
+        return honeytokens[labelIndex * GLASS_COLORS.length + colorIndex];
+    }
+
+    /**
+     * Gets the red timer pane for the given number of seconds left.
+     */
+    static ItemStack timer(int secondsLeft) {
+        int seconds = Math.max(0, secondsLeft);
+        if (seconds >= timers.length) {
+            timers = Arrays.copyOf(timers, Math.max(seconds + 1, timers.length * 2));
+        }
+        ItemStack item = timers[seconds];
+        if (item == null) {
+            item = render(Material.STAINED_GLASS_PANE, TIMER_COLOR, "§cTime Remaining",
+                    Collections.singletonList("§cTime: §f" + seconds + "s"));
+            timers[seconds] = item;
+        }
+        return item;
+    }
+
+    private static ItemStack render(Material material, short data, String name, List<String> lore) {
+        ItemStack item = new ItemStack(material, 1, data);
+        ItemMeta meta = item.getItemMeta();
+        meta.setDisplayName(name);
+        meta.setLore(lore);
+        item.setItemMeta(meta);
+        return item;
+    }
+}
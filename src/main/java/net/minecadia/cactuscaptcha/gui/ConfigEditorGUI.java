@@ -1,6 +1,7 @@
 package net.minecadia.cactuscaptcha.gui;
 
 import net.minecadia.cactuscaptcha.CactusCaptcha;
+import net.minecadia.cactuscaptcha.config.CaptchaSettings;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Material;
@@ -188,7 +189,7 @@ public class ConfigEditorGUI {
         
         // Save and reload config
         plugin.saveConfig();
-        plugin.reloadConfig();
+        CaptchaSettings.reload(plugin);
         
         // Show success message
         player.sendMessage(ChatColor.GREEN + "§aSaved successfully!");
@@ -206,7 +207,7 @@ public class ConfigEditorGUI {
         
         // Save and reload config
         plugin.saveConfig();
-        plugin.reloadConfig();
+        CaptchaSettings.reload(plugin);
         
         // Show success message
         player.sendMessage(ChatColor.GREEN + "§aSaved successfully!");
@@ -1,6 +1,7 @@
 package net.minecadia.cactuscaptcha.listener;
 
 import net.minecadia.cactuscaptcha.CactusCaptcha;
+import net.minecadia.cactuscaptcha.config.CaptchaSettings;
 import net.minecadia.cactuscaptcha.gui.AdminMainGUI;
 import net.minecadia.cactuscaptcha.gui.ConfigToolsGUI;
 import org.bukkit.Material;
@@ -85,7 +86,7 @@ public class AdminMainGUIListener implements Listener {
         }
 
         // Check if it's a player head (for player management)
-        UUID playerId = adminGUI.getPlayerFromSlot(slot);
+        UUID playerId = adminGUI.getPlayerFromSlot(player, slot);
         if (playerId != null) {
             // Handle player management - for now just show info
             player.sendMessage("§7Player management for " + playerId.toString() + " - Feature coming soon!");
@@ -119,12 +120,12 @@ public class AdminMainGUIListener implements Listener {
             player.sendMessage("§a[CactusCaptcha] Live Config Editor - Feature coming soon!");
         } else if (displayName.contains("Reload Config")) {
             // Reload config directly
-            plugin.reloadConfig();
+            CaptchaSettings.reload(plugin);
             player.sendMessage("§a[CactusCaptcha] Config reloaded successfully!");
         } else if (displayName.contains("Config Save Tool")) {
             // Save config directly
             plugin.saveConfig();
-            plugin.reloadConfig();
+            CaptchaSettings.reload(plugin);
             player.sendMessage("§a[CactusCaptcha] Config saved and reloaded successfully!");
         }
     }
@@ -2,6 +2,7 @@ package net.minecadia.cactuscaptcha.listener;
 
 import net.minecadia.cactuscaptcha.CactusCaptcha;
 import net.minecadia.cactuscaptcha.captcha.CaptchaManager;
+import net.minecadia.cactuscaptcha.config.CaptchaSettings;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -31,7 +32,7 @@ public class BlockPlaceListener implements Listener {
         if (placed.getType() == Material.CACTUS || placed.getType() == Material.SAND) {
             if (plugin.getStorageManager().isOnCooldown(player.getUniqueId())) {
                 long secondsLeft = (plugin.getStorageManager().getCooldownUntil(player.getUniqueId()) - System.currentTimeMillis()) / 1000;
-                if (!plugin.getConfig().getBoolean("silentMode", false)) {
+                if (!CaptchaSettings.get().isSilentMode()) {
                     player.sendMessage("§cYou are blocked from placing cactus/sand for §f" + secondsLeft + "s §cbecause of failed CAPTCHAs.");
                 }
                 event.setCancelled(true);
@@ -49,7 +50,7 @@ public class BlockPlaceListener implements Listener {
                 if (below.getType() == Material.SAND) {
                     // Throttle: skip if last CAPTCHA <300s ago
                     if (!CaptchaManager.get().shouldChallenge(player)) {
-                        if (!plugin.getConfig().getBoolean("silentMode", false)) {
+                        if (!CaptchaSettings.get().isSilentMode()) {
                             player.sendMessage("§7[CactusCaptcha] §eSkipping cactus challenge - you recently completed a CAPTCHA (5min cooldown)");
                         }
                         return; // allow placement to proceed
@@ -89,7 +90,7 @@ public class BlockPlaceListener implements Listener {
                 if (hasCactusAbove || hasAdjacentCactus) {
                     // Throttle: skip if last CAPTCHA <300s ago
                     if (!CaptchaManager.get().shouldChallenge(player)) {
-                        if (!plugin.getConfig().getBoolean("silentMode", false)) {
+                        if (!CaptchaSettings.get().isSilentMode()) {
                             player.sendMessage("§7[CactusCaptcha] §eSkipping sand challenge - you recently completed a CAPTCHA (5min cooldown)");
                         }
                         return; // allow placement to proceed
@@ -2,6 +2,7 @@ package net.minecadia.cactuscaptcha.listener;
 
 import net.minecadia.cactuscaptcha.CactusCaptcha;
 import net.minecadia.cactuscaptcha.captcha.CaptchaManager;
+import net.minecadia.cactuscaptcha.config.CaptchaSettings;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -81,7 +82,7 @@ public class CaptchaRestrictionListener implements Listener {
                 if (CaptchaManager.get().hasActiveChallenge(player)) {
                     // Reopen the CAPTCHA GUI
                     CaptchaManager.get().startChallenge(player, player.getLocation());
-                    if (!plugin.getConfig().getBoolean("silentMode", false)) {
+                    if (!CaptchaSettings.get().isSilentMode()) {
                         player.sendMessage(ChatColor.RED + "You must solve the CAPTCHA to continue!");
                     }
                 }
@@ -108,7 +109,7 @@ public class CaptchaRestrictionListener implements Listener {
             .orElse(0L);
         
         if (currentTime - lastMessageTime > 3000) { // 3 seconds
-            if (!plugin.getConfig().getBoolean("silentMode", false)) {
+            if (!CaptchaSettings.get().isSilentMode()) {
                 player.sendMessage(message);
             }
             // Update last message time using metadata
@@ -1,6 +1,7 @@
 package net.minecadia.cactuscaptcha.listener;
 
 import net.minecadia.cactuscaptcha.CactusCaptcha;
+import net.minecadia.cactuscaptcha.config.CaptchaSettings;
 import net.minecadia.cactuscaptcha.gui.ConfigToolsGUI;
 import net.minecadia.cactuscaptcha.gui.ConfigEditorGUI;
 import org.bukkit.ChatColor;
@@ -156,7 +157,7 @@ public class ConfigToolsGUIListener implements Listener {
      */
     private void handleReloadConfig(Player player) {
         try {
-            plugin.reloadConfig();
+            CaptchaSettings.reload(plugin);
             player.sendMessage(ChatColor.GREEN + "✓ Configuration reloaded successfully!");
             player.sendMessage(ChatColor.GRAY + "All settings have been refreshed from config.yml");
         } catch (Exception e) {
@@ -172,7 +173,7 @@ public class ConfigToolsGUIListener implements Listener {
     private void handleConfigSave(Player player) {
         try {
             plugin.saveConfig();
-            plugin.reloadConfig();
+            CaptchaSettings.reload(plugin);
             player.sendMessage(ChatColor.GREEN + "✓ Config saved and reloaded successfully!");
             player.sendMessage(ChatColor.GRAY + "All configuration changes have been saved to config.yml");
         } catch (Exception e) {
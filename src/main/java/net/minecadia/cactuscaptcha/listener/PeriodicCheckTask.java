@@ -4,6 +4,7 @@ import net.minecadia.cactuscaptcha.captcha.CaptchaManager;
 import net.minecadia.cactuscaptcha.challenge.CaptchaQuestion;
 import net.minecadia.cactuscaptcha.challenge.QuestionPool;
 import net.minecadia.cactuscaptcha.manager.WatchManager;
+import net.minecadia.cactuscaptcha.util.PlayerStateRegistry;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
@@ -21,6 +22,12 @@ public class PeriodicCheckTask implements Runnable {
     private static final Map<UUID, Integer> placementCount = new ConcurrentHashMap<>();
     private static final Map<UUID, Integer> tickCounter = new ConcurrentHashMap<>();
     
+    static {
+        // Both counters are dropped when the player quits
+        PlayerStateRegistry.get().register("periodic.placements", placementCount);
+        PlayerStateRegistry.get().register("periodic.ticks", tickCounter);
+    }
+    
     /**
      * Records a cactus placement on sand for a player.
      * Called from BlockPlaceListener when a cactus is placed on sand.
@@ -69,14 +76,6 @@ public class PeriodicCheckTask implements Runnable {
                 placementCount.put(playerId, 0);
             }
         }
-        
-        // Clean up data for offline players
-        placementCount.entrySet().removeIf(entry -> 
-            Bukkit.getPlayer(entry.getKey()) == null
-        );
-        tickCounter.entrySet().removeIf(entry -> 
-            Bukkit.getPlayer(entry.getKey()) == null
-        );
     }
     
     /**
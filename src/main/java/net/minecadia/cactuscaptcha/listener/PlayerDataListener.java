@@ -0,0 +1,54 @@
+package net.minecadia.cactuscaptcha.listener;
+
+import net.minecadia.cactuscaptcha.storage.CircuitBreakerStorage;
+import net.minecadia.cactuscaptcha.storage.StorageManager;
+import net.minecadia.cactuscaptcha.util.PlayerStateRegistry;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Loads player statistics before login and hands them back to storage on quit.
+ * Loading happens on the async pre-login thread so the main thread never waits on storage.
+ * Also drives PlayerStateRegistry, which purges every subsystem's per-player state on quit.
+ */
+public class PlayerDataListener implements Listener {
+
+    private final StorageManager storageManager;
+
+    public PlayerDataListener(StorageManager storageManager) {
+        this.storageManager = storageManager;
+    }
+
+    @EventHandler(priority = EventPriority.HIGH)
+    public void onAsyncPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+
+        try {
+            storageManager.loadPlayer(event.getUniqueId());
+        } catch (CircuitBreakerStorage.CircuitOpenException e) {
+            // Storage is down (a spooled record would have been returned): let them in with
+            // a fresh record, which has the stored one merged in once storage is back
+        } catch (Exception e) {
+            // Letting the player in with an empty record would drop their stored cooldowns
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER,
+                    "§cCould not load your CAPTCHA data, please try again in a moment.");
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        PlayerStateRegistry.get().handleJoin(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        storageManager.handleQuit(event.getPlayer().getUniqueId());
+        PlayerStateRegistry.get().handleQuit(event.getPlayer().getUniqueId());
+    }
+}
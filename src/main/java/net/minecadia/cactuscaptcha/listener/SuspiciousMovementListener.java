@@ -1,7 +1,8 @@
 package net.minecadia.cactuscaptcha.listener;
 
 import net.minecadia.cactuscaptcha.CactusCaptcha;
-import net.minecadia.cactuscaptcha.storage.StorageManager;
+import net.minecadia.cactuscaptcha.config.CaptchaSettings;
+import net.minecadia.cactuscaptcha.util.PlayerStateRegistry;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
@@ -9,7 +10,6 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerMoveEvent;
-import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
 
 import java.util.*;
@@ -32,12 +32,6 @@ public class SuspiciousMovementListener implements Listener {
     // Cooldown to prevent spam alerts (10 seconds)
     private final Map<UUID, Long> alertCooldowns = new ConcurrentHashMap<>();
     
-    // Configuration constants - will be loaded from config
-    private int sampleSize = 20;
-    private double repeatThreshold = 0.75;
-    private int suspicionIncrease = 15;
-    private boolean enabled = true;
-    
     // Other constants
     private static final long ALERT_COOLDOWN_MS = 10000; // 10 seconds
     private static final double MOVEMENT_THRESHOLD = 1.0; // Minimum movement distance (1 block)
@@ -45,19 +39,12 @@ public class SuspiciousMovementListener implements Listener {
     
     public SuspiciousMovementListener(CactusCaptcha plugin) {
         this.plugin = plugin;
-        loadConfig();
-    }
-    
-    /**
-     * Loads configuration values from config.yml
-     */
-    private void loadConfig() {
-        if (plugin.getConfig().contains("movement-repetition")) {
-            enabled = plugin.getConfig().getBoolean("movement-repetition.enabled", true);
-            sampleSize = plugin.getConfig().getInt("movement-repetition.sample-size", 20);
-            repeatThreshold = plugin.getConfig().getDouble("movement-repetition.repeat-threshold", 0.75);
-            suspicionIncrease = plugin.getConfig().getInt("movement-repetition.suspicion-increase", 15);
-        }
+        
+        // Dropped when the player quits
+        PlayerStateRegistry registry = PlayerStateRegistry.get();
+        registry.register("movement.samples", playerMovements);
+        registry.register("movement.attacks", playerAttackTimes);
+        registry.register("movement.alertCooldowns", alertCooldowns);
     }
     
     /**
@@ -108,7 +95,9 @@ public class SuspiciousMovementListener implements Listener {
     
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onPlayerMove(PlayerMoveEvent event) {
-        if (!enabled) return;
+        // Settings come from the current config snapshot, read once per event
+        CaptchaSettings settings = CaptchaSettings.get();
+        if (!settings.isMovementEnabled()) return;
         
         Player player = event.getPlayer();
         
@@ -146,6 +135,7 @@ public class SuspiciousMovementListener implements Listener {
         
         // Add new movement and maintain sliding window size
         movements.addLast(newMovement);
+        int sampleSize = settings.getMovementSampleSize();
         if (movements.size() > sampleSize) {
             movements.removeFirst();
         }
@@ -159,11 +149,10 @@ public class SuspiciousMovementListener implements Listener {
         double repetitionPercent = detectRepetitionPattern(movements);
         
         // Update player stats with repetition percentage
-        StorageManager.PlayerStats stats = plugin.getStorageManager().getPlayerStats(playerId);
-        stats.setMovementPatternPercent((int) Math.round(repetitionPercent * 100));
+        plugin.getStorageManager().setMovementPatternPercent(playerId, (int) Math.round(repetitionPercent * 100));
         
         // Check if repetition exceeds threshold
-        if (repetitionPercent >= repeatThreshold) {
+        if (repetitionPercent >= settings.getMovementRepeatThreshold()) {
             handleSuspiciousMovement(player, repetitionPercent);
         }
     }
@@ -179,15 +168,6 @@ public class SuspiciousMovementListener implements Listener {
         }
     }
     
-    @EventHandler
-    public void onPlayerQuit(PlayerQuitEvent event) {
-        UUID playerId = event.getPlayer().getUniqueId();
-        // Clean up data for offline players
-        playerMovements.remove(playerId);
-        playerAttackTimes.remove(playerId);
-        alertCooldowns.remove(playerId);
-    }
-    
     /**
      * Detects repetition patterns in movement history.
      * 
@@ -299,9 +279,9 @@ public class SuspiciousMovementListener implements Listener {
     }
     
     /**
-     * Reloads configuration values.
+     * Reloads configuration values by reloading config.yml and publishing a new snapshot.
      */
     public void reloadConfig() {
-        loadConfig();
+        CaptchaSettings.reload(plugin);
     }
 }
\ No newline at end of file
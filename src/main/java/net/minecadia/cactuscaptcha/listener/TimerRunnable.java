@@ -1,6 +1,8 @@
 package net.minecadia.cactuscaptcha.listener;
 
 import net.minecadia.cactuscaptcha.CactusCaptcha;
+import net.minecadia.cactuscaptcha.config.CaptchaSettings;
+import net.minecadia.cactuscaptcha.util.PlayerStateRegistry;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
@@ -21,16 +23,18 @@ public class TimerRunnable extends BukkitRunnable {
     public TimerRunnable(CactusCaptcha plugin) {
         this.plugin = plugin;
         this.playerCountdowns = new ConcurrentHashMap<>();
+        PlayerStateRegistry.get().register("timer.countdowns", playerCountdowns);
     }
     
     @Override
     public void run() {
         // Check if timer is enabled
-        if (!plugin.getConfig().getBoolean("captchaTimer.enabled", true)) {
+        CaptchaSettings settings = CaptchaSettings.get();
+        if (!settings.isTimerEnabled()) {
             return;
         }
         
-        int secondsBetweenCaptchas = plugin.getConfig().getInt("captchaTimer.secondsBetweenCaptchas", 60);
+        int secondsBetweenCaptchas = settings.getSecondsBetweenCaptchas();
         
         // Process all online players
         for (Player player : Bukkit.getOnlinePlayers()) {
@@ -69,11 +73,6 @@ public class TimerRunnable extends BukkitRunnable {
                 playerCountdowns.put(playerId, countdown);
             }
         }
-        
-        // Clean up countdowns for offline players
-        playerCountdowns.entrySet().removeIf(entry -> 
-            Bukkit.getPlayer(entry.getKey()) == null
-        );
     }
     
     /**
@@ -83,8 +82,7 @@ public class TimerRunnable extends BukkitRunnable {
      * @param playerId The player's UUID
      */
     public void resetCountdown(UUID playerId) {
-        int secondsBetweenCaptchas = plugin.getConfig().getInt("captchaTimer.secondsBetweenCaptchas", 60);
-        playerCountdowns.put(playerId, secondsBetweenCaptchas);
+        playerCountdowns.put(playerId, CaptchaSettings.get().getSecondsBetweenCaptchas());
     }
     
     /**
@@ -109,6 +107,7 @@ public class TimerRunnable extends BukkitRunnable {
     
     /**
      * Removes a player from the timer system.
+     * Players who quit are removed through PlayerStateRegistry.
      * 
      * @param playerId The player's UUID
      */
@@ -0,0 +1,118 @@
+package net.minecadia.cactuscaptcha.manager;
+
+import net.minecadia.cactuscaptcha.CactusCaptcha;
+import net.minecadia.cactuscaptcha.storage.StatsTransfer;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+
+/**
+ * Handles /cc export &lt;file&gt; and /cc import &lt;file&gt;, which stream every player's
+ * statistics to or from a JSONL or CSV file (add .gz to compress) in the plugin's exports folder.
+ * Transfers run off the main thread, one at a time, and report progress to the sender.
+ * An interrupted transfer resumes from its checkpoint when the same command is run again.
+ */
+public class TransferManager {
+
+    private static final AtomicBoolean running = new AtomicBoolean();
+    private static final long PROGRESS_INTERVAL_MS = 5000L;
+
+    /**
+     * Exports all stored player statistics to the named file.
+     *
+     * @param sender Who receives progress messages
+     * @param fileName File name inside the exports folder, e.g. players.jsonl.gz
+     */
+    public static void startExport(CommandSender sender, String fileName) {
+        start(sender, fileName, true);
+    }
+
+    /**
+     * Imports player statistics from the named file, replacing the records of the players in it.
+     *
+     * @param sender Who receives progress messages
+     * @param fileName File name inside the exports folder, e.g. players.csv
+     */
+    public static void startImport(CommandSender sender, String fileName) {
+        start(sender, fileName, false);
+    }
+
+    private static void start(CommandSender sender, String fileName, boolean export) {
+        CactusCaptcha plugin = CactusCaptcha.getInstance();
+        if (fileName.contains("/") || fileName.contains("\\") || fileName.startsWith(".")) {
+            sender.sendMessage("§cUse a plain file name; files are kept in the plugin's exports folder.");
+            return;
+        }
+
+        File folder = new File(plugin.getDataFolder(), "exports");
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+        File file = new File(folder, fileName);
+        if (!export && !file.exists()) {
+            sender.sendMessage("§cNo file named " + fileName + " in the exports folder.");
+            return;
+        }
+
+        StatsTransfer transfer;
+        boolean resuming;
+        try {
+            transfer = new StatsTransfer(file, plugin.getConfig().getInt("storage.transfer.pageSize", 1000));
+            resuming = transfer.hasCheckpoint(export);
+        } catch (Exception e) {
+            sender.sendMessage("§c" + e.getMessage());
+            return;
+        }
+
+        if (!running.compareAndSet(false, true)) {
+            sender.sendMessage("§cAnother export or import is still running.");
+            return;
+        }
+
+        String action = export ? "Export" : "Import";
+        sender.sendMessage("§e" + action + (resuming ? " resuming from checkpoint: " : " started: ") + fileName);
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                long start = System.currentTimeMillis();
+                long[] lastReport = {start};
+                LongConsumer progress = count -> {
+                    long now = System.currentTimeMillis();
+                    if (now - lastReport[0] >= PROGRESS_INTERVAL_MS) {
+                        lastReport[0] = now;
+                        tell(plugin, sender, "§7" + action + " of " + fileName + ": " + count + " records so far");
+                    }
+                };
+
+                try {
+                    long count = export
+                            ? plugin.getStorageManager().exportPlayers(transfer, progress)
+                            : plugin.getStorageManager().importPlayers(transfer, progress);
+                    tell(plugin, sender, "§a" + action + " of " + fileName + " finished: " + count + " records in "
+                            + (System.currentTimeMillis() - start) / 1000L + "s");
+                } catch (Exception e) {
+                    plugin.getLogger().warning(action + " of " + fileName + " failed: " + e.getMessage());
+                    tell(plugin, sender, "§c" + action + " of " + fileName + " failed: " + e.getMessage()
+                            + " - run the command again to resume.");
+                } finally {
+                    running.set(false);
+                }
+            }
+        }.runTaskAsynchronously(plugin);
+    }
+
+    private static void tell(CactusCaptcha plugin, CommandSender sender, String message) {
+        Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage(message));
+    }
+
+    /**
+     * Whether an export or import is currently running.
+     */
+    public static boolean isRunning() {
+        return running.get();
+    }
+}
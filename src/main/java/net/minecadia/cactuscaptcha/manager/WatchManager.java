@@ -1,21 +1,28 @@
 package net.minecadia.cactuscaptcha.manager;
 
+import net.minecadia.cactuscaptcha.util.PlayerStateRegistry;
 import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
-import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages the CAPTCHA watchlist system for monitoring specific players.
  * Allows staff to add/remove players from watchlist and receive notifications
  * when watched players fail CAPTCHAs or trigger suspicious behavior.
+ * A watch survives a relog but is forgotten half an hour after the player leaves.
  */
 public class WatchManager {
     
-    private static final Set<UUID> watched = new HashSet<>();
+    private static final long WATCH_RETENTION_SECONDS = 1800L;
+    private static final Set<UUID> watched = ConcurrentHashMap.newKeySet();
+    
+    static {
+        PlayerStateRegistry.get().registerRetained("watch.players", watched, WATCH_RETENTION_SECONDS);
+    }
     
     /**
      * Toggles a player's watch status on the CAPTCHA watchlist.
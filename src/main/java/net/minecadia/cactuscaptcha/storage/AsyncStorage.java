@@ -0,0 +1,159 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import net.minecadia.cactuscaptcha.CactusCaptcha;
+import org.bukkit.Bukkit;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking access to the storage backend. Every call runs on a small dedicated I/O
+ * pool with a bounded queue and returns a future, so nothing on the main thread ever waits
+ * on disk or the database. A full queue fails the future instead of blocking the caller.
+ *
+ * Futures complete on an I/O thread. Anything touching Bukkit state must hop back to the
+ * main thread explicitly, e.g. {@code future.thenAcceptAsync(callback, storage.mainThread())}.
+ *
+ * Player statistics changes are still saved through the manager's write-behind queue;
+ * {@link #save} is for bulk writes of records the manager does not own (imports, migrations).
+ */
+public class AsyncStorage {
+
+    private final StorageManager.StorageBackend backend;
+    private final ThreadPoolExecutor executor;
+    private final Executor mainThread;
+
+    public AsyncStorage(CactusCaptcha plugin, StorageManager.StorageBackend backend, int threads, int queueCapacity) {
+        this.backend = backend;
+        AtomicInteger threadCount = new AtomicInteger();
+        int poolSize = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "CactusCaptcha-Storage-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.mainThread = task -> Bukkit.getScheduler().runTask(plugin, task);
+    }
+
+    /**
+     * Runs the given task on the server thread. Use to complete a storage future with
+     * a callback that touches players, inventories or other Bukkit state.
+     */
+    public Executor mainThread() {
+        return mainThread;
+    }
+
+    /**
+     * Runs the backend's one-time setup, e.g. a schema upgrade, without holding up startup.
+     */
+    public CompletableFuture<Void> initialize() {
+        return submit(() -> {
+            backend.initialize();
+            return null;
+        });
+    }
+
+    /**
+     * Runs storage work that is more than one backend call, such as queuing saves that
+     * may wait on backpressure, on the same pool.
+     */
+    public CompletableFuture<Void> run(Runnable task) {
+        return submit(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public CompletableFuture<StorageManager.PlayerStats> loadPlayer(UUID uuid) {
+        return submit(() -> backend.loadPlayerData(uuid));
+    }
+
+    public CompletableFuture<List<StorageManager.PlayerStats>> loadPageAfter(UUID after, int limit) {
+        return submit(() -> backend.loadPlayersAfter(after, limit));
+    }
+
+    /**
+     * Reads every stored record. Holds one I/O thread for the whole read.
+     */
+    public CompletableFuture<ConcurrentHashMap<UUID, StorageManager.PlayerStats>> loadAll() {
+        return submit(() -> {
+            ConcurrentHashMap<UUID, StorageManager.PlayerStats> loaded = new ConcurrentHashMap<>();
+            backend.loadAllData(loaded);
+            return loaded;
+        });
+    }
+
+    public CompletableFuture<Void> save(Collection<PlayerStatsSnapshot> snapshots) {
+        return submit(() -> {
+            backend.saveData(snapshots);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Integer> deletePlayers(Collection<UUID> uuids) {
+        return submit(() -> backend.deletePlayers(uuids));
+    }
+
+    public CompletableFuture<Boolean> deletePlayer(UUID uuid) {
+        return submit(() -> backend.deletePlayerData(uuid));
+    }
+
+    public CompletableFuture<Boolean> hasPlayer(UUID uuid) {
+        return submit(() -> backend.hasPlayerData(uuid));
+    }
+
+    public CompletableFuture<Integer> countPlayers() {
+        return submit(backend::getStoredPlayerCount);
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(call.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e); // Queue full or shut down
+        }
+        return future;
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Stops accepting work and waits for queued calls to finish.
+     *
+     * @param timeoutMs How long to wait
+     * @return true if every queued call finished
+     */
+    public boolean shutdown(long timeoutMs) {
+        executor.shutdown();
+        try {
+            return executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Copies every record from one backend into another. The source is read page by page in
+ * UUID_ORDER on the calling thread while a small pool writes the pages to the target in parallel,
+ * so reading and writing overlap and only a few pages are in memory at once.
+ *
+ * Progress is checkpointed as the last UUID of the last page written with every page before it,
+ * so a killed migration resumes after that key (rewriting at most the pages that were in flight,
+ * which is harmless since every write is a full-record upsert). Paging by key, not by position,
+ * means records added to or removed from the source meanwhile never shift a page. A finished
+ * migration is recorded in the checkpoint and is not run again.
+ *
+ * The copy ends with a verification pass that streams both backends and compares the record
+ * count and an order-independent checksum of the migrated players' records.
+ */
+public class BackendMigrator {
+
+    private static final int VERIFY_PAGE_SIZE = 1000;
+
+    private final StorageManager.StorageBackend source;
+    private final StorageManager.StorageBackend target;
+    private final File checkpointFile;
+    private final int batchSize;
+    private final int threads;
+    private final Logger logger;
+
+    /**
+     * Record count and checksum of a set of records.
+     */
+    static final class Fingerprint {
+        final long count;
+        final long sum;
+        final long xor;
+
+        Fingerprint(long count, long sum, long xor) {
+            this.count = count;
+            this.sum = sum;
+            this.xor = xor;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint that = (Fingerprint) other;
+            return count == that.count && sum == that.sum && xor == that.xor;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(count * 31 + sum) ^ Long.hashCode(xor);
+        }
+
+        @Override
+        public String toString() {
+            return count + " records, checksum " + Long.toHexString(sum) + "/" + Long.toHexString(xor);
+        }
+    }
+
+    public BackendMigrator(StorageManager.StorageBackend source, StorageManager.StorageBackend target,
+                           File checkpointFile, int batchSize, int threads, Logger logger) {
+        this.source = source;
+        this.target = target;
+        this.checkpointFile = checkpointFile;
+        this.batchSize = Math.max(1, batchSize);
+        this.threads = Math.max(1, threads);
+        this.logger = logger;
+    }
+
+    /**
+     * Whether a previous run already finished and verified the migration.
+     */
+    public static boolean isComplete(File checkpointFile) throws IOException {
+        Properties checkpoint = readCheckpoint(checkpointFile);
+        return checkpoint != null && Boolean.parseBoolean(checkpoint.getProperty("complete"));
+    }
+
+    /**
+     * Copies and verifies. Blocks until done.
+     *
+     * @return true if the target matched the source afterwards
+     */
+    public boolean migrate() throws Exception {
+        Properties checkpoint = readCheckpoint(checkpointFile);
+        long offset = 0L;
+        UUID after = null;
+        String last = checkpoint != null ? checkpoint.getProperty("after", "") : "";
+        if (!last.isEmpty()) {
+            offset = Long.parseLong(checkpoint.getProperty("records", "0"));
+            after = UUID.fromString(last);
+            logger.info("Resuming storage migration after " + offset + " records");
+        }
+
+        long start = System.currentTimeMillis();
+        long copied = copy(offset, after);
+        long elapsedMs = Math.max(1L, System.currentTimeMillis() - start);
+        logger.info("Copied " + copied + " player records in " + elapsedMs + "ms ("
+                + (copied * 1000L / elapsedMs) + " records/s), verifying");
+
+        Fingerprint[] fingerprints = fingerprints(source, target);
+        Fingerprint expected = fingerprints[0];
+        Fingerprint actual = fingerprints[1];
+        if (!expected.equals(actual)) {
+            logger.severe("Storage migration verification failed: source has " + expected + ", target has " + actual);
+            return false;
+        }
+
+        writeCheckpoint(expected.count, null, true);
+        logger.info("Storage migration verified: " + actual);
+        return true;
+    }
+
+    /**
+     * Streams the source records after the given UUID into the target.
+     *
+     * @param offset Records already copied by earlier runs, for the checkpoint's count
+     * @param after Last UUID already copied, or null to start from the beginning
+     * @return The number of records copied in this run
+     */
+    private long copy(long offset, UUID after) throws Exception {
+        ExecutorService writers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "CactusCaptcha-Migration");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore inFlight = new Semaphore(threads * 2); // Bounds the pages held in memory
+        AtomicReference<Exception> failure = new AtomicReference<>();
+
+        Progress progress = new Progress(offset);
+        long copied = 0L;
+        long pageNumber = 0L;
+
+        try {
+            while (failure.get() == null) {
+                List<StorageManager.PlayerStats> page = source.loadPlayersAfter(after, batchSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                long number = pageNumber++;
+                UUID last = page.get(page.size() - 1).uuid;
+                after = last;
+                copied += page.size();
+                inFlight.acquire();
+                writers.execute(() -> {
+                    try {
+                        List<PlayerStatsSnapshot> snapshots = new ArrayList<>(page.size());
+                        for (StorageManager.PlayerStats stats : page) {
+                            snapshots.add(stats.snapshot());
+                        }
+                        target.saveData(snapshots);
+                        progress.written(number, page.size(), last);
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+
+                if (page.size() < batchSize) {
+                    break;
+                }
+            }
+        } finally {
+            writers.shutdown();
+            writers.awaitTermination(10, TimeUnit.MINUTES);
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return copied;
+    }
+
+    /**
+     * Pages written so far, which the writers finish in any order, and the checkpoint
+     * covering every page written without gaps.
+     */
+    private final class Progress {
+        private final Map<Long, UUID> lastOfPage = new HashMap<>();
+        private final Map<Long, Integer> sizeOfPage = new HashMap<>();
+        private long nextPage;
+        private long records;
+
+        Progress(long records) {
+            this.records = records;
+        }
+
+        /**
+         * Marks a page written and moves the checkpoint past every page written without gaps.
+         */
+        synchronized void written(long page, int size, UUID last) throws IOException {
+            lastOfPage.put(page, last);
+            sizeOfPage.put(page, size);
+            UUID after = null;
+            while (lastOfPage.containsKey(nextPage)) {
+                after = lastOfPage.remove(nextPage);
+                records += sizeOfPage.remove(nextPage);
+                nextPage++;
+            }
+            if (after != null) {
+                writeCheckpoint(records, after, false);
+            }
+        }
+    }
+
+    /**
+     * Fingerprints every source record, and the target's records of the same players only:
+     * the target may already hold other players, which the migration neither wrote nor has to
+     * match. Both backends are streamed side by side in UUID_ORDER, so neither key set is
+     * held in memory.
+     *
+     * @return The source's fingerprint and the target's, in that order
+     */
+    static Fingerprint[] fingerprints(StorageManager.StorageBackend source, StorageManager.StorageBackend target)
+            throws Exception {
+        Checksum expected = new Checksum();
+        Checksum actual = new Checksum();
+        TargetCursor stored = new TargetCursor(target);
+        UUID after = null;
+        while (true) {
+            List<StorageManager.PlayerStats> page = source.loadPlayersAfter(after, VERIFY_PAGE_SIZE);
+            for (StorageManager.PlayerStats stats : page) {
+                PlayerStatsSnapshot record = stats.snapshot();
+                expected.add(storedImage(record, record));
+                PlayerStatsSnapshot copy = stored.seek(record.uuid);
+                if (copy != null) {
+                    actual.add(storedImage(copy, record));
+                }
+            }
+            if (page.size() < VERIFY_PAGE_SIZE) {
+                return new Fingerprint[] {expected.toFingerprint(), actual.toFingerprint()};
+            }
+            after = page.get(page.size() - 1).uuid;
+        }
+    }
+
+    /**
+     * The fields of a record a backend keeps as written. Every backend stamps a record saved
+     * without a last update time with the time of the save, so that field only counts when
+     * the source record has one.
+     */
+    private static String storedImage(PlayerStatsSnapshot record, PlayerStatsSnapshot source) {
+        long lastUpdated = source.lastUpdated > 0 ? record.lastUpdated : 0L;
+        return StatsTransfer.toCsv(new PlayerStatsSnapshot(record.uuid, record.totalAttempts, record.passes,
+                record.fails, record.penaltyUntil, record.cooldownUntil, record.failChainCount, record.captchaFails,
+                record.movementPatternPercent, lastUpdated, 0L));
+    }
+
+    /**
+     * Order-independent count and checksum of record images.
+     */
+    private static final class Checksum {
+        private final CRC32 crc = new CRC32();
+        private long count;
+        private long sum;
+        private long xor;
+
+        void add(String image) {
+            crc.reset();
+            crc.update(image.getBytes(StandardCharsets.UTF_8));
+            long value = crc.getValue();
+            count++;
+            sum += value;
+            xor ^= value * 0x9E3779B97F4A7C15L;
+        }
+
+        Fingerprint toFingerprint() {
+            return new Fingerprint(count, sum, xor);
+        }
+    }
+
+    /**
+     * Walks the target in UUID_ORDER alongside the source, a page at a time.
+     */
+    private static final class TargetCursor {
+        private final StorageManager.StorageBackend target;
+        private List<StorageManager.PlayerStats> page = new ArrayList<>();
+        private int index;
+        private boolean exhausted;
+
+        TargetCursor(StorageManager.StorageBackend target) {
+            this.target = target;
+        }
+
+        /**
+         * Skips past every record before the given UUID, which must not be lower than the
+         * previous one asked for.
+         *
+         * @return The target's record for the UUID, or null if it has none
+         */
+        PlayerStatsSnapshot seek(UUID uuid) throws Exception {
+            while (true) {
+                if (index == page.size()) {
+                    if (exhausted) {
+                        return null;
+                    }
+                    UUID last = page.isEmpty() ? null : page.get(page.size() - 1).uuid;
+                    page = target.loadPlayersAfter(last, VERIFY_PAGE_SIZE);
+                    index = 0;
+                    exhausted = page.size() < VERIFY_PAGE_SIZE;
+                    if (page.isEmpty()) {
+                        return null;
+                    }
+                }
+
+                int order = StorageManager.StorageBackend.UUID_ORDER.compare(page.get(index).uuid, uuid);
+                if (order > 0) {
+                    return null;
+                }
+                index++;
+                if (order == 0) {
+                    return page.get(index - 1).snapshot();
+                }
+            }
+        }
+    }
+
+    private static Properties readCheckpoint(File checkpointFile) throws IOException {
+        if (!checkpointFile.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(checkpointFile)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    /**
+     * @param after Last UUID copied, or null once the migration is complete
+     */
+    private void writeCheckpoint(long records, UUID after, boolean complete) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("records", Long.toString(records));
+        properties.setProperty("after", after != null ? after.toString() : "");
+        properties.setProperty("complete", Boolean.toString(complete));
+        File temp = new File(checkpointFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            properties.store(out, null);
+            out.getFD().sync();
+        }
+        Files.move(temp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,513 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the server responsive while a remote backend is down. After a run of failed calls
+ * the breaker opens and calls fail fast instead of waiting on the dead backend; one probe
+ * call is let through every retry interval, and a successful probe closes the breaker.
+ *
+ * Saves never fail: records that cannot be written (breaker open or the call failed) are
+ * appended to a local spool file and served from there on reads. The file is compacted
+ * once most of it is superseded. Once the backend accepts writes again, the spool is
+ * replayed in batches before the next save and then deleted.
+ *
+ * Spool entry layout matches the statistics journal: [int length][record][int crc32 of record].
+ */
+public class CircuitBreakerStorage implements StorageManager.StorageBackend {
+
+    private static final int ENTRY_SIZE = 8 + PlayerStatsCodec.RECORD_SIZE;
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Thrown by reads and deletes while the breaker is open.
+     */
+    public static class CircuitOpenException extends IOException {
+        CircuitOpenException() {
+            super("Storage backend unavailable, retrying later");
+        }
+    }
+
+    private final StorageManager.StorageBackend delegate;
+    private final File spoolFile;
+    private final int failureThreshold;
+    private final long retryIntervalMs;
+    private final int replayBatchSize;
+    private final Logger logger;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    // Newest spooled image per player, mirroring the spool file
+    private final Map<UUID, PlayerStatsSnapshot> spooled = new LinkedHashMap<>();
+    // Entries in the spool file, superseded ones included
+    private int spoolEntries;
+    // Guards only the spool map and file, so reads never wait on the backend
+    private final Object spoolLock = new Object();
+    // Orders saves, replays and deletes, so an older image never lands after a newer one
+    private final Object writeLock = new Object();
+
+    /**
+     * @param delegate The real backend
+     * @param spoolFile Where unsaved records are kept during an outage
+     * @param failureThreshold Consecutive failures that open the breaker
+     * @param retryIntervalMs How long the breaker stays open before a probe call
+     * @param replayBatchSize Records per save when replaying the spool
+     * @param logger Logger for state changes
+     */
+    public CircuitBreakerStorage(StorageManager.StorageBackend delegate, File spoolFile, int failureThreshold,
+                                 long retryIntervalMs, int replayBatchSize, Logger logger) {
+        this.delegate = delegate;
+        this.spoolFile = spoolFile;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.retryIntervalMs = Math.max(0L, retryIntervalMs);
+        this.replayBatchSize = Math.max(1, replayBatchSize);
+        this.logger = logger;
+
+        try {
+            readSpool();
+            if (!spooled.isEmpty()) {
+                logger.info("Found " + spooled.size() + " spooled player records from a storage outage; they will be replayed");
+            }
+        } catch (IOException e) {
+            logger.severe("Failed to read storage spool " + spoolFile.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Whether a call may go to the backend now. While open, lets one probe through per retry interval.
+     */
+    private synchronized boolean allowCall() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= retryIntervalMs) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+        return state == State.CLOSED;
+    }
+
+    private synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            logger.info("Storage backend reachable again, resuming normal operation");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    private synchronized void onFailure(Exception e) {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                logger.warning("Storage backend failing (" + e.getMessage() + "), spooling writes locally for "
+                        + retryIntervalMs + "ms before retrying");
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Checks without claiming the probe, for calls that cannot report success or failure.
+     */
+    private synchronized boolean isClosed() {
+        return state == State.CLOSED;
+    }
+
+    /**
+     * The wrapped backend, for bulk copies that must fail rather than be spooled.
+     */
+    StorageManager.StorageBackend getDelegate() {
+        return delegate;
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    public int getSpooledCount() {
+        synchronized (spoolLock) {
+            return spooled.size();
+        }
+    }
+
+    @Override
+    public void saveData(Collection<PlayerStatsSnapshot> changed) throws Exception {
+        synchronized (writeLock) {
+            if (!allowCall()) {
+                spool(changed);
+                return;
+            }
+
+            try {
+                replaySpool();
+                delegate.saveData(changed);
+                onSuccess();
+            } catch (Exception e) {
+                onFailure(e);
+                spool(changed);
+            }
+        }
+    }
+
+    /**
+     * Writes the spooled records to the backend in batches, then drops the spool.
+     * Throws on the first failed batch; the spool is kept whole and replayed again later,
+     * which is safe since every entry is a full record image. Called under the write lock,
+     * so nothing is spooled or deleted while the replay runs.
+     */
+    private void replaySpool() throws Exception {
+        List<PlayerStatsSnapshot> pending;
+        synchronized (spoolLock) {
+            if (spooled.isEmpty()) {
+                return;
+            }
+            pending = new ArrayList<>(spooled.values());
+        }
+
+        for (int from = 0; from < pending.size(); from += replayBatchSize) {
+            delegate.saveData(pending.subList(from, Math.min(pending.size(), from + replayBatchSize)));
+        }
+        synchronized (spoolLock) {
+            spooled.clear();
+            spoolEntries = 0;
+            if (!spoolFile.delete() && spoolFile.exists()) {
+                logger.warning("Failed to delete replayed storage spool " + spoolFile.getName());
+            }
+        }
+        logger.info("Replayed " + pending.size() + " spooled player records to storage");
+    }
+
+    /**
+     * Appends records to the spool. A long outage appends the same players over and over,
+     * so once most entries are superseded the file is rewritten with the newest image of each.
+     */
+    private void spool(Collection<PlayerStatsSnapshot> records) throws IOException {
+        synchronized (spoolLock) {
+            try (FileChannel channel = FileChannel.open(spoolFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                writeEntries(channel, records);
+            }
+            for (PlayerStatsSnapshot record : records) {
+                spooled.put(record.uuid, record);
+            }
+            spoolEntries += records.size();
+
+            if (spoolEntries > Math.max(replayBatchSize, spooled.size() * 2L)) {
+                rewriteSpool();
+            }
+        }
+    }
+
+    private static void writeEntries(FileChannel channel, Collection<PlayerStatsSnapshot> records) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(records.size() * ENTRY_SIZE);
+        CRC32 crc = new CRC32();
+        for (PlayerStatsSnapshot record : records) {
+            byte[] encoded = PlayerStatsCodec.encode(record);
+            crc.reset();
+            crc.update(encoded);
+            out.putInt(encoded.length);
+            out.put(encoded);
+            out.putInt((int) crc.getValue());
+        }
+        out.flip();
+
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Rewrites the spool from memory, one entry per player, after records were dropped from
+     * it or superseded. Written aside and moved over the old file, so a crash part way keeps
+     * the old spool instead of losing it.
+     */
+    private void rewriteSpool() throws IOException {
+        if (spooled.isEmpty()) {
+            spoolFile.delete();
+            spoolEntries = 0;
+            return;
+        }
+
+        File compacted = new File(spoolFile.getParentFile(), spoolFile.getName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeEntries(channel, spooled.values());
+        }
+        Files.move(compacted.toPath(), spoolFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        spoolEntries = spooled.size();
+    }
+
+    private void readSpool() throws IOException {
+        if (!spoolFile.exists()) {
+            return;
+        }
+
+        try (FileChannel in = FileChannel.open(spoolFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer data = ByteBuffer.allocate((int) in.size());
+            while (data.hasRemaining() && in.read(data) >= 0) {
+                // Read the whole spool
+            }
+            data.flip();
+
+            while (data.remaining() >= ENTRY_SIZE) {
+                int length = data.getInt();
+                if (length != PlayerStatsCodec.RECORD_SIZE) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                data.get(record);
+                CRC32 crc = new CRC32();
+                crc.update(record);
+                if ((int) crc.getValue() != data.getInt()) {
+                    break; // Torn write at the end
+                }
+                PlayerStatsSnapshot image = PlayerStatsCodec.decode(record).snapshot();
+                spooled.put(image.uuid, image);
+                spoolEntries++;
+            }
+        }
+    }
+
+    private PlayerStatsSnapshot spooledRecord(UUID uuid) {
+        synchronized (spoolLock) {
+            return spooled.get(uuid);
+        }
+    }
+
+    @Override
+    public void loadAllData(ConcurrentHashMap<UUID, StorageManager.PlayerStats> playerStats) throws Exception {
+        if (!allowCall()) {
+            throw new CircuitOpenException();
+        }
+        try {
+            delegate.loadAllData(playerStats);
+            onSuccess();
+        } catch (Exception e) {
+            onFailure(e);
+            throw e;
+        }
+
+        // Spooled records are newer than the backend's
+        synchronized (spoolLock) {
+            for (PlayerStatsSnapshot record : spooled.values()) {
+                playerStats.put(record.uuid, new StorageManager.PlayerStats(record));
+            }
+        }
+    }
+
+    @Override
+    public StorageManager.PlayerStats loadPlayerData(UUID uuid) throws Exception {
+        PlayerStatsSnapshot record = spooledRecord(uuid);
+        if (record != null) {
+            return new StorageManager.PlayerStats(record);
+        }
+        if (!allowCall()) {
+            throw new CircuitOpenException();
+        }
+        try {
+            StorageManager.PlayerStats stats = delegate.loadPlayerData(uuid);
+            onSuccess();
+            return stats;
+        } catch (Exception e) {
+            onFailure(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<StorageManager.PlayerStats> loadPlayers(Collection<UUID> uuids) throws Exception {
+        List<StorageManager.PlayerStats> found = new ArrayList<>(uuids.size());
+        List<UUID> remaining = new ArrayList<>(uuids.size());
+        for (UUID uuid : uuids) {
+            PlayerStatsSnapshot record = spooledRecord(uuid);
+            if (record != null) {
+                found.add(new StorageManager.PlayerStats(record));
+            } else {
+                remaining.add(uuid);
+            }
+        }
+        if (remaining.isEmpty()) {
+            return found;
+        }
+
+        if (!allowCall()) {
+            throw new CircuitOpenException();
+        }
+        try {
+            found.addAll(delegate.loadPlayers(remaining));
+            onSuccess();
+        } catch (Exception e) {
+            onFailure(e);
+            throw e;
+        }
+        return found;
+    }
+
+    @Override
+    public List<StorageManager.PlayerStats> loadPlayerPage(int offset, int limit) throws Exception {
+        if (!allowCall()) {
+            throw new CircuitOpenException();
+        }
+        List<StorageManager.PlayerStats> page;
+        try {
+            page = delegate.loadPlayerPage(offset, limit);
+            onSuccess();
+        } catch (Exception e) {
+            onFailure(e);
+            throw e;
+        }
+
+        for (int i = 0; i < page.size(); i++) {
+            PlayerStatsSnapshot record = spooledRecord(page.get(i).uuid);
+            if (record != null) {
+                page.set(i, new StorageManager.PlayerStats(record));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public List<StorageManager.PlayerStats> loadPlayersAfter(UUID after, int limit) throws Exception {
+        if (!allowCall()) {
+            throw new CircuitOpenException();
+        }
+        List<StorageManager.PlayerStats> page;
+        try {
+            page = delegate.loadPlayersAfter(after, limit);
+            onSuccess();
+        } catch (Exception e) {
+            onFailure(e);
+            throw e;
+        }
+
+        for (int i = 0; i < page.size(); i++) {
+            PlayerStatsSnapshot record = spooledRecord(page.get(i).uuid);
+            if (record != null) {
+                page.set(i, new StorageManager.PlayerStats(record));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public int deletePlayers(Collection<UUID> uuids) throws Exception {
+        synchronized (writeLock) {
+            if (!allowCall()) {
+                throw new CircuitOpenException();
+            }
+            int deleted;
+            try {
+                deleted = delegate.deletePlayers(uuids);
+                onSuccess();
+            } catch (Exception e) {
+                onFailure(e);
+                throw e;
+            }
+
+            // A later replay must not bring deleted players back
+            synchronized (spoolLock) {
+                boolean changed = false;
+                for (UUID uuid : uuids) {
+                    changed |= spooled.remove(uuid) != null;
+                }
+                if (changed) {
+                    rewriteSpool();
+                }
+            }
+            return deleted;
+        }
+    }
+
+    @Override
+    public boolean deletePlayerData(UUID uuid) throws Exception {
+        return deletePlayers(Collections.singleton(uuid)) > 0;
+    }
+
+    @Override
+    public boolean hasPlayerData(UUID uuid) throws Exception {
+        if (spooledRecord(uuid) != null) {
+            return true;
+        }
+        if (!allowCall()) {
+            throw new CircuitOpenException();
+        }
+        try {
+            boolean stored = delegate.hasPlayerData(uuid);
+            onSuccess();
+            return stored;
+        } catch (Exception e) {
+            onFailure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * The backend's count; players only in the spool are not counted until replayed.
+     */
+    @Override
+    public int getStoredPlayerCount() throws Exception {
+        if (!allowCall()) {
+            throw new CircuitOpenException();
+        }
+        try {
+            int count = delegate.getStoredPlayerCount();
+            onSuccess();
+            return count;
+        } catch (Exception e) {
+            onFailure(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void sync() throws Exception {
+        if (isClosed()) {
+            delegate.sync();
+        }
+    }
+
+    /**
+     * Sets up the backend. Calls failing while it runs open the breaker, so once it succeeds
+     * the breaker closes right away rather than after the retry interval; if it fails the
+     * backend stays failed and every save is spooled.
+     */
+    @Override
+    public void initialize() throws Exception {
+        try {
+            delegate.initialize();
+            onSuccess();
+        } catch (Exception e) {
+            onFailure(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (spoolLock) {
+            if (!spooled.isEmpty()) {
+                logger.warning(spooled.size() + " player records are still spooled in " + spoolFile.getName()
+                        + " and will be replayed on the next start");
+            }
+        }
+        delegate.close();
+    }
+}
@@ -0,0 +1,280 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Small bounded JDBC connection pool with a prepared statement cache per connection.
+ * Connections are validated before reuse and reset to auto-commit with the configured
+ * isolation level when they are returned, so one operation's transaction state can
+ * never leak into the next.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final int STATEMENT_CACHE_SIZE = 32;
+    private static final long VALIDATION_INTERVAL_MS = 30_000L;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int isolationLevel;
+    private final long borrowTimeoutMs;
+    private final int maxSize;
+    private final Logger logger;
+
+    private final Semaphore permits;
+    private final BlockingQueue<PooledConnection> idle;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new pool. No connections are opened until the first borrow.
+     *
+     * @param url The JDBC url
+     * @param username The database user
+     * @param password The database password
+     * @param maxSize Maximum number of open connections
+     * @param borrowTimeoutMs How long borrow() waits for a free connection
+     * @param isolationLevel The java.sql.Connection TRANSACTION_* level for every connection
+     * @param logger Logger for connection lifecycle warnings
+     */
+    public ConnectionPool(String url, String username, String password, int maxSize,
+                          long borrowTimeoutMs, int isolationLevel, Logger logger) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.isolationLevel = isolationLevel;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.maxSize = Math.max(1, maxSize);
+        this.logger = logger;
+        this.permits = new Semaphore(this.maxSize, true);
+        this.idle = new ArrayBlockingQueue<>(this.maxSize);
+    }
+
+    /**
+     * Borrows a connection, waiting up to the configured timeout if all are in use.
+     * Close the returned connection to give it back to the pool.
+     *
+     * @return A validated connection
+     * @throws SQLException if the pool is closed, exhausted, or a connection cannot be opened
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + borrowTimeoutMs + "ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.poll()) != null) {
+                if (pooled.validate()) {
+                    pooled.borrowed = true;
+                    return pooled;
+                }
+                pooled.destroy();
+            }
+
+            pooled = new PooledConnection(open());
+            pooled.borrowed = true;
+            return pooled;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection open() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, username, password);
+        connection.setAutoCommit(true);
+        connection.setTransactionIsolation(isolationLevel);
+        return connection;
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            if (closed || !pooled.reset() || !idle.offer(pooled)) {
+                pooled.destroy();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Gets the number of idle connections currently held by the pool.
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Gets the number of connections currently borrowed.
+     */
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.poll()) != null) {
+            pooled.destroy();
+        }
+    }
+
+    /**
+     * A pooled connection with its own prepared statement cache.
+     * Statements returned by {@link #prepare(String)} are owned by the cache and must not be closed.
+     */
+    public final class PooledConnection implements AutoCloseable {
+
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements;
+        private long lastValidated;
+        private boolean borrowed;
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.lastValidated = System.currentTimeMillis();
+            this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > STATEMENT_CACHE_SIZE) {
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        /**
+         * Returns a cached prepared statement for the given SQL, preparing it on first use.
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null || statement.isClosed()) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        /**
+         * Starts a transaction on this connection. It is rolled back on return if not committed.
+         */
+        public void begin() throws SQLException {
+            connection.setAutoCommit(false);
+        }
+
+        public void commit() throws SQLException {
+            connection.commit();
+        }
+
+        public void rollback() throws SQLException {
+            connection.rollback();
+        }
+
+        /**
+         * Forces validation before this connection is handed out again.
+         * Call after an operation failed with a possibly connection-level error.
+         */
+        public void markSuspect() {
+            lastValidated = 0L;
+        }
+
+        /**
+         * Gets the raw connection for operations the pool does not wrap (metadata, DDL).
+         * Do not close it or change its auto-commit state outside begin()/commit().
+         */
+        public Connection getConnection() {
+            return connection;
+        }
+
+        private boolean validate() {
+            long now = System.currentTimeMillis();
+            if (now - lastValidated < VALIDATION_INTERVAL_MS) {
+                return true;
+            }
+            try {
+                boolean valid = connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+                lastValidated = now;
+                return valid;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Restores the default connection state. Returns false if the connection is unusable.
+         */
+        private boolean reset() {
+            try {
+                if (connection.isClosed()) {
+                    return false;
+                }
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                for (PreparedStatement statement : statements.values()) {
+                    statement.clearBatch();
+                }
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private void destroy() {
+            for (PreparedStatement statement : statements.values()) {
+                closeQuietly(statement);
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.warning("Error closing pooled database connection: " + e.getMessage());
+            }
+        }
+
+        private void closeQuietly(PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // Already unusable
+            }
+        }
+
+        /**
+         * Gives the connection back to the pool.
+         */
+        @Override
+        public void close() {
+            if (borrowed) {
+                borrowed = false;
+                release(this);
+            }
+        }
+    }
+}
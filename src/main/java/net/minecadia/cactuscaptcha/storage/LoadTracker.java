@@ -0,0 +1,102 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lazy mode bookkeeping of which in-memory records already hold their stored data.
+ * A record created before its player was loaded (e.g. an admin looking up an offline
+ * player) only holds the changes made since, so it must not be saved or journaled until
+ * the stored record has been merged into it, or it would overwrite the player's real stats.
+ */
+public class LoadTracker {
+
+    private final Set<UUID> loaded = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> inFlight = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> writing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Whether the player's stored record has been merged into memory.
+     */
+    public boolean isLoaded(UUID playerId) {
+        return loaded.contains(playerId);
+    }
+
+    /**
+     * Claims a background load for the player.
+     *
+     * @return false if the player is loaded or a load is already running
+     */
+    public synchronized boolean startLoad(UUID playerId) {
+        return !loaded.contains(playerId) && !writing.contains(playerId) && inFlight.add(playerId);
+    }
+
+    /**
+     * Claims a player not in memory while their stored record is replaced directly, so no
+     * load reads the old record in the meantime.
+     *
+     * @return false if a load for the player is running
+     */
+    public synchronized boolean claimWrite(UUID playerId) {
+        if (inFlight.contains(playerId)) {
+            return false;
+        }
+        writing.add(playerId);
+        return true;
+    }
+
+    /**
+     * Releases claimed writes once they are stored (or failed), waking loads waiting on them.
+     */
+    public synchronized void releaseWrites(Collection<UUID> playerIds) {
+        if (writing.removeAll(playerIds)) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Blocks while the player's stored record is being replaced, then counts a load as
+     * running so no write is claimed until it completes.
+     *
+     * @return false if a load was already running
+     */
+    public synchronized boolean startLoadAfterWrites(UUID playerId) throws InterruptedException {
+        while (writing.contains(playerId)) {
+            wait();
+        }
+        return inFlight.add(playerId);
+    }
+
+    /**
+     * Releases a claimed load that failed, so a later attempt can retry it.
+     */
+    public void loadFailed(UUID playerId) {
+        inFlight.remove(playerId);
+    }
+
+    /**
+     * Merges a finished load unless another load for the player already did.
+     * The player only counts as loaded once the merge has run.
+     *
+     * @param merge Folds the stored record into memory
+     * @return true if this call merged
+     */
+    public synchronized boolean complete(UUID playerId, Runnable merge) {
+        inFlight.remove(playerId);
+        if (loaded.contains(playerId)) {
+            return false;
+        }
+        merge.run();
+        loaded.add(playerId);
+        return true;
+    }
+
+    /**
+     * Forgets a player whose record left memory, so the next use loads it again.
+     */
+    public void forget(UUID playerId) {
+        loaded.remove(playerId);
+    }
+}
@@ -0,0 +1,444 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import net.minecadia.cactuscaptcha.CactusCaptcha;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Stores all player statistics in a single append-only binary log.
+ * Each save appends the changed records; startup replays the log sequentially and
+ * the last entry for a UUID wins. The log is periodically compacted into a new file
+ * that replaces the old one with an atomic rename.
+ *
+ * Entry layout: [int length][byte type][payload][int crc32 of type + payload]
+ *
+ * The in-memory view only changes once the log write for it succeeded. If a write or a
+ * compaction fails, the channel is dropped and the next call replays the log from disk,
+ * which also cuts off any partly written entry.
+ */
+public class LogStorage implements StorageManager.StorageBackend {
+
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_DELETE = 2;
+    private static final int UUID_SIZE = 16;
+    private static final int ENTRY_OVERHEAD = 4 + 1 + 4;
+    private static final int MIN_ENTRIES_BEFORE_COMPACTION = 1024;
+
+    private final CactusCaptcha plugin;
+    private final File dataFolder;
+    private final File logFile;
+    private final File compactFile;
+    private final double compactionRatio;
+    private final Logger logger;
+
+    // Latest encoded record per player, used for compaction, lookups and paging
+    private final NavigableMap<UUID, byte[]> live = new TreeMap<>(UUID_ORDER);
+    private FileChannel channel;
+    private long entryCount;
+
+    public LogStorage(CactusCaptcha plugin) {
+        this(plugin, plugin.getDataFolder(), plugin.getConfig().getDouble("storage.log.compactionRatio", 2.0),
+                plugin.getLogger());
+    }
+
+    /**
+     * @param plugin Only used to import YAML data on first run; may be null if there is none
+     */
+    LogStorage(CactusCaptcha plugin, File dataFolder, double compactionRatio, Logger logger) {
+        this.plugin = plugin;
+        this.dataFolder = dataFolder;
+        this.logFile = new File(dataFolder, "players.log");
+        this.compactFile = new File(dataFolder, "players.log.compact");
+        this.compactionRatio = Math.max(1.5, compactionRatio);
+        this.logger = logger;
+
+        if (!dataFolder.exists()) {
+            dataFolder.mkdirs();
+        }
+    }
+
+    @Override
+    public synchronized void loadAllData(ConcurrentHashMap<UUID, StorageManager.PlayerStats> playerStats) throws Exception {
+        open();
+
+        for (byte[] record : live.values()) {
+            StorageManager.PlayerStats stats = PlayerStatsCodec.decode(record);
+            playerStats.put(stats.uuid, stats);
+        }
+
+        logger.info("Loaded " + live.size() + " player records from log storage (" + entryCount + " log entries)");
+    }
+
+    @Override
+    public synchronized StorageManager.PlayerStats loadPlayerData(UUID uuid) throws Exception {
+        open();
+        byte[] record = live.get(uuid);
+        return record != null ? PlayerStatsCodec.decode(record) : null;
+    }
+
+    @Override
+    public synchronized List<StorageManager.PlayerStats> loadPlayerPage(int offset, int limit) throws Exception {
+        open();
+        List<StorageManager.PlayerStats> page = new ArrayList<>(limit);
+        int index = 0;
+        for (byte[] record : live.values()) {
+            if (index++ < offset) {
+                continue;
+            }
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(PlayerStatsCodec.decode(record));
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized List<StorageManager.PlayerStats> loadPlayersAfter(UUID after, int limit) throws Exception {
+        open();
+        List<StorageManager.PlayerStats> page = new ArrayList<>(Math.min(limit, live.size()));
+        for (byte[] record : (after != null ? live.tailMap(after, false) : live).values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(PlayerStatsCodec.decode(record));
+        }
+        return page;
+    }
+
+    /**
+     * Replays the log into the live map and opens it for appending. Runs once, and again
+     * after a failed write dropped the channel.
+     */
+    private void open() throws Exception {
+        if (channel != null) {
+            return;
+        }
+
+        // A leftover compaction file means we crashed mid-compaction; the original log is still intact
+        if (compactFile.exists()) {
+            compactFile.delete();
+        }
+
+        if (!logFile.exists()) {
+            importYamlData();
+        }
+
+        long validLength = replay();
+        channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() > validLength) {
+            logger.warning("Truncating " + (channel.size() - validLength) + " corrupt trailing bytes from " + logFile.getName());
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+    }
+
+    /**
+     * Reads the log from start to end into the live map.
+     *
+     * @return The byte length of the valid prefix of the log
+     */
+    private long replay() throws IOException {
+        live.clear();
+        entryCount = 0;
+
+        if (!logFile.exists()) {
+            return 0;
+        }
+
+        long validLength = 0;
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile), 1 << 16))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length != PlayerStatsCodec.RECORD_SIZE && length != UUID_SIZE) {
+                    break;
+                }
+
+                byte type;
+                byte[] payload = new byte[length];
+                int checksum;
+                try {
+                    type = in.readByte();
+                    in.readFully(payload);
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break; // Torn write at the tail
+                }
+
+                crc.reset();
+                crc.update(type);
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                ByteBuffer buffer = ByteBuffer.wrap(payload);
+                UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+                if (type == TYPE_PUT) {
+                    live.put(uuid, payload);
+                } else if (type == TYPE_DELETE) {
+                    live.remove(uuid);
+                } else {
+                    break;
+                }
+
+                entryCount++;
+                validLength += ENTRY_OVERHEAD + length;
+            }
+        }
+        return validLength;
+    }
+
+    /**
+     * Imports existing per-player YAML files into a fresh log on first run.
+     */
+    private void importYamlData() throws Exception {
+        File yamlFolder = new File(dataFolder, "data");
+        if (plugin == null || !yamlFolder.isDirectory()) {
+            return;
+        }
+
+        ConcurrentHashMap<UUID, StorageManager.PlayerStats> imported = new ConcurrentHashMap<>();
+        new YamlStorage(plugin).loadAllData(imported);
+        if (imported.isEmpty()) {
+            return;
+        }
+
+        for (StorageManager.PlayerStats stats : imported.values()) {
+            live.put(stats.uuid, PlayerStatsCodec.encode(stats.snapshot()));
+        }
+        writeCompacted();
+        logger.info("Imported " + imported.size() + " player records from YAML into " + logFile.getName());
+    }
+
+    @Override
+    public synchronized void saveData(Collection<PlayerStatsSnapshot> changed) throws Exception {
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        open();
+        ByteBuffer batch = ByteBuffer.allocate(changed.size() * (ENTRY_OVERHEAD + PlayerStatsCodec.RECORD_SIZE));
+        List<byte[]> records = new ArrayList<>(changed.size());
+        for (PlayerStatsSnapshot stats : changed) {
+            byte[] record = PlayerStatsCodec.encode(stats);
+            appendEntry(batch, TYPE_PUT, record);
+            records.add(record);
+        }
+        batch.flip();
+
+        append(batch);
+        int i = 0;
+        for (PlayerStatsSnapshot stats : changed) {
+            live.put(stats.uuid, records.get(i++));
+        }
+        entryCount += changed.size();
+
+        if (entryCount > MIN_ENTRIES_BEFORE_COMPACTION && entryCount > live.size() * compactionRatio) {
+            compact();
+        }
+    }
+
+    private void appendEntry(ByteBuffer buffer, byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+
+        buffer.putInt(payload.length);
+        buffer.put(type);
+        buffer.put(payload);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Writes and syncs entries at the end of the log. On failure the channel is dropped, so
+     * the next call replays the log and truncates whatever part of the batch did land.
+     */
+    private void append(ByteBuffer buffer) throws IOException {
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            resetChannel();
+            throw e;
+        }
+    }
+
+    private void resetChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Reopened by the next call either way
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Rewrites the log with one entry per live player and swaps it in atomically. The old
+     * channel stays usable until the new file is in place.
+     */
+    private void compact() {
+        long before = entryCount;
+        try {
+            writeCompacted();
+        } catch (IOException e) {
+            // The original log is untouched; keep appending to it
+            logger.warning("Failed to compact " + logFile.getName() + ": " + e.getMessage());
+            return;
+        }
+
+        resetChannel();
+        try {
+            channel = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            // The next call reopens and replays the compacted log
+            logger.warning("Failed to reopen " + logFile.getName() + " after compaction: " + e.getMessage());
+            return;
+        }
+        logger.info("Compacted " + logFile.getName() + " from " + before + " to " + entryCount + " entries");
+    }
+
+    private void writeCompacted() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        try (FileChannel out = FileChannel.open(compactFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (byte[] record : live.values()) {
+                if (buffer.remaining() < ENTRY_OVERHEAD + record.length) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                appendEntry(buffer, TYPE_PUT, record);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+
+        Files.move(compactFile.toPath(), logFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        entryCount = live.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.force(true);
+                channel.close();
+            } catch (IOException e) {
+                logger.warning("Error closing log storage: " + e.getMessage());
+            }
+            channel = null;
+        }
+        logger.info("Log storage closed");
+    }
+
+    /**
+     * Get the number of stored player records
+     */
+    @Override
+    public synchronized int getStoredPlayerCount() {
+        try {
+            open();
+        } catch (Exception e) {
+            logger.warning("Failed to open log storage: " + e.getMessage());
+        }
+        return live.size();
+    }
+
+    /**
+     * Check if data exists for a specific player
+     */
+    @Override
+    public synchronized boolean hasPlayerData(UUID uuid) {
+        try {
+            open();
+        } catch (Exception e) {
+            logger.warning("Failed to open log storage: " + e.getMessage());
+        }
+        return live.containsKey(uuid);
+    }
+
+    /**
+     * Appends one delete entry per stored player in a single synced write, then drops them
+     * from memory.
+     */
+    @Override
+    public synchronized int deletePlayers(Collection<UUID> uuids) throws Exception {
+        open();
+        Set<UUID> present = new LinkedHashSet<>();
+        for (UUID uuid : uuids) {
+            if (live.containsKey(uuid)) {
+                present.add(uuid);
+            }
+        }
+        if (present.isEmpty()) {
+            return 0;
+        }
+
+        ByteBuffer batch = ByteBuffer.allocate(present.size() * (ENTRY_OVERHEAD + UUID_SIZE));
+        for (UUID uuid : present) {
+            ByteBuffer payload = ByteBuffer.allocate(UUID_SIZE);
+            payload.putLong(uuid.getMostSignificantBits());
+            payload.putLong(uuid.getLeastSignificantBits());
+            appendEntry(batch, TYPE_DELETE, payload.array());
+        }
+        batch.flip();
+
+        append(batch);
+        for (UUID uuid : present) {
+            live.remove(uuid);
+        }
+        entryCount += present.size();
+        return present.size();
+    }
+
+    /**
+     * Delete data for a specific player
+     */
+    @Override
+    public synchronized boolean deletePlayerData(UUID uuid) {
+        try {
+            return deletePlayers(Collections.singletonList(uuid)) > 0;
+        } catch (Exception e) {
+            logger.warning("Failed to delete player data from log storage: " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import net.minecadia.cactuscaptcha.CactusCaptcha;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Stores player statistics as fixed-width records in a memory-mapped file.
+ * Every player owns one slot; saving a record is an in-place write into its slot, so there
+ * is no whole-map serialization. Writes reach the page cache straight away and the mapping
+ * is forced to disk at each autosave checkpoint (see sync()) and on close.
+ *
+ * File layout: [int magic][int version][int highWaterMark][int capacity] header,
+ * followed by capacity slots of [record][int crc32 of record]. A slot whose UUID is all
+ * zeroes is free; a slot whose checksum does not match was torn by a crash and is dropped.
+ */
+public class MappedStorage implements StorageManager.StorageBackend {
+
+    private static final int MAGIC = 0x43435354; // "CCST"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int HIGH_WATER_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 12;
+    private static final int SLOT_SIZE = PlayerStatsCodec.RECORD_SIZE + 4;
+
+    private final CactusCaptcha plugin;
+    private final File dataFolder;
+    private final File tableFile;
+    private final int initialCapacity;
+    private final Logger logger;
+
+    private final NavigableMap<UUID, Integer> slotIndex = new TreeMap<>(UUID_ORDER);
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int highWaterMark;
+
+    public MappedStorage(CactusCaptcha plugin) {
+        this(plugin, plugin.getDataFolder(), plugin.getConfig().getInt("storage.mapped.initialCapacity", 4096),
+                plugin.getLogger());
+    }
+
+    /**
+     * @param plugin Only used to import YAML data on first run; may be null if there is none
+     */
+    MappedStorage(CactusCaptcha plugin, File dataFolder, int initialCapacity, Logger logger) {
+        this.plugin = plugin;
+        this.dataFolder = dataFolder;
+        this.tableFile = new File(dataFolder, "players.dat");
+        this.initialCapacity = Math.max(64, initialCapacity);
+        this.logger = logger;
+
+        if (!dataFolder.exists()) {
+            dataFolder.mkdirs();
+        }
+    }
+
+    @Override
+    public synchronized void loadAllData(ConcurrentHashMap<UUID, StorageManager.PlayerStats> playerStats) throws Exception {
+        open();
+
+        for (int slot : slotIndex.values()) {
+            StorageManager.PlayerStats stats = readSlot(slot);
+            playerStats.put(stats.uuid, stats);
+        }
+
+        logger.info("Loaded " + slotIndex.size() + " player records from mapped storage (" + capacity + " slots)");
+    }
+
+    @Override
+    public synchronized StorageManager.PlayerStats loadPlayerData(UUID uuid) throws Exception {
+        open();
+        Integer slot = slotIndex.get(uuid);
+        return slot != null ? readSlot(slot) : null;
+    }
+
+    @Override
+    public synchronized List<StorageManager.PlayerStats> loadPlayerPage(int offset, int limit) throws Exception {
+        open();
+        List<StorageManager.PlayerStats> page = new ArrayList<>(limit);
+        int index = 0;
+        for (int slot : slotIndex.values()) {
+            if (index++ < offset) {
+                continue;
+            }
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(readSlot(slot));
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized List<StorageManager.PlayerStats> loadPlayersAfter(UUID after, int limit) throws Exception {
+        open();
+        List<StorageManager.PlayerStats> page = new ArrayList<>(Math.min(limit, slotIndex.size()));
+        for (int slot : (after != null ? slotIndex.tailMap(after, false) : slotIndex).values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(readSlot(slot));
+        }
+        return page;
+    }
+
+    private StorageManager.PlayerStats readSlot(int slot) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(slotOffset(slot));
+        return PlayerStatsCodec.read(view);
+    }
+
+    /**
+     * Maps the table and builds the UUID to slot index. Runs once.
+     */
+    private void open() throws Exception {
+        if (channel != null) {
+            return;
+        }
+
+        boolean fresh = !tableFile.exists() || tableFile.length() < HEADER_SIZE;
+        channel = FileChannel.open(tableFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (fresh) {
+            create();
+            importYamlData();
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        int magic = header.getInt();
+        int version = header.getInt();
+        if (magic != MAGIC || version != FORMAT_VERSION) {
+            channel.close();
+            channel = null;
+            throw new IOException(tableFile.getName() + " is not a CactusCaptcha stats table");
+        }
+        highWaterMark = header.getInt();
+        capacity = header.getInt();
+        map();
+
+        CRC32 crc = new CRC32();
+        byte[] record = new byte[PlayerStatsCodec.RECORD_SIZE];
+        int torn = 0;
+        for (int slot = 0; slot < highWaterMark; slot++) {
+            int offset = slotOffset(slot);
+            if (buffer.getLong(offset) == 0L && buffer.getLong(offset + 8) == 0L) {
+                freeSlots.push(slot);
+                continue;
+            }
+
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            view.get(record);
+            crc.reset();
+            crc.update(record);
+            if ((int) crc.getValue() != view.getInt()) {
+                clearSlot(slot);
+                freeSlots.push(slot);
+                torn++;
+                continue;
+            }
+            slotIndex.put(new UUID(buffer.getLong(offset), buffer.getLong(offset + 8)), slot);
+        }
+
+        if (torn > 0) {
+            logger.warning("Dropped " + torn + " torn records from " + tableFile.getName());
+            buffer.force();
+        }
+    }
+
+    /**
+     * Writes the header of an empty table.
+     */
+    private void create() throws IOException {
+        capacity = initialCapacity;
+        highWaterMark = 0;
+        map();
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT_VERSION);
+        buffer.putInt(HIGH_WATER_OFFSET, 0);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.force();
+    }
+
+    /**
+     * Imports existing per-player YAML files into a fresh table on first run.
+     */
+    private void importYamlData() throws Exception {
+        File yamlFolder = new File(dataFolder, "data");
+        if (plugin == null || !yamlFolder.isDirectory()) {
+            return;
+        }
+
+        ConcurrentHashMap<UUID, StorageManager.PlayerStats> imported = new ConcurrentHashMap<>();
+        new YamlStorage(plugin).loadAllData(imported);
+        if (imported.isEmpty()) {
+            return;
+        }
+
+        List<PlayerStatsSnapshot> records = new ArrayList<>(imported.size());
+        for (StorageManager.PlayerStats stats : imported.values()) {
+            records.add(stats.snapshot());
+        }
+        saveData(records);
+        buffer.force();
+        logger.info("Imported " + records.size() + " player records from YAML into " + tableFile.getName());
+    }
+
+    private void map() throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+    }
+
+    private int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private void clearSlot(int slot) {
+        int offset = slotOffset(slot);
+        for (int i = 0; i < PlayerStatsCodec.RECORD_SIZE; i += 8) {
+            buffer.putLong(offset + i, 0L);
+        }
+        buffer.putInt(offset + PlayerStatsCodec.RECORD_SIZE, 0);
+    }
+
+    @Override
+    public synchronized void saveData(Collection<PlayerStatsSnapshot> changed) throws Exception {
+        if (changed.isEmpty()) {
+            return;
+        }
+        open();
+
+        CRC32 crc = new CRC32();
+        for (PlayerStatsSnapshot stats : changed) {
+            int offset = slotOffset(slotFor(stats.uuid));
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            PlayerStatsCodec.write(view, stats);
+
+            ByteBuffer record = buffer.duplicate();
+            record.position(offset).limit(offset + PlayerStatsCodec.RECORD_SIZE);
+            crc.reset();
+            crc.update(record);
+            view.putInt((int) crc.getValue());
+        }
+        buffer.putInt(HIGH_WATER_OFFSET, highWaterMark);
+    }
+
+    /**
+     * Forces every slot written since the last checkpoint to disk.
+     */
+    @Override
+    public synchronized void sync() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Returns the slot owned by the given player, allocating one if needed.
+     */
+    private int slotFor(UUID uuid) throws IOException {
+        Integer slot = slotIndex.get(uuid);
+        if (slot != null) {
+            return slot;
+        }
+
+        if (!freeSlots.isEmpty()) {
+            slot = freeSlots.pop();
+        } else {
+            if (highWaterMark == capacity) {
+                grow();
+            }
+            slot = highWaterMark++;
+        }
+        slotIndex.put(uuid, slot);
+        return slot;
+    }
+
+    private void grow() throws IOException {
+        buffer.force();
+        capacity *= 2;
+        map();
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        logger.info("Grew mapped storage to " + capacity + " slots");
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                logger.warning("Error closing mapped storage: " + e.getMessage());
+            }
+            channel = null;
+            buffer = null;
+            slotIndex.clear();
+            freeSlots.clear();
+        }
+        logger.info("Mapped storage closed");
+    }
+
+    /**
+     * Get the number of stored player records
+     */
+    @Override
+    public synchronized int getStoredPlayerCount() {
+        try {
+            open();
+        } catch (Exception e) {
+            logger.warning("Failed to open mapped storage: " + e.getMessage());
+        }
+        return slotIndex.size();
+    }
+
+    /**
+     * Check if data exists for a specific player
+     */
+    @Override
+    public synchronized boolean hasPlayerData(UUID uuid) {
+        try {
+            open();
+        } catch (Exception e) {
+            logger.warning("Failed to open mapped storage: " + e.getMessage());
+        }
+        return slotIndex.containsKey(uuid);
+    }
+
+    @Override
+    public synchronized int deletePlayers(Collection<UUID> uuids) {
+        int deleted = 0;
+        for (UUID uuid : uuids) {
+            if (deletePlayerData(uuid)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Delete data for a specific player
+     */
+    @Override
+    public synchronized boolean deletePlayerData(UUID uuid) {
+        try {
+            open();
+        } catch (Exception e) {
+            logger.warning("Failed to open mapped storage: " + e.getMessage());
+            return false;
+        }
+        Integer slot = slotIndex.remove(uuid);
+        if (slot == null) {
+            return false;
+        }
+
+        clearSlot(slot);
+        freeSlots.push(slot);
+        return true;
+    }
+}
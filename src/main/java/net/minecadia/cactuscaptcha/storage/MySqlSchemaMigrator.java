@@ -0,0 +1,218 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Brings the cactuscaptcha_players table up to the current schema version.
+ * The version is tracked in cactuscaptcha_schema, so every migration runs exactly once.
+ *
+ * Version 1 is the original table with a VARCHAR(36) key and five stat columns.
+ * Version 2 keys rows by BINARY(16), stores the full record and indexes last_updated.
+ * The 1 to 2 migration builds the new table beside the old one and copies rows in
+ * keyset-ordered batches. Each batch is a short transaction and its cursor is recorded,
+ * so the table is never locked for long and an interrupted copy resumes where it stopped.
+ * Rows written while the copy ran (by another server on the same database) are then
+ * copied again, by last_updated, until a pass finds few enough to finish, and the tables
+ * are swapped with one atomic RENAME.
+ *
+ * A write landing between the last catch-up pass and the RENAME, and a delete made during
+ * the copy, are not carried over. Stop the other servers' writers while migrating if that
+ * matters.
+ */
+public class MySqlSchemaMigrator {
+
+    static final int CURRENT_VERSION = 2;
+
+    private static final String TABLE = "cactuscaptcha_players";
+    private static final String NEW_TABLE = "cactuscaptcha_players_v2";
+    private static final String LEGACY_TABLE = "cactuscaptcha_players_v1";
+
+    private static final String CREATE_SCHEMA_SQL = "CREATE TABLE IF NOT EXISTS cactuscaptcha_schema (" +
+            "id INT PRIMARY KEY, " +
+            "version INT NOT NULL, " +
+            "backfill_cursor VARCHAR(36) NULL, " +
+            "backfill_started BIGINT NULL" +
+            ")";
+    private static final String SELECT_SCHEMA_SQL = "SELECT version, backfill_cursor, backfill_started FROM cactuscaptcha_schema WHERE id = 1";
+    private static final String UPSERT_SCHEMA_SQL = "INSERT INTO cactuscaptcha_schema (id, version, backfill_cursor, backfill_started) " +
+            "VALUES (1, ?, ?, ?) ON DUPLICATE KEY UPDATE version = VALUES(version), " +
+            "backfill_cursor = VALUES(backfill_cursor), backfill_started = VALUES(backfill_started)";
+
+    private static final String SELECT_LEGACY_BATCH_SQL = "SELECT uuid, total_attempts, passes, fails, penalty_until, last_updated " +
+            "FROM " + TABLE + " WHERE uuid > ? ORDER BY uuid LIMIT ?";
+    private static final String COPY_SQL = "INSERT INTO " + NEW_TABLE + " (uuid, total_attempts, passes, fails, penalty_until, last_updated) " +
+            "VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE uuid = uuid"; // Rows already copied before an interruption are kept
+    private static final String SELECT_CHANGED_BATCH_SQL = "SELECT uuid, total_attempts, passes, fails, penalty_until, last_updated " +
+            "FROM " + TABLE + " WHERE last_updated >= ? AND uuid > ? ORDER BY uuid LIMIT ?";
+    private static final String RECOPY_SQL = "INSERT INTO " + NEW_TABLE + " (uuid, total_attempts, passes, fails, penalty_until, last_updated) " +
+            "VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE total_attempts = VALUES(total_attempts), passes = VALUES(passes), fails = VALUES(fails), " +
+            "penalty_until = VALUES(penalty_until), last_updated = VALUES(last_updated)";
+
+    // last_updated comes from each writer's clock, so catch-up passes look back this far further
+    private static final long CLOCK_SKEW_MS = 5L * 60L * 1000L;
+    private static final int MAX_CATCH_UP_PASSES = 5;
+
+    private final ConnectionPool pool;
+    private final int batchSize;
+    private final Logger logger;
+
+    public MySqlSchemaMigrator(ConnectionPool pool, int batchSize, Logger logger) {
+        this.pool = pool;
+        this.batchSize = Math.max(1, batchSize);
+        this.logger = logger;
+    }
+
+    /**
+     * Runs every pending migration.
+     */
+    public void migrate() throws SQLException {
+        try (ConnectionPool.PooledConnection connection = pool.borrow();
+             Statement stmt = connection.getConnection().createStatement()) {
+            stmt.executeUpdate(CREATE_SCHEMA_SQL);
+
+            int version;
+            String cursor = null;
+            long started = 0L;
+            try (ResultSet rs = stmt.executeQuery(SELECT_SCHEMA_SQL)) {
+                if (rs.next()) {
+                    version = rs.getInt("version");
+                    cursor = rs.getString("backfill_cursor");
+                    started = rs.getLong("backfill_started");
+                } else {
+                    // No schema row: either a fresh database or one created before versioning
+                    version = tableExists(connection.getConnection(), TABLE) ? 1 : 0;
+                }
+            }
+
+            if (version == 0) {
+                stmt.executeUpdate(MySqlStorage.createTableSql(TABLE));
+                setVersion(connection, CURRENT_VERSION, null, 0L);
+                return;
+            }
+            if (version < 2) {
+                migrateToBinaryKeys(connection, stmt, cursor, started);
+            }
+        }
+    }
+
+    /**
+     * @param cursor Last legacy key copied by an interrupted run, or null
+     * @param started When the interrupted run began copying, or 0
+     */
+    private void migrateToBinaryKeys(ConnectionPool.PooledConnection connection, Statement stmt, String cursor,
+                                     long started) throws SQLException {
+        Connection raw = connection.getConnection();
+        if (!tableExists(raw, NEW_TABLE) && tableExists(raw, LEGACY_TABLE)) {
+            // Interrupted after the swap but before the version was recorded
+            setVersion(connection, 2, null, 0L);
+            return;
+        }
+
+        logger.info("Migrating " + TABLE + " to BINARY(16) keys" + (cursor != null ? ", resuming after " + cursor : ""));
+        stmt.executeUpdate(MySqlStorage.createTableSql(NEW_TABLE));
+
+        long start = System.currentTimeMillis();
+        long copyStart = started > 0L ? started : start;
+        int copied = copyBatches(connection, SELECT_LEGACY_BATCH_SQL, COPY_SQL, -1L,
+                cursor != null ? cursor : "", copyStart);
+
+        // Rows changed since the copy began may have been copied before the change
+        long since = copyStart - CLOCK_SKEW_MS;
+        for (int pass = 0; pass < MAX_CATCH_UP_PASSES; pass++) {
+            long passStart = System.currentTimeMillis();
+            int changed = copyBatches(connection, SELECT_CHANGED_BATCH_SQL, RECOPY_SQL, since, "", copyStart);
+            if (changed < batchSize) {
+                break; // Few enough that the swap follows right behind
+            }
+            since = passStart - CLOCK_SKEW_MS;
+        }
+
+        stmt.executeUpdate("RENAME TABLE " + TABLE + " TO " + LEGACY_TABLE + ", " + NEW_TABLE + " TO " + TABLE);
+        setVersion(connection, 2, null, 0L);
+        logger.info("Migrated " + copied + " player rows in " + (System.currentTimeMillis() - start) + "ms; "
+                + "the old table was kept as " + LEGACY_TABLE + " and can be dropped");
+    }
+
+    /**
+     * Copies legacy rows in keyset-ordered batches, one short transaction each. The full
+     * copy records its cursor with every batch so an interrupted run resumes from it.
+     *
+     * @param since Lower bound on last_updated for catch-up passes, or -1 for the full copy
+     * @return The number of rows copied
+     */
+    private int copyBatches(ConnectionPool.PooledConnection connection, String selectSql, String insertSql,
+                            long since, String after, long copyStart) throws SQLException {
+        int copied = 0;
+        String last = after;
+        while (true) {
+            connection.begin();
+            int rows = 0;
+            try {
+                PreparedStatement select = connection.prepare(selectSql);
+                int param = 1;
+                if (since >= 0L) {
+                    select.setLong(param++, since);
+                }
+                select.setString(param++, last);
+                select.setInt(param, batchSize);
+                PreparedStatement insert = connection.prepare(insertSql);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        last = rs.getString("uuid");
+                        insert.setBytes(1, MySqlStorage.toBytes(UUID.fromString(last)));
+                        insert.setInt(2, rs.getInt("total_attempts"));
+                        insert.setInt(3, rs.getInt("passes"));
+                        insert.setInt(4, rs.getInt("fails"));
+                        insert.setLong(5, rs.getLong("penalty_until"));
+                        insert.setLong(6, rs.getLong("last_updated"));
+                        insert.addBatch();
+                        rows++;
+                    }
+                }
+                if (rows > 0) {
+                    insert.executeBatch();
+                }
+                if (since < 0L) {
+                    setVersion(connection, 1, last, copyStart);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+
+            copied += rows;
+            if (rows < batchSize) {
+                return copied;
+            }
+        }
+    }
+
+    private void setVersion(ConnectionPool.PooledConnection connection, int version, String cursor,
+                            long started) throws SQLException {
+        PreparedStatement stmt = connection.prepare(UPSERT_SCHEMA_SQL);
+        stmt.setInt(1, version);
+        stmt.setString(2, cursor);
+        if (started > 0L) {
+            stmt.setLong(3, started);
+        } else {
+            stmt.setNull(3, Types.BIGINT);
+        }
+        stmt.executeUpdate();
+    }
+
+    private static boolean tableExists(Connection connection, String table) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getTables(connection.getCatalog(), null, table, new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+}
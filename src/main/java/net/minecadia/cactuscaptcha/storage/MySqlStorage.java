@@ -2,196 +2,449 @@ package net.minecadia.cactuscaptcha.storage;
 
 import net.minecadia.cactuscaptcha.CactusCaptcha;
 
+import java.nio.ByteBuffer;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class MySqlStorage implements StorageManager.StorageBackend {
 
+    static final String CREATE_TABLE_SQL = createTableSql("cactuscaptcha_players");
+
+    private static final String UPSERT_PREFIX = "INSERT INTO cactuscaptcha_players (uuid, total_attempts, passes, fails, penalty_until, " +
+            "cooldown_until, fail_chain_count, captcha_fails, movement_pattern_percent, last_updated) VALUES ";
+    private static final String UPSERT_ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int UPSERT_COLUMNS = 10;
+    private static final String UPSERT_SUFFIX = " ON DUPLICATE KEY UPDATE " +
+            "total_attempts = VALUES(total_attempts), " +
+            "passes = VALUES(passes), " +
+            "fails = VALUES(fails), " +
+            "penalty_until = VALUES(penalty_until), " +
+            "cooldown_until = VALUES(cooldown_until), " +
+            "fail_chain_count = VALUES(fail_chain_count), " +
+            "captcha_fails = VALUES(captcha_fails), " +
+            "movement_pattern_percent = VALUES(movement_pattern_percent), " +
+            "last_updated = VALUES(last_updated)";
+
+    static final String UPSERT_SQL = upsertSql(1);
+
+    private static final String SELECT_ALL_SQL = "SELECT uuid, total_attempts, passes, fails, penalty_until, cooldown_until, " +
+            "fail_chain_count, captcha_fails, movement_pattern_percent, last_updated FROM cactuscaptcha_players";
+    private static final String SELECT_ONE_SQL = SELECT_ALL_SQL + " WHERE uuid = ?";
+    private static final String SELECT_PAGE_SQL = SELECT_ALL_SQL + " ORDER BY uuid LIMIT ? OFFSET ?";
+    private static final String SELECT_AFTER_SQL = SELECT_ALL_SQL + " WHERE uuid > ? ORDER BY uuid LIMIT ?";
+    // Chunked so one cleanup never holds row locks on the whole range; served by idx_last_updated
+    private static final String DELETE_OLD_SQL = "DELETE FROM cactuscaptcha_players WHERE last_updated < ? ORDER BY last_updated LIMIT ?";
+    private static final int CLEANUP_CHUNK_SIZE = 500;
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM cactuscaptcha_players";
+    private static final String EXISTS_SQL = "SELECT 1 FROM cactuscaptcha_players WHERE uuid = ? LIMIT 1";
+    private static final String DELETE_SQL = "DELETE FROM cactuscaptcha_players WHERE uuid = ?";
+    private static final String DELETE_IN_PREFIX = "DELETE FROM cactuscaptcha_players WHERE uuid IN (";
+    private static final String SELECT_IN_PREFIX = SELECT_ALL_SQL + " WHERE uuid IN (";
+
     private final CactusCaptcha plugin;
-    private Connection connection;
-    private final String host;
-    private final int port;
-    private final String database;
-    private final String username;
-    private final String password;
+    private final ConnectionPool pool;
+    private final int rowsPerStatement;
+    private final int rowsPerTransaction;
+    private final String multiRowUpsertSql;
+    private final int poolSize;
+    private final int migrationBatchSize;
+
+    // Set by initialize(); the table must not be used in its old layout
+    private volatile boolean schemaReady;
+    private volatile SQLException schemaFailure;
+
+    // Save chunk timings, one chunk per transaction
+    private long chunkCount;
+    private long chunkRows;
+    private long lastChunkNanos;
+    private long maxChunkNanos;
+    private long totalChunkNanos;
 
     public MySqlStorage(CactusCaptcha plugin) {
         this.plugin = plugin;
-        this.host = plugin.getConfig().getString("mysql.host", "localhost");
-        this.port = plugin.getConfig().getInt("mysql.port", 3306);
-        this.database = plugin.getConfig().getString("mysql.database", "cactuscaptcha");
-        this.username = plugin.getConfig().getString("mysql.user", "root");
-        this.password = plugin.getConfig().getString("mysql.password", "password");
-        
+        String host = plugin.getConfig().getString("mysql.host", "localhost");
+        int port = plugin.getConfig().getInt("mysql.port", 3306);
+        String database = plugin.getConfig().getString("mysql.database", "cactuscaptcha");
+        String username = plugin.getConfig().getString("mysql.user", "root");
+        String password = plugin.getConfig().getString("mysql.password", "password");
+        int poolSize = plugin.getConfig().getInt("mysql.pool.maxSize", 4);
+        long borrowTimeoutMs = plugin.getConfig().getLong("mysql.pool.timeoutMs", 5000L);
+        this.rowsPerStatement = Math.max(1, plugin.getConfig().getInt("mysql.batch.rowsPerStatement", 100));
+        this.rowsPerTransaction = Math.max(rowsPerStatement, plugin.getConfig().getInt("mysql.batch.rowsPerTransaction", 1000));
+        this.multiRowUpsertSql = upsertSql(rowsPerStatement);
+
+        // The pool validates and replaces dead connections, so the driver's autoReconnect is not used.
+        // rewriteBatchedStatements lets the driver send a JDBC batch as one multi-row statement
+        String url = "jdbc:mysql://" + host + ":" + port + "/" + database + "?useSSL=false&rewriteBatchedStatements=true";
+        this.pool = new ConnectionPool(url, username, password, poolSize, borrowTimeoutMs,
+                Connection.TRANSACTION_READ_COMMITTED, plugin.getLogger());
+
+        this.poolSize = poolSize;
+        this.migrationBatchSize = plugin.getConfig().getInt("mysql.migration.batchSize", 1000);
+    }
+
+    /**
+     * Creates the table on a fresh database and upgrades older layouts in place. Runs on an
+     * I/O thread, since upgrading a large table can take minutes; until it has finished every
+     * call fails fast, and if it fails they keep failing, so nothing reads or writes a table
+     * in the wrong layout.
+     */
+    @Override
+    public void initialize() throws SQLException {
         try {
-            connect();
-            createTables();
+            new MySqlSchemaMigrator(pool, migrationBatchSize, plugin.getLogger()).migrate();
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to initialize MySQL storage: " + e.getMessage());
+            schemaFailure = e;
+            plugin.getLogger().severe("Failed to initialize MySQL storage, it stays unavailable until the next start: " + e.getMessage());
+            throw e;
         }
+        schemaReady = true;
+        plugin.getLogger().info("Connected to MySQL database (pool size " + poolSize + ")");
     }
 
-    private void connect() throws SQLException {
-        String url = "jdbc:mysql://" + host + ":" + port + "/" + database + "?useSSL=false&autoReconnect=true";
-        connection = DriverManager.getConnection(url, username, password);
-        plugin.getLogger().info("Connected to MySQL database");
+    private ConnectionPool.PooledConnection borrow() throws SQLException {
+        if (!schemaReady) {
+            SQLException failure = schemaFailure;
+            if (failure != null) {
+                throw new SQLException("MySQL storage unavailable, schema migration failed: " + failure.getMessage(), failure);
+            }
+            throw new SQLTransientException("MySQL schema migration has not finished yet");
+        }
+        return pool.borrow();
     }
 
-    private void createTables() throws SQLException {
-        String createTableSQL = "CREATE TABLE IF NOT EXISTS cactuscaptcha_players (" +
-                "uuid VARCHAR(36) PRIMARY KEY, " +
+    /**
+     * Current table layout: 16-byte binary keys instead of 36-character strings halve the
+     * primary key and every secondary index entry, and keep key comparisons to a memcmp.
+     */
+    static String createTableSql(String table) {
+        return "CREATE TABLE IF NOT EXISTS " + table + " (" +
+                "uuid BINARY(16) PRIMARY KEY, " +
                 "total_attempts INT DEFAULT 0, " +
                 "passes INT DEFAULT 0, " +
                 "fails INT DEFAULT 0, " +
                 "penalty_until BIGINT DEFAULT 0, " +
-                "last_updated BIGINT DEFAULT 0" +
+                "cooldown_until BIGINT DEFAULT 0, " +
+                "fail_chain_count INT DEFAULT 0, " +
+                "captcha_fails INT DEFAULT 0, " +
+                "movement_pattern_percent INT DEFAULT 0, " +
+                "last_updated BIGINT DEFAULT 0, " +
+                "INDEX idx_last_updated (last_updated)" +
                 ")";
-        
-        try (PreparedStatement stmt = connection.prepareStatement(createTableSQL)) {
-            stmt.executeUpdate();
-            plugin.getLogger().info("MySQL tables created/verified");
+    }
+
+    /**
+     * Builds a delete for the given number of UUIDs. Unlike a batch, which the driver reports
+     * as SUCCESS_NO_INFO once rewriteBatchedStatements merges it, one statement returns the
+     * exact number of rows deleted.
+     */
+    static String deleteSql(int rows) {
+        return inListSql(DELETE_IN_PREFIX, rows);
+    }
+
+    static String selectSql(int rows) {
+        return inListSql(SELECT_IN_PREFIX, rows);
+    }
+
+    private static String inListSql(String prefix, int rows) {
+        StringBuilder sql = new StringBuilder(prefix.length() + rows * 3);
+        sql.append(prefix);
+        for (int i = 0; i < rows; i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+        }
+        return sql.append(')').toString();
+    }
+
+    /**
+     * Binds a chunk of at most CLEANUP_CHUNK_SIZE UUIDs to an IN list padded to a power of two
+     * with repeats of the last UUID, so only a few statement shapes are ever cached; a repeated
+     * UUID matches its row only once.
+     */
+    private static PreparedStatement prepareInList(ConnectionPool.PooledConnection connection, boolean delete,
+                                                   List<UUID> chunk) throws SQLException {
+        int size = 1;
+        while (size < chunk.size()) {
+            size <<= 1;
+        }
+        size = Math.min(size, CLEANUP_CHUNK_SIZE);
+        PreparedStatement stmt = connection.prepare(delete ? deleteSql(size) : selectSql(size));
+        for (int i = 0; i < size; i++) {
+            stmt.setBytes(i + 1, toBytes(chunk.get(Math.min(i, chunk.size() - 1))));
+        }
+        return stmt;
+    }
+
+    /**
+     * Upsert of the given number of rows in one INSERT statement.
+     */
+    static String upsertSql(int rows) {
+        StringBuilder sql = new StringBuilder(UPSERT_PREFIX.length() + rows * (UPSERT_ROW.length() + 2) + UPSERT_SUFFIX.length());
+        sql.append(UPSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(UPSERT_ROW);
         }
+        return sql.append(UPSERT_SUFFIX).toString();
+    }
+
+    static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    static UUID fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
     }
 
     @Override
     public void loadAllData(ConcurrentHashMap<UUID, StorageManager.PlayerStats> playerStats) throws Exception {
-        ensureConnection();
-        
-        String selectSQL = "SELECT uuid, total_attempts, passes, fails, penalty_until FROM cactuscaptcha_players";
-        
-        try (PreparedStatement stmt = connection.prepareStatement(selectSQL);
-             ResultSet rs = stmt.executeQuery()) {
-            
+        try (ConnectionPool.PooledConnection connection = borrow();
+             ResultSet rs = connection.prepare(SELECT_ALL_SQL).executeQuery()) {
+
             int loadedCount = 0;
             while (rs.next()) {
                 try {
-                    UUID uuid = UUID.fromString(rs.getString("uuid"));
-                    int totalAttempts = rs.getInt("total_attempts");
-                    int passes = rs.getInt("passes");
-                    int fails = rs.getInt("fails");
-                    long penaltyUntil = rs.getLong("penalty_until");
-                    
-                    StorageManager.PlayerStats stats = new StorageManager.PlayerStats(uuid, totalAttempts, passes, fails, penaltyUntil);
-                    playerStats.put(uuid, stats);
+                    StorageManager.PlayerStats stats = readRow(rs);
+                    playerStats.put(stats.uuid, stats);
                     loadedCount++;
-                    
+
                 } catch (Exception e) {
                     plugin.getLogger().warning("Failed to load player data from MySQL: " + e.getMessage());
                 }
             }
-            
+
             plugin.getLogger().info("Loaded " + loadedCount + " player records from MySQL storage");
         }
     }
 
+    private StorageManager.PlayerStats readRow(ResultSet rs) throws SQLException {
+        UUID uuid = fromBytes(rs.getBytes("uuid"));
+        int totalAttempts = rs.getInt("total_attempts");
+        int passes = rs.getInt("passes");
+        int fails = rs.getInt("fails");
+        long penaltyUntil = rs.getLong("penalty_until");
+        long cooldownUntil = rs.getLong("cooldown_until");
+        int failChainCount = rs.getInt("fail_chain_count");
+        int captchaFails = rs.getInt("captcha_fails");
+        int movementPatternPercent = rs.getInt("movement_pattern_percent");
+        long lastUpdated = rs.getLong("last_updated");
+
+        return new StorageManager.PlayerStats(new PlayerStatsSnapshot(uuid, totalAttempts, passes, fails, penaltyUntil,
+                cooldownUntil, failChainCount, captchaFails, movementPatternPercent, lastUpdated, 0L));
+    }
+
     @Override
-    public void saveAllData(ConcurrentHashMap<UUID, StorageManager.PlayerStats> playerStats) throws Exception {
-        ensureConnection();
-        
-        String upsertSQL = "INSERT INTO cactuscaptcha_players (uuid, total_attempts, passes, fails, penalty_until, last_updated) " +
-                "VALUES (?, ?, ?, ?, ?, ?) " +
-                "ON DUPLICATE KEY UPDATE " +
-                "total_attempts = VALUES(total_attempts), " +
-                "passes = VALUES(passes), " +
-                "fails = VALUES(fails), " +
-                "penalty_until = VALUES(penalty_until), " +
-                "last_updated = VALUES(last_updated)";
-        
-        try (PreparedStatement stmt = connection.prepareStatement(upsertSQL)) {
-            connection.setAutoCommit(false);
-            
-            for (StorageManager.PlayerStats stats : playerStats.values()) {
-                stmt.setString(1, stats.uuid.toString());
-                stmt.setInt(2, stats.totalAttempts);
-                stmt.setInt(3, stats.passes);
-                stmt.setInt(4, stats.fails);
-                stmt.setLong(5, stats.penaltyUntil);
-                stmt.setLong(6, System.currentTimeMillis());
-                stmt.addBatch();
+    public StorageManager.PlayerStats loadPlayerData(UUID uuid) throws SQLException {
+        try (ConnectionPool.PooledConnection connection = borrow()) {
+            PreparedStatement stmt = connection.prepare(SELECT_ONE_SQL);
+            stmt.setBytes(1, toBytes(uuid));
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? readRow(rs) : null;
             }
-            
-            stmt.executeBatch();
-            connection.commit();
-            connection.setAutoCommit(true);
-            
-        } catch (SQLException e) {
-            connection.rollback();
-            connection.setAutoCommit(true);
-            throw e;
         }
     }
 
-    public void savePlayerData(StorageManager.PlayerStats stats) throws SQLException {
-        ensureConnection();
-        
-        String upsertSQL = "INSERT INTO cactuscaptcha_players (uuid, total_attempts, passes, fails, penalty_until, last_updated) " +
-                "VALUES (?, ?, ?, ?, ?, ?) " +
-                "ON DUPLICATE KEY UPDATE " +
-                "total_attempts = VALUES(total_attempts), " +
-                "passes = VALUES(passes), " +
-                "fails = VALUES(fails), " +
-                "penalty_until = VALUES(penalty_until), " +
-                "last_updated = VALUES(last_updated)";
-        
-        try (PreparedStatement stmt = connection.prepareStatement(upsertSQL)) {
-            stmt.setString(1, stats.uuid.toString());
-            stmt.setInt(2, stats.totalAttempts);
-            stmt.setInt(3, stats.passes);
-            stmt.setInt(4, stats.fails);
-            stmt.setLong(5, stats.penaltyUntil);
-            stmt.setLong(6, System.currentTimeMillis());
-            stmt.executeUpdate();
+    @Override
+    public List<StorageManager.PlayerStats> loadPlayers(Collection<UUID> uuids) throws SQLException {
+        List<StorageManager.PlayerStats> found = new ArrayList<>(uuids.size());
+        if (uuids.isEmpty()) {
+            return found;
         }
+
+        List<UUID> rows = new ArrayList<>(uuids);
+        try (ConnectionPool.PooledConnection connection = borrow()) {
+            for (int from = 0; from < rows.size(); from += CLEANUP_CHUNK_SIZE) {
+                List<UUID> chunk = rows.subList(from, Math.min(rows.size(), from + CLEANUP_CHUNK_SIZE));
+                try (ResultSet rs = prepareInList(connection, false, chunk).executeQuery()) {
+                    while (rs.next()) {
+                        found.add(readRow(rs));
+                    }
+                }
+            }
+        }
+        return found;
     }
 
-    public void savePlayerDataAsync(StorageManager.PlayerStats stats) {
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            try {
-                savePlayerData(stats);
-            } catch (SQLException e) {
-                plugin.getLogger().warning("Failed to save player data to MySQL: " + e.getMessage());
+    @Override
+    public List<StorageManager.PlayerStats> loadPlayerPage(int offset, int limit) throws SQLException {
+        List<StorageManager.PlayerStats> page = new ArrayList<>(limit);
+        try (ConnectionPool.PooledConnection connection = borrow()) {
+            PreparedStatement stmt = connection.prepare(SELECT_PAGE_SQL);
+            stmt.setInt(1, limit);
+            stmt.setInt(2, offset);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    page.add(readRow(rs));
+                }
             }
-        });
+        }
+        return page;
     }
 
-    private void ensureConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            connect();
+    @Override
+    public List<StorageManager.PlayerStats> loadPlayersAfter(UUID after, int limit) throws SQLException {
+        List<StorageManager.PlayerStats> page = new ArrayList<>(limit);
+        try (ConnectionPool.PooledConnection connection = borrow()) {
+            PreparedStatement stmt = connection.prepare(SELECT_AFTER_SQL);
+            stmt.setBytes(1, after != null ? toBytes(after) : new byte[0]); // Every key sorts after the empty string
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    page.add(readRow(rs));
+                }
+            }
         }
+        return page;
     }
 
     @Override
-    public void close() {
-        if (connection != null) {
+    public void saveData(Collection<PlayerStatsSnapshot> changed) throws Exception {
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        // Runs on its own pooled connection, so single-row saves can proceed in parallel.
+        // Rows are committed rowsPerTransaction at a time so no save holds row locks for its whole run;
+        // if a later chunk fails, the caller retries everything and the committed chunks are simply rewritten.
+        List<PlayerStatsSnapshot> rows = changed instanceof List ? (List<PlayerStatsSnapshot>) changed : new ArrayList<>(changed);
+        try (ConnectionPool.PooledConnection connection = borrow()) {
+            for (int from = 0; from < rows.size(); from += rowsPerTransaction) {
+                List<PlayerStatsSnapshot> chunk = rows.subList(from, Math.min(rows.size(), from + rowsPerTransaction));
+                long start = System.nanoTime();
+                connection.begin();
+                try {
+                    writeChunk(connection, chunk);
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    connection.markSuspect();
+                    throw e;
+                }
+                recordChunk(chunk.size(), System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Writes the rows as multi-row upserts of rowsPerStatement rows; the remainder goes through the
+     * single-row statement, which the driver folds into one statement as well.
+     */
+    private void writeChunk(ConnectionPool.PooledConnection connection, List<PlayerStatsSnapshot> chunk) throws SQLException {
+        int full = chunk.size() - chunk.size() % rowsPerStatement;
+        if (full > 0) {
+            PreparedStatement stmt = connection.prepare(multiRowUpsertSql);
+            for (int i = 0; i < full; i += rowsPerStatement) {
+                for (int row = 0; row < rowsPerStatement; row++) {
+                    bindUpsert(stmt, row * UPSERT_COLUMNS, chunk.get(i + row));
+                }
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        if (full < chunk.size()) {
+            PreparedStatement stmt = connection.prepare(UPSERT_SQL);
+            for (int i = full; i < chunk.size(); i++) {
+                bindUpsert(stmt, 0, chunk.get(i));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private synchronized void recordChunk(int rows, long nanos) {
+        chunkCount++;
+        chunkRows += rows;
+        lastChunkNanos = nanos;
+        totalChunkNanos += nanos;
+        if (nanos > maxChunkNanos) {
+            maxChunkNanos = nanos;
+        }
+    }
+
+    public void savePlayerData(PlayerStatsSnapshot stats) throws SQLException {
+        try (ConnectionPool.PooledConnection connection = borrow()) {
+            PreparedStatement stmt = connection.prepare(UPSERT_SQL);
+            bindUpsert(stmt, 0, stats);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Binds one row of an upsert, starting after the given parameter offset.
+     */
+    private void bindUpsert(PreparedStatement stmt, int offset, PlayerStatsSnapshot stats) throws SQLException {
+        stmt.setBytes(offset + 1, toBytes(stats.uuid));
+        stmt.setInt(offset + 2, stats.totalAttempts);
+        stmt.setInt(offset + 3, stats.passes);
+        stmt.setInt(offset + 4, stats.fails);
+        stmt.setLong(offset + 5, stats.penaltyUntil);
+        stmt.setLong(offset + 6, stats.cooldownUntil);
+        stmt.setInt(offset + 7, stats.failChainCount);
+        stmt.setInt(offset + 8, stats.captchaFails);
+        stmt.setInt(offset + 9, stats.movementPatternPercent);
+        stmt.setLong(offset + 10, stats.lastUpdated > 0 ? stats.lastUpdated : System.currentTimeMillis());
+    }
+
+    @Override
+    public int deletePlayers(Collection<UUID> uuids) throws SQLException {
+        if (uuids.isEmpty()) {
+            return 0;
+        }
+
+        List<UUID> rows = new ArrayList<>(uuids);
+        try (ConnectionPool.PooledConnection connection = borrow()) {
+            connection.begin();
             try {
-                connection.close();
-                plugin.getLogger().info("MySQL connection closed");
+                int deleted = 0;
+                for (int from = 0; from < rows.size(); from += CLEANUP_CHUNK_SIZE) {
+                    List<UUID> chunk = rows.subList(from, Math.min(rows.size(), from + CLEANUP_CHUNK_SIZE));
+                    deleted += prepareInList(connection, true, chunk).executeUpdate();
+                }
+                connection.commit();
+                return deleted;
             } catch (SQLException e) {
-                plugin.getLogger().warning("Error closing MySQL connection: " + e.getMessage());
+                connection.rollback();
+                connection.markSuspect();
+                throw e;
             }
         }
     }
 
+    @Override
+    public void close() {
+        pool.close();
+        plugin.getLogger().info("MySQL connection pool closed");
+    }
+
     /**
      * Clean up old player data (optional maintenance method)
      */
     public void cleanupOldData(long maxAgeMs) {
-        try {
-            ensureConnection();
-            
-            String deleteSQL = "DELETE FROM cactuscaptcha_players WHERE last_updated < ?";
-            long cutoffTime = System.currentTimeMillis() - maxAgeMs;
-            
-            try (PreparedStatement stmt = connection.prepareStatement(deleteSQL)) {
-                stmt.setLong(1, cutoffTime);
-                int deletedCount = stmt.executeUpdate();
-                
-                if (deletedCount > 0) {
-                    plugin.getLogger().info("Cleaned up " + deletedCount + " old player records from MySQL");
-                }
+        long cutoff = System.currentTimeMillis() - maxAgeMs;
+        try (ConnectionPool.PooledConnection connection = borrow()) {
+            PreparedStatement stmt = connection.prepare(DELETE_OLD_SQL);
+            int deletedCount = 0;
+            int deleted;
+            do {
+                stmt.setLong(1, cutoff);
+                stmt.setInt(2, CLEANUP_CHUNK_SIZE);
+                deleted = stmt.executeUpdate(); // Auto-commit: each chunk is its own short transaction
+                deletedCount += deleted;
+            } while (deleted == CLEANUP_CHUNK_SIZE);
+
+            if (deletedCount > 0) {
+                plugin.getLogger().info("Cleaned up " + deletedCount + " old player records from MySQL");
             }
-            
+
         } catch (SQLException e) {
             plugin.getLogger().warning("Failed to cleanup old MySQL data: " + e.getMessage());
         }
@@ -200,65 +453,57 @@ public class MySqlStorage implements StorageManager.StorageBackend {
     /**
      * Get the number of stored player records
      */
-    public int getStoredPlayerCount() {
-        try {
-            ensureConnection();
-            
-            String countSQL = "SELECT COUNT(*) FROM cactuscaptcha_players";
-            try (PreparedStatement stmt = connection.prepareStatement(countSQL);
-                 ResultSet rs = stmt.executeQuery()) {
-                
-                if (rs.next()) {
-                    return rs.getInt(1);
-                }
-            }
-            
-        } catch (SQLException e) {
-            plugin.getLogger().warning("Failed to get player count from MySQL: " + e.getMessage());
+    @Override
+    public int getStoredPlayerCount() throws SQLException {
+        try (ConnectionPool.PooledConnection connection = borrow();
+             ResultSet rs = connection.prepare(COUNT_SQL).executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
         }
-        
-        return 0;
     }
 
     /**
      * Check if data exists for a specific player
      */
-    public boolean hasPlayerData(UUID uuid) {
-        try {
-            ensureConnection();
-            
-            String existsSQL = "SELECT 1 FROM cactuscaptcha_players WHERE uuid = ? LIMIT 1";
-            try (PreparedStatement stmt = connection.prepareStatement(existsSQL)) {
-                stmt.setString(1, uuid.toString());
-                try (ResultSet rs = stmt.executeQuery()) {
-                    return rs.next();
-                }
+    @Override
+    public boolean hasPlayerData(UUID uuid) throws SQLException {
+        try (ConnectionPool.PooledConnection connection = borrow()) {
+            PreparedStatement stmt = connection.prepare(EXISTS_SQL);
+            stmt.setBytes(1, toBytes(uuid));
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
             }
-            
-        } catch (SQLException e) {
-            plugin.getLogger().warning("Failed to check player data existence in MySQL: " + e.getMessage());
         }
-        
-        return false;
     }
 
     /**
      * Delete data for a specific player
      */
-    public boolean deletePlayerData(UUID uuid) {
-        try {
-            ensureConnection();
-            
-            String deleteSQL = "DELETE FROM cactuscaptcha_players WHERE uuid = ?";
-            try (PreparedStatement stmt = connection.prepareStatement(deleteSQL)) {
-                stmt.setString(1, uuid.toString());
-                return stmt.executeUpdate() > 0;
-            }
-            
-        } catch (SQLException e) {
-            plugin.getLogger().warning("Failed to delete player data from MySQL: " + e.getMessage());
+    @Override
+    public boolean deletePlayerData(UUID uuid) throws SQLException {
+        try (ConnectionPool.PooledConnection connection = borrow()) {
+            PreparedStatement stmt = connection.prepare(DELETE_SQL);
+            stmt.setBytes(1, toBytes(uuid));
+            return stmt.executeUpdate() > 0;
         }
-        
-        return false;
     }
-}
\ No newline at end of file
+
+    public synchronized long getSaveChunkCount() {
+        return chunkCount;
+    }
+
+    public synchronized long getSavedRowCount() {
+        return chunkRows;
+    }
+
+    public synchronized double getLastSaveChunkMillis() {
+        return lastChunkNanos / 1_000_000.0;
+    }
+
+    public synchronized double getMaxSaveChunkMillis() {
+        return maxChunkNanos / 1_000_000.0;
+    }
+
+    public synchronized double getAverageSaveChunkMillis() {
+        return chunkCount == 0 ? 0.0 : (totalChunkNanos / (double) chunkCount) / 1_000_000.0;
+    }
+}
@@ -0,0 +1,79 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Fixed-width binary encoding of a PlayerStats record.
+ * Shared by the binary storage backends so every file format agrees on field order.
+ */
+public final class PlayerStatsCodec {
+
+    /**
+     * Size in bytes of one encoded record:
+     * uuid (16), totalAttempts, passes, fails (3 x 4), penaltyUntil, cooldownUntil (2 x 8),
+     * failChainCount, captchaFails, movementPatternPercent (3 x 4), lastUpdated (8).
+     */
+    public static final int RECORD_SIZE = 16 + 12 + 16 + 12 + 8;
+
+    private PlayerStatsCodec() {
+    }
+
+    /**
+     * Writes the given stats at the buffer's current position.
+     *
+     * @param buffer The target buffer, with at least RECORD_SIZE bytes remaining
+     * @param stats The stats to encode
+     */
+    public static void write(ByteBuffer buffer, PlayerStatsSnapshot stats) {
+        buffer.putLong(stats.uuid.getMostSignificantBits());
+        buffer.putLong(stats.uuid.getLeastSignificantBits());
+        buffer.putInt(stats.totalAttempts);
+        buffer.putInt(stats.passes);
+        buffer.putInt(stats.fails);
+        buffer.putLong(stats.penaltyUntil);
+        buffer.putLong(stats.cooldownUntil);
+        buffer.putInt(stats.failChainCount);
+        buffer.putInt(stats.captchaFails);
+        buffer.putInt(stats.movementPatternPercent);
+        buffer.putLong(stats.lastUpdated);
+    }
+
+    /**
+     * Reads one record from the buffer's current position.
+     *
+     * @param buffer The source buffer, with at least RECORD_SIZE bytes remaining
+     * @return The decoded stats
+     */
+    public static StorageManager.PlayerStats read(ByteBuffer buffer) {
+        UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+        int totalAttempts = buffer.getInt();
+        int passes = buffer.getInt();
+        int fails = buffer.getInt();
+        long penaltyUntil = buffer.getLong();
+        long cooldownUntil = buffer.getLong();
+        int failChainCount = buffer.getInt();
+        int captchaFails = buffer.getInt();
+        int movementPatternPercent = buffer.getInt();
+        long lastUpdated = buffer.getLong();
+
+        return new StorageManager.PlayerStats(new PlayerStatsSnapshot(uuid, totalAttempts, passes, fails, penaltyUntil,
+                cooldownUntil, failChainCount, captchaFails, movementPatternPercent, lastUpdated, 0L));
+    }
+
+    /**
+     * Encodes the given stats into a new byte array.
+     */
+    public static byte[] encode(PlayerStatsSnapshot stats) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        write(buffer, stats);
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a byte array produced by {@link #encode(PlayerStatsSnapshot)}.
+     */
+    public static StorageManager.PlayerStats decode(byte[] data) {
+        return read(ByteBuffer.wrap(data));
+    }
+}
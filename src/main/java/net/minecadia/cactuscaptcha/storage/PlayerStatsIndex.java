@@ -0,0 +1,184 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Sorted indexes over the in-memory player statistics, kept in skip lists so a page can
+ * be read in any supported order by seeking to the previous page's last player and reading
+ * on from there, without copying or sorting the whole map. Ties, and the UUID order itself,
+ * follow the backends' UUID_ORDER so in-memory and stored pages agree.
+ */
+public class PlayerStatsIndex {
+
+    /**
+     * Orders a page of player statistics can be read in.
+     */
+    public enum SortOrder {
+        UUID,
+        FAILS,
+        SUCCESS_RATE,
+        LAST_UPDATED
+    }
+
+    private final NavigableSet<UUID> byUuid = new ConcurrentSkipListSet<>(StorageManager.StorageBackend.UUID_ORDER);
+    private final NavigableSet<Key> byFails = new ConcurrentSkipListSet<>();
+    private final NavigableSet<Key> bySuccessRate = new ConcurrentSkipListSet<>();
+    private final NavigableSet<Key> byLastUpdated = new ConcurrentSkipListSet<>();
+
+    // The keys each player is currently filed under, so stale ones can be removed
+    private final Map<UUID, Key[]> currentKeys = new ConcurrentHashMap<>();
+
+    /**
+     * Files the player under their current values. Call after every change.
+     */
+    void update(StorageManager.PlayerStats stats) {
+        update(stats.snapshot());
+    }
+
+    /**
+     * Files the player under the given values, for callers that already hold a snapshot.
+     * Only the keys whose value changed are moved.
+     */
+    void update(PlayerStatsSnapshot snapshot) {
+        long successRate = snapshot.totalAttempts == 0 ? 0L : (snapshot.passes * 1_000_000L) / snapshot.totalAttempts;
+        Key[] keys = {
+                new Key(snapshot.fails, snapshot.uuid),
+                new Key(successRate, snapshot.uuid),
+                new Key(snapshot.lastUpdated, snapshot.uuid)
+        };
+
+        currentKeys.compute(snapshot.uuid, (uuid, previous) -> {
+            if (previous != null) {
+                replace(byFails, previous[0], keys[0]);
+                replace(bySuccessRate, previous[1], keys[1]);
+                replace(byLastUpdated, previous[2], keys[2]);
+            } else {
+                byUuid.add(uuid);
+                byFails.add(keys[0]);
+                bySuccessRate.add(keys[1]);
+                byLastUpdated.add(keys[2]);
+            }
+            return keys;
+        });
+    }
+
+    private void replace(NavigableSet<Key> index, Key previous, Key current) {
+        if (!previous.equals(current)) {
+            index.remove(previous);
+            index.add(current);
+        }
+    }
+
+    /**
+     * Drops the player from every index, e.g. when their record is evicted.
+     */
+    void remove(UUID playerId) {
+        currentKeys.computeIfPresent(playerId, (uuid, previous) -> {
+            byFails.remove(previous[0]);
+            bySuccessRate.remove(previous[1]);
+            byLastUpdated.remove(previous[2]);
+            return null;
+        });
+        byUuid.remove(playerId);
+    }
+
+    /**
+     * Returns the UUIDs on the page that follows the given player.
+     *
+     * @param order Sort order
+     * @param descending true for highest values first
+     * @param after The last player on the previous page, or null for the first page.
+     *              If that player has left the index since, the first page is returned.
+     * @param limit Maximum number of entries to return
+     */
+    public List<UUID> page(SortOrder order, boolean descending, UUID after, int limit) {
+        Iterator<UUID> ids;
+        if (order == SortOrder.UUID) {
+            NavigableSet<UUID> index = descending ? byUuid.descendingSet() : byUuid;
+            ids = (after != null && byUuid.contains(after) ? index.tailSet(after, false) : index).iterator();
+        } else {
+            int position = keyPosition(order);
+            NavigableSet<Key> index = position == 0 ? byFails : position == 1 ? bySuccessRate : byLastUpdated;
+            if (descending) {
+                index = index.descendingSet();
+            }
+            Key[] previous = after != null ? currentKeys.get(after) : null;
+            ids = uuids(previous != null ? index.tailSet(previous[position], false) : index);
+        }
+
+        List<UUID> page = new ArrayList<>(Math.min(limit, 64));
+        while (ids.hasNext() && page.size() < limit) {
+            page.add(ids.next());
+        }
+        return page;
+    }
+
+    /**
+     * Position of the order's key in the arrays held by currentKeys.
+     */
+    private static int keyPosition(SortOrder order) {
+        switch (order) {
+            case FAILS:
+                return 0;
+            case SUCCESS_RATE:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+
+    private Iterator<UUID> uuids(NavigableSet<Key> index) {
+        Iterator<Key> keys = index.iterator();
+        return new Iterator<UUID>() {
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public UUID next() {
+                return keys.next().uuid;
+            }
+        };
+    }
+
+    public int size() {
+        return currentKeys.size(); // Skip list size() is a full traversal
+    }
+
+    private static final class Key implements Comparable<Key> {
+        final long value;
+        final UUID uuid;
+
+        Key(long value, UUID uuid) {
+            this.value = value;
+            this.uuid = uuid;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int result = Long.compare(value, other.value);
+            return result != 0 ? result : StorageManager.StorageBackend.UUID_ORDER.compare(uuid, other.uuid);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return value == key.value && uuid.equals(key.uuid);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(value) + uuid.hashCode();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import java.util.UUID;
+
+/**
+ * Immutable, internally consistent copy of a player's statistics.
+ * Taken with {@link StorageManager.PlayerStats#snapshot()} and handed to storage backends,
+ * so a save never reads a record while the main thread is halfway through changing it.
+ */
+public final class PlayerStatsSnapshot {
+    public final UUID uuid;
+    public final int totalAttempts;
+    public final int passes;
+    public final int fails;
+    public final long penaltyUntil; // epoch ms
+    public final long cooldownUntil; // epoch ms
+    public final int failChainCount;
+    public final int captchaFails;
+    public final int movementPatternPercent;
+    public final long lastUpdated; // epoch ms
+    public final long version; // PlayerStats version this copy was taken at
+
+    public PlayerStatsSnapshot(UUID uuid, int totalAttempts, int passes, int fails, long penaltyUntil,
+                               long cooldownUntil, int failChainCount, int captchaFails,
+                               int movementPatternPercent, long lastUpdated, long version) {
+        this.uuid = uuid;
+        this.totalAttempts = totalAttempts;
+        this.passes = passes;
+        this.fails = fails;
+        this.penaltyUntil = penaltyUntil;
+        this.cooldownUntil = cooldownUntil;
+        this.failChainCount = failChainCount;
+        this.captchaFails = captchaFails;
+        this.movementPatternPercent = movementPatternPercent;
+        this.lastUpdated = lastUpdated;
+        this.version = version;
+    }
+}
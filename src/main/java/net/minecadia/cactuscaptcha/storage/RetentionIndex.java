@@ -0,0 +1,83 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Players grouped into hourly buckets by the time their record last changed, so the
+ * retention job can find stale records by walking the oldest buckets instead of reading
+ * every record. Records with an unknown last update time (0) are not indexed; the
+ * storage manager gives them the current time when it first reads them.
+ */
+public class RetentionIndex {
+
+    static final long BUCKET_MS = 60L * 60L * 1000L;
+
+    private final TreeMap<Long, Set<UUID>> buckets = new TreeMap<>();
+    private final Map<UUID, Long> bucketOf = new HashMap<>();
+
+    /**
+     * Files the player under the bucket of their latest change.
+     */
+    public synchronized void record(UUID playerId, long lastUpdated) {
+        if (lastUpdated <= 0L) {
+            return;
+        }
+
+        long bucket = lastUpdated / BUCKET_MS;
+        Long previous = bucketOf.put(playerId, bucket);
+        if (previous != null) {
+            if (previous == bucket) {
+                return;
+            }
+            removeFromBucket(previous, playerId);
+        }
+        buckets.computeIfAbsent(bucket, k -> new LinkedHashSet<>()).add(playerId);
+    }
+
+    public synchronized void remove(UUID playerId) {
+        Long bucket = bucketOf.remove(playerId);
+        if (bucket != null) {
+            removeFromBucket(bucket, playerId);
+        }
+    }
+
+    private void removeFromBucket(long bucket, UUID playerId) {
+        Set<UUID> players = buckets.get(bucket);
+        if (players != null && players.remove(playerId) && players.isEmpty()) {
+            buckets.remove(bucket);
+        }
+    }
+
+    /**
+     * Returns up to limit players whose whole bucket lies before the cutoff, oldest first.
+     * Only buckets entirely older than the cutoff are considered, so nothing younger is returned.
+     * Players matching skip are passed over without counting against the limit, so players
+     * that cannot be pruned yet never hold back the ones behind them.
+     */
+    public synchronized List<UUID> staleCandidates(long cutoff, int limit, Predicate<UUID> skip) {
+        List<UUID> candidates = new ArrayList<>(Math.min(limit, 256));
+        for (Set<UUID> players : buckets.headMap(cutoff / BUCKET_MS).values()) {
+            for (UUID playerId : players) {
+                if (candidates.size() >= limit) {
+                    return candidates;
+                }
+                if (!skip.test(playerId)) {
+                    candidates.add(playerId);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    public synchronized int size() {
+        return bucketOf.size();
+    }
+}
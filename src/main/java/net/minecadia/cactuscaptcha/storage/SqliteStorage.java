@@ -0,0 +1,352 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import net.minecadia.cactuscaptcha.CactusCaptcha;
+
+import java.io.File;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Embedded SQLite storage in a single file, for servers without a MySQL database.
+ * The database runs in WAL journal mode so reads are not blocked by the write-behind
+ * flush, and each batch of changes is written in one transaction.
+ */
+public class SqliteStorage implements StorageManager.StorageBackend {
+
+    static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS cactuscaptcha_players (" +
+            "uuid TEXT PRIMARY KEY, " +
+            "total_attempts INTEGER NOT NULL DEFAULT 0, " +
+            "passes INTEGER NOT NULL DEFAULT 0, " +
+            "fails INTEGER NOT NULL DEFAULT 0, " +
+            "penalty_until INTEGER NOT NULL DEFAULT 0, " +
+            "cooldown_until INTEGER NOT NULL DEFAULT 0, " +
+            "fail_chain_count INTEGER NOT NULL DEFAULT 0, " +
+            "captcha_fails INTEGER NOT NULL DEFAULT 0, " +
+            "movement_pattern_percent INTEGER NOT NULL DEFAULT 0, " +
+            "last_updated INTEGER NOT NULL DEFAULT 0" +
+            ")";
+
+    static final String CREATE_INDEX_SQL = "CREATE INDEX IF NOT EXISTS idx_cactuscaptcha_players_last_updated " +
+            "ON cactuscaptcha_players (last_updated)";
+
+    static final String UPSERT_SQL = "INSERT INTO cactuscaptcha_players (uuid, total_attempts, passes, fails, penalty_until, " +
+            "cooldown_until, fail_chain_count, captcha_fails, movement_pattern_percent, last_updated) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT(uuid) DO UPDATE SET " +
+            "total_attempts = excluded.total_attempts, " +
+            "passes = excluded.passes, " +
+            "fails = excluded.fails, " +
+            "penalty_until = excluded.penalty_until, " +
+            "cooldown_until = excluded.cooldown_until, " +
+            "fail_chain_count = excluded.fail_chain_count, " +
+            "captcha_fails = excluded.captcha_fails, " +
+            "movement_pattern_percent = excluded.movement_pattern_percent, " +
+            "last_updated = excluded.last_updated";
+
+    private static final String SELECT_ALL_SQL = "SELECT uuid, total_attempts, passes, fails, penalty_until, cooldown_until, " +
+            "fail_chain_count, captcha_fails, movement_pattern_percent, last_updated FROM cactuscaptcha_players";
+    private static final String SELECT_ONE_SQL = SELECT_ALL_SQL + " WHERE uuid = ?";
+    private static final String SELECT_PAGE_SQL = SELECT_ALL_SQL + " ORDER BY uuid LIMIT ? OFFSET ?";
+    private static final String SELECT_AFTER_SQL = SELECT_ALL_SQL + " WHERE uuid > ? ORDER BY uuid LIMIT ?";
+    // Range scan on idx_cactuscaptcha_players_last_updated
+    private static final String DELETE_OLD_SQL = "DELETE FROM cactuscaptcha_players WHERE uuid IN (" +
+            "SELECT uuid FROM cactuscaptcha_players WHERE last_updated > 0 AND last_updated < ? LIMIT ?)";
+    private static final int CLEANUP_CHUNK_SIZE = 500;
+    // SQLite counts through the smallest index, here the last_updated one, not the table
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM cactuscaptcha_players";
+    private static final String EXISTS_SQL = "SELECT 1 FROM cactuscaptcha_players WHERE uuid = ? LIMIT 1";
+    private static final String DELETE_SQL = "DELETE FROM cactuscaptcha_players WHERE uuid = ?";
+
+    private final CactusCaptcha plugin;
+    private final ConnectionPool pool;
+
+    public SqliteStorage(CactusCaptcha plugin) {
+        this.plugin = plugin;
+        if (!plugin.getDataFolder().exists()) {
+            plugin.getDataFolder().mkdirs();
+        }
+
+        File databaseFile = new File(plugin.getDataFolder(), plugin.getConfig().getString("storage.sqlite.file", "players.db"));
+        boolean fresh = !databaseFile.exists();
+        int poolSize = plugin.getConfig().getInt("storage.sqlite.pool.maxSize", 2);
+
+        // sqlite-jdbc applies these pragmas to every connection it opens
+        String url = "jdbc:sqlite:" + databaseFile.getAbsolutePath() +
+                "?journal_mode=WAL&synchronous=NORMAL&busy_timeout=5000";
+        this.pool = new ConnectionPool(url, null, null, poolSize, 5000L,
+                Connection.TRANSACTION_SERIALIZABLE, plugin.getLogger());
+
+        try {
+            createTables();
+            plugin.getLogger().info("Opened SQLite database " + databaseFile.getName() + " (pool size " + poolSize + ")");
+            if (fresh) {
+                importYamlData();
+            }
+        } catch (Exception e) {
+            plugin.getLogger().severe("Failed to initialize SQLite storage: " + e.getMessage());
+        }
+    }
+
+    private void createTables() throws SQLException {
+        try (ConnectionPool.PooledConnection connection = pool.borrow();
+             Statement stmt = connection.getConnection().createStatement()) {
+            stmt.executeUpdate(CREATE_TABLE_SQL);
+            stmt.executeUpdate(CREATE_INDEX_SQL);
+        }
+    }
+
+    /**
+     * Imports existing per-player YAML files into a freshly created database.
+     */
+    private void importYamlData() throws Exception {
+        File yamlFolder = new File(plugin.getDataFolder(), "data");
+        if (!yamlFolder.isDirectory()) {
+            return;
+        }
+
+        ConcurrentHashMap<UUID, StorageManager.PlayerStats> imported = new ConcurrentHashMap<>();
+        new YamlStorage(plugin).loadAllData(imported);
+        if (imported.isEmpty()) {
+            return;
+        }
+
+        saveAllData(imported);
+        plugin.getLogger().info("Imported " + imported.size() + " player records from YAML into SQLite");
+    }
+
+    @Override
+    public void loadAllData(ConcurrentHashMap<UUID, StorageManager.PlayerStats> playerStats) throws Exception {
+        try (ConnectionPool.PooledConnection connection = pool.borrow();
+             ResultSet rs = connection.prepare(SELECT_ALL_SQL).executeQuery()) {
+
+            int loadedCount = 0;
+            while (rs.next()) {
+                try {
+                    StorageManager.PlayerStats stats = readRow(rs);
+                    playerStats.put(stats.uuid, stats);
+                    loadedCount++;
+
+                } catch (Exception e) {
+                    plugin.getLogger().warning("Failed to load player data from SQLite: " + e.getMessage());
+                }
+            }
+
+            plugin.getLogger().info("Loaded " + loadedCount + " player records from SQLite storage");
+        }
+    }
+
+    private StorageManager.PlayerStats readRow(ResultSet rs) throws SQLException {
+        return new StorageManager.PlayerStats(new PlayerStatsSnapshot(
+                UUID.fromString(rs.getString("uuid")),
+                rs.getInt("total_attempts"),
+                rs.getInt("passes"),
+                rs.getInt("fails"),
+                rs.getLong("penalty_until"),
+                rs.getLong("cooldown_until"),
+                rs.getInt("fail_chain_count"),
+                rs.getInt("captcha_fails"),
+                rs.getInt("movement_pattern_percent"),
+                rs.getLong("last_updated"),
+                0L));
+    }
+
+    @Override
+    public StorageManager.PlayerStats loadPlayerData(UUID uuid) throws SQLException {
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare(SELECT_ONE_SQL);
+            stmt.setString(1, uuid.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? readRow(rs) : null;
+            }
+        }
+    }
+
+    @Override
+    public List<StorageManager.PlayerStats> loadPlayerPage(int offset, int limit) throws SQLException {
+        List<StorageManager.PlayerStats> page = new ArrayList<>(limit);
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare(SELECT_PAGE_SQL);
+            stmt.setInt(1, limit);
+            stmt.setInt(2, offset);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    page.add(readRow(rs));
+                }
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public List<StorageManager.PlayerStats> loadPlayersAfter(UUID after, int limit) throws SQLException {
+        List<StorageManager.PlayerStats> page = new ArrayList<>(limit);
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare(SELECT_AFTER_SQL);
+            stmt.setString(1, after != null ? after.toString() : ""); // Every UUID sorts after the empty string
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    page.add(readRow(rs));
+                }
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void saveData(Collection<PlayerStatsSnapshot> changed) throws Exception {
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            connection.begin();
+            try {
+                PreparedStatement stmt = connection.prepare(UPSERT_SQL);
+                for (PlayerStatsSnapshot stats : changed) {
+                    bindUpsert(stmt, stats);
+                    stmt.addBatch();
+                }
+
+                stmt.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                connection.markSuspect();
+                throw e;
+            }
+        }
+    }
+
+    private void bindUpsert(PreparedStatement stmt, PlayerStatsSnapshot stats) throws SQLException {
+        stmt.setString(1, stats.uuid.toString());
+        stmt.setInt(2, stats.totalAttempts);
+        stmt.setInt(3, stats.passes);
+        stmt.setInt(4, stats.fails);
+        stmt.setLong(5, stats.penaltyUntil);
+        stmt.setLong(6, stats.cooldownUntil);
+        stmt.setInt(7, stats.failChainCount);
+        stmt.setInt(8, stats.captchaFails);
+        stmt.setInt(9, stats.movementPatternPercent);
+        stmt.setLong(10, stats.lastUpdated > 0 ? stats.lastUpdated : System.currentTimeMillis());
+    }
+
+    @Override
+    public int deletePlayers(Collection<UUID> uuids) throws SQLException {
+        if (uuids.isEmpty()) {
+            return 0;
+        }
+
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            connection.begin();
+            try {
+                PreparedStatement stmt = connection.prepare(DELETE_SQL);
+                for (UUID uuid : uuids) {
+                    stmt.setString(1, uuid.toString());
+                    stmt.addBatch();
+                }
+
+                int deleted = 0;
+                for (int count : stmt.executeBatch()) {
+                    deleted += Math.max(0, count);
+                }
+                connection.commit();
+                return deleted;
+            } catch (SQLException e) {
+                connection.rollback();
+                connection.markSuspect();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+        plugin.getLogger().info("SQLite storage closed");
+    }
+
+    /**
+     * Clean up old player data (optional maintenance method)
+     */
+    public void cleanupOldData(long maxAgeMs) {
+        long cutoff = System.currentTimeMillis() - maxAgeMs;
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare(DELETE_OLD_SQL);
+            int deletedCount = 0;
+            int deleted;
+            do {
+                stmt.setLong(1, cutoff);
+                stmt.setInt(2, CLEANUP_CHUNK_SIZE);
+                deleted = stmt.executeUpdate(); // Each chunk is its own short write transaction
+                deletedCount += deleted;
+            } while (deleted == CLEANUP_CHUNK_SIZE);
+
+            if (deletedCount > 0) {
+                plugin.getLogger().info("Cleaned up " + deletedCount + " old player records from SQLite");
+            }
+
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to cleanup old SQLite data: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get the number of stored player records
+     */
+    @Override
+    public int getStoredPlayerCount() {
+        try (ConnectionPool.PooledConnection connection = pool.borrow();
+             ResultSet rs = connection.prepare(COUNT_SQL).executeQuery()) {
+
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to get player count from SQLite: " + e.getMessage());
+        }
+
+        return 0;
+    }
+
+    /**
+     * Check if data exists for a specific player
+     */
+    @Override
+    public boolean hasPlayerData(UUID uuid) {
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare(EXISTS_SQL);
+            stmt.setString(1, uuid.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to check player data existence in SQLite: " + e.getMessage());
+        }
+
+        return false;
+    }
+
+    /**
+     * Delete data for a specific player
+     */
+    @Override
+    public boolean deletePlayerData(UUID uuid) {
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare(DELETE_SQL);
+            stmt.setString(1, uuid.toString());
+            return stmt.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to delete player data from SQLite: " + e.getMessage());
+        }
+
+        return false;
+    }
+}
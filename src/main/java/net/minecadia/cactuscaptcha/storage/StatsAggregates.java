@@ -0,0 +1,131 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-wide totals kept up to date on every change, so dashboards never have to walk
+ * every player record. Counters are striped LongAdders; penalties and cooldowns are
+ * counted by expiry time and drop out of the count by themselves once they run out.
+ */
+public class StatsAggregates {
+
+    private final LongAdder players = new LongAdder();
+    private final LongAdder passes = new LongAdder();
+    private final LongAdder fails = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final ExpiryCounter penalties = new ExpiryCounter();
+    private final ExpiryCounter cooldowns = new ExpiryCounter();
+
+    void addPlayer() {
+        players.increment();
+    }
+
+    void addPlayers(long count) {
+        players.add(count);
+    }
+
+    void addPass() {
+        passes.increment();
+        attempts.increment();
+    }
+
+    void addFail() {
+        fails.increment();
+        attempts.increment();
+    }
+
+    /**
+     * Adds (or, with negative values, removes) a record's counters.
+     */
+    void addCounters(long passCount, long failCount, long attemptCount) {
+        passes.add(passCount);
+        fails.add(failCount);
+        attempts.add(attemptCount);
+    }
+
+    void penaltyChanged(UUID playerId, long penaltyUntil) {
+        penalties.update(playerId, penaltyUntil);
+    }
+
+    void cooldownChanged(UUID playerId, long cooldownUntil) {
+        cooldowns.update(playerId, cooldownUntil);
+    }
+
+    public long getPlayerCount() {
+        return players.sum();
+    }
+
+    public long getTotalPasses() {
+        return passes.sum();
+    }
+
+    public long getTotalFails() {
+        return fails.sum();
+    }
+
+    public long getTotalAttempts() {
+        return attempts.sum();
+    }
+
+    public int getPenalizedCount() {
+        return penalties.count(System.currentTimeMillis());
+    }
+
+    public int getOnCooldownCount() {
+        return cooldowns.count(System.currentTimeMillis());
+    }
+
+    /**
+     * Counts players whose timestamp is still in the future. Each update is queued by expiry,
+     * and a read only pops what expired since the last read, so reads are amortized O(1).
+     */
+    private static final class ExpiryCounter {
+        private final Map<UUID, Long> active = new HashMap<>();
+        private final PriorityQueue<Expiry> expiries = new PriorityQueue<>();
+
+        synchronized void update(UUID playerId, long until) {
+            if (until > System.currentTimeMillis()) {
+                active.put(playerId, until);
+                expiries.add(new Expiry(playerId, until));
+            } else {
+                active.remove(playerId);
+            }
+        }
+
+        synchronized int count(long now) {
+            Expiry head;
+            while ((head = expiries.peek()) != null && head.until <= now) {
+                expiries.poll();
+                // Only drop the player if this entry is still their current expiry
+                active.remove(head.playerId, head.until);
+            }
+            // Superseded entries still in the queue are discarded when they reach the head
+            if (expiries.size() > 64 && expiries.size() > active.size() * 4) {
+                expiries.clear();
+                for (Map.Entry<UUID, Long> entry : active.entrySet()) {
+                    expiries.add(new Expiry(entry.getKey(), entry.getValue()));
+                }
+            }
+            return active.size();
+        }
+    }
+
+    private static final class Expiry implements Comparable<Expiry> {
+        final UUID playerId;
+        final long until;
+
+        Expiry(UUID playerId, long until) {
+            this.playerId = playerId;
+            this.until = until;
+        }
+
+        @Override
+        public int compareTo(Expiry other) {
+            return Long.compare(until, other.until);
+        }
+    }
+}
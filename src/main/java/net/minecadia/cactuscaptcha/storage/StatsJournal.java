@@ -0,0 +1,289 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of player statistics changes, so a crash loses at most one group
+ * commit interval instead of everything since the last save.
+ *
+ * Every change appends the player's full record image (PlayerStatsCodec), so replay is
+ * idempotent and simply keeps the newest image per player. Appends are buffered and a
+ * single thread writes and fsyncs them together every commit interval. The journal is
+ * split into numbered segments: a checkpoint seals the current segment, and once the
+ * backend holds everything written before it, the sealed segments are deleted.
+ *
+ * Entry layout: [int length][record][int crc32 of record].
+ */
+public class StatsJournal {
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final int ENTRY_OVERHEAD = 8;
+
+    private final File directory;
+    private final long groupCommitMs;
+    private final Logger logger;
+
+    // Images appended since the last group commit, coalesced per player
+    private final Map<UUID, PlayerStatsSnapshot> buffer = new LinkedHashMap<>();
+    private final Object writeLock = new Object();
+    private final Thread commitThread;
+    private volatile boolean running = true;
+
+    private FileChannel channel;
+    private volatile long segment;
+    // This run's first segment; older ones hold the previous run's changes
+    private volatile long firstSegment = Long.MAX_VALUE;
+    private volatile boolean replaySaved;
+
+    public StatsJournal(File directory, long groupCommitMs, Logger logger) {
+        this.directory = directory;
+        this.groupCommitMs = Math.max(1L, groupCommitMs);
+        this.logger = logger;
+
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        this.commitThread = new Thread(this::runLoop, "CactusCaptcha-Journal");
+        this.commitThread.setDaemon(true);
+    }
+
+    /**
+     * Reads every segment left from the previous run and returns the newest image per player.
+     * A torn entry at the end of a segment (crash mid-write) ends that segment's replay.
+     */
+    public Map<UUID, PlayerStatsSnapshot> replay() throws IOException {
+        Map<UUID, PlayerStatsSnapshot> latest = new LinkedHashMap<>();
+        for (long seq : segments()) {
+            segment = Math.max(segment, seq);
+            try (FileChannel in = FileChannel.open(segmentFile(seq).toPath(), StandardOpenOption.READ)) {
+                ByteBuffer data = ByteBuffer.allocate((int) in.size());
+                while (data.hasRemaining() && in.read(data) >= 0) {
+                    // Read the whole segment
+                }
+                data.flip();
+
+                while (data.remaining() >= ENTRY_OVERHEAD + PlayerStatsCodec.RECORD_SIZE) {
+                    int length = data.getInt();
+                    if (length != PlayerStatsCodec.RECORD_SIZE) {
+                        break;
+                    }
+                    byte[] record = new byte[length];
+                    data.get(record);
+                    CRC32 crc = new CRC32();
+                    crc.update(record);
+                    if ((int) crc.getValue() != data.getInt()) {
+                        break;
+                    }
+                    PlayerStatsSnapshot image = PlayerStatsCodec.decode(record).snapshot();
+                    latest.put(image.uuid, image);
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Opens a fresh segment and starts group commits. Call after replay.
+     */
+    public void start() throws IOException {
+        synchronized (writeLock) {
+            firstSegment = segment + 1;
+            openSegment(firstSegment);
+        }
+        commitThread.start();
+    }
+
+    /**
+     * Journals a player's current record. Cheap and non-blocking; durable after the next group commit.
+     */
+    public void append(PlayerStatsSnapshot image) {
+        synchronized (buffer) {
+            buffer.put(image.uuid, image);
+        }
+    }
+
+    private void runLoop() {
+        while (running) {
+            try {
+                Thread.sleep(groupCommitMs);
+            } catch (InterruptedException e) {
+                // Woken for shutdown
+            }
+            commit();
+        }
+    }
+
+    /**
+     * Writes and fsyncs everything appended so far in one go.
+     */
+    private void commit() {
+        List<PlayerStatsSnapshot> batch;
+        synchronized (buffer) {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(buffer.values());
+            buffer.clear();
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(batch.size() * (ENTRY_OVERHEAD + PlayerStatsCodec.RECORD_SIZE));
+        CRC32 crc = new CRC32();
+        for (PlayerStatsSnapshot image : batch) {
+            byte[] record = PlayerStatsCodec.encode(image);
+            crc.reset();
+            crc.update(record);
+            out.putInt(record.length);
+            out.put(record);
+            out.putInt((int) crc.getValue());
+        }
+        out.flip();
+
+        synchronized (writeLock) {
+            long start = -1L;
+            try {
+                start = channel.size();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                logger.severe("Failed to write statistics journal, retrying with the next commit: " + e.getMessage());
+                // A partial entry would end replay of this segment early, so cut it off again
+                if (start >= 0L) {
+                    try {
+                        channel.truncate(start);
+                    } catch (IOException truncateFailed) {
+                        // The CRC still rejects the torn entry on replay
+                    }
+                }
+                synchronized (buffer) {
+                    for (PlayerStatsSnapshot image : batch) {
+                        buffer.putIfAbsent(image.uuid, image); // Images appended since are newer
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Seals the current segment: everything appended so far goes into it, later appends go
+     * into a new one.
+     *
+     * @return The sealed segment number, to pass to {@link #deleteUpTo(long)} once saved
+     */
+    public long rotate() throws IOException {
+        synchronized (writeLock) {
+            commit();
+            long sealed = segment;
+            channel.close();
+            openSegment(sealed + 1);
+            return sealed;
+        }
+    }
+
+    /**
+     * Deletes sealed segments whose changes the backend now holds. Segments left by the
+     * previous run are kept until {@link #discardReplayed()}, since their changes are not
+     * in memory and so no checkpoint covers them.
+     */
+    public void deleteUpTo(long sealed) {
+        for (long seq : segments()) {
+            if (seq <= sealed && seq != segment && (seq >= firstSegment || replaySaved)) {
+                segmentFile(seq).delete();
+            }
+        }
+    }
+
+    /**
+     * Deletes the previous run's segments, once the images {@link #replay()} returned are
+     * durably saved.
+     */
+    public void discardReplayed() {
+        replaySaved = true;
+        for (long seq : segments()) {
+            if (seq < firstSegment) {
+                segmentFile(seq).delete();
+            }
+        }
+    }
+
+    /**
+     * Stops group commits after a final one.
+     *
+     * @param saved true if the backend holds every change of this run, in which case its
+     *              segments are discarded; the previous run's only once their replay was saved
+     */
+    public void close(boolean saved) {
+        running = false;
+        commitThread.interrupt();
+        try {
+            commitThread.join(5000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (writeLock) {
+            commit();
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                logger.warning("Error closing statistics journal: " + e.getMessage());
+            }
+        }
+        if (saved) {
+            for (long seq : segments()) {
+                if (seq >= firstSegment || replaySaved) {
+                    segmentFile(seq).delete();
+                }
+            }
+        }
+    }
+
+    private void openSegment(long seq) throws IOException {
+        segment = seq;
+        channel = FileChannel.open(segmentFile(seq).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private File segmentFile(long seq) {
+        return new File(directory, SEGMENT_PREFIX + String.format("%016d", seq) + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Segment numbers on disk, oldest first.
+     */
+    private long[] segments() {
+        String[] names = directory.list((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (names == null) {
+            return new long[0];
+        }
+        long[] seqs = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            try {
+                long seq = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                seqs[count++] = seq;
+            } catch (NumberFormatException e) {
+                // Not one of ours
+            }
+        }
+        long[] result = Arrays.copyOf(seqs, count);
+        Arrays.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,320 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams player statistics between a storage backend and a JSONL or CSV file, optionally
+ * gzipped (chosen by file name: .jsonl, .csv, .jsonl.gz, .csv.gz). Only one page of records
+ * is held in memory at a time.
+ *
+ * Both directions keep a checkpoint file next to the data file (name.checkpoint) after every
+ * page, so a run that was interrupted continues where it stopped. Exports write each page as
+ * a complete unit (a separate gzip member when compressed) and record the file length with the
+ * checkpoint; on resume the file is cut back to that length, so a page is never written twice.
+ * Every line is a full record image, so importing a page twice is harmless.
+ */
+public class StatsTransfer {
+
+    static final String CSV_HEADER = "uuid,totalAttempts,passes,fails,penaltyUntil,cooldownUntil,"
+            + "failChainCount,captchaFails,movementPatternPercent,lastUpdated";
+
+    enum Format { JSONL, CSV }
+
+    private final File file;
+    private final File checkpointFile;
+    private final Format format;
+    private final boolean gzip;
+    private final int pageSize;
+
+    public StatsTransfer(File file, int pageSize) {
+        this.file = file;
+        this.checkpointFile = new File(file.getPath() + ".checkpoint");
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        this.gzip = name.endsWith(".gz");
+        if (gzip) {
+            name = name.substring(0, name.length() - 3);
+        }
+        if (name.endsWith(".csv")) {
+            this.format = Format.CSV;
+        } else if (name.endsWith(".jsonl") || name.endsWith(".json")) {
+            this.format = Format.JSONL;
+        } else {
+            throw new IllegalArgumentException("Unsupported file type " + file.getName() + ", use .jsonl or .csv (optionally .gz)");
+        }
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    /**
+     * Whether an interrupted export (or import) left a checkpoint to resume from.
+     */
+    public boolean hasCheckpoint(boolean export) throws IOException {
+        return readCheckpoint(export ? "export" : "import") != null;
+    }
+
+    /**
+     * Writes every record of the backend to the file, page by page in UUID order. Pages are
+     * keyed by the last UUID written, so players added or deleted while the export runs
+     * never make it skip or repeat a record.
+     *
+     * @param progress Receives the number of records exported so far after each page
+     * @return The total number of records in the file
+     */
+    public long exportFrom(StorageManager.StorageBackend backend, LongConsumer progress) throws Exception {
+        long offset = 0L;
+        UUID after = null;
+        Properties checkpoint = readCheckpoint("export");
+        if (checkpoint != null && file.exists()) {
+            offset = Long.parseLong(checkpoint.getProperty("records", "0"));
+            String last = checkpoint.getProperty("after", "");
+            after = last.isEmpty() ? null : UUID.fromString(last);
+            long length = Long.parseLong(checkpoint.getProperty("bytes", "0"));
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(length); // Drop a page written after the last checkpoint
+            }
+        } else {
+            Files.deleteIfExists(file.toPath());
+        }
+
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            if (offset == 0L && format == Format.CSV) {
+                writeUnit(out, writer -> writer.write(CSV_HEADER + "\n"));
+            }
+
+            while (true) {
+                List<StorageManager.PlayerStats> page = backend.loadPlayersAfter(after, pageSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                writeUnit(out, writer -> {
+                    for (StorageManager.PlayerStats stats : page) {
+                        writer.write(format == Format.CSV ? toCsv(stats.snapshot()) : toJson(stats.snapshot()));
+                        writer.write('\n');
+                    }
+                });
+                offset += page.size();
+                after = page.get(page.size() - 1).uuid;
+                writeCheckpoint("export", offset, out.getChannel().size(), after);
+                progress.accept(offset);
+
+                if (page.size() < pageSize) {
+                    break;
+                }
+            }
+        }
+
+        Files.deleteIfExists(checkpointFile.toPath());
+        return offset;
+    }
+
+    private interface UnitWriter {
+        void write(Writer writer) throws IOException;
+    }
+
+    /**
+     * Writes one self-contained unit and forces it to disk, leaving the file open.
+     */
+    private void writeUnit(FileOutputStream out, UnitWriter body) throws IOException {
+        OutputStream target = new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush(); // Keep the file open for the next unit
+            }
+        };
+        if (gzip) {
+            target = new GZIPOutputStream(target, 64 * 1024);
+        }
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), 64 * 1024)) {
+            body.write(writer);
+        }
+        out.getFD().sync();
+    }
+
+    /**
+     * Reads the file and hands its records to the sink, a page at a time.
+     *
+     * @param sink Receives each page of records
+     * @param progress Receives the number of records imported so far after each page
+     * @return The total number of records imported, including any imported before a resume
+     */
+    public long importTo(WriteBehindQueue.Sink sink, LongConsumer progress) throws Exception {
+        Properties checkpoint = readCheckpoint("import");
+        long skip = checkpoint != null ? Long.parseLong(checkpoint.getProperty("records", "0")) : 0L;
+        long imported = skip;
+
+        InputStream in = new FileInputStream(file);
+        if (gzip) {
+            in = new GZIPInputStream(in, 64 * 1024); // Reads every member in turn
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024)) {
+            List<PlayerStatsSnapshot> page = new ArrayList<>(pageSize);
+            long lineNumber = 0L;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || (format == Format.CSV && line.startsWith("uuid,"))) {
+                    continue;
+                }
+                if (skip > 0L) {
+                    skip--;
+                    continue;
+                }
+
+                try {
+                    page.add(format == Format.CSV ? fromCsv(line) : fromJson(line));
+                } catch (RuntimeException e) {
+                    throw new IOException("Bad record on line " + lineNumber + ": " + e.getMessage(), e);
+                }
+                if (page.size() >= pageSize) {
+                    imported += flushPage(sink, page, imported, progress);
+                }
+            }
+            imported += flushPage(sink, page, imported, progress);
+        }
+
+        Files.deleteIfExists(checkpointFile.toPath());
+        return imported;
+    }
+
+    private int flushPage(WriteBehindQueue.Sink sink, List<PlayerStatsSnapshot> page, long before,
+                          LongConsumer progress) throws Exception {
+        if (page.isEmpty()) {
+            return 0;
+        }
+        int size = page.size();
+        sink.write(page);
+        page.clear();
+        writeCheckpoint("import", before + size, 0L, null);
+        progress.accept(before + size);
+        return size;
+    }
+
+    /**
+     * Returns the checkpoint left by an interrupted run in the given direction, or null.
+     */
+    private Properties readCheckpoint(String direction) throws IOException {
+        if (!checkpointFile.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(checkpointFile)) {
+            properties.load(in);
+        }
+        return direction.equals(properties.getProperty("direction")) ? properties : null;
+    }
+
+    /**
+     * @param after Last UUID exported, or null for imports
+     */
+    private void writeCheckpoint(String direction, long records, long bytes, UUID after) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("direction", direction);
+        properties.setProperty("records", Long.toString(records));
+        properties.setProperty("bytes", Long.toString(bytes));
+        if (after != null) {
+            properties.setProperty("after", after.toString());
+        }
+        File temp = new File(checkpointFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            properties.store(out, null);
+            out.getFD().sync();
+        }
+        Files.move(temp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static String toCsv(PlayerStatsSnapshot s) {
+        return s.uuid + "," + s.totalAttempts + "," + s.passes + "," + s.fails + "," + s.penaltyUntil + ","
+                + s.cooldownUntil + "," + s.failChainCount + "," + s.captchaFails + ","
+                + s.movementPatternPercent + "," + s.lastUpdated;
+    }
+
+    static PlayerStatsSnapshot fromCsv(String line) {
+        String[] f = line.split(",", -1);
+        if (f.length != 10) {
+            throw new IllegalArgumentException("expected 10 columns, found " + f.length);
+        }
+        return new PlayerStatsSnapshot(UUID.fromString(f[0].trim()), Integer.parseInt(f[1].trim()),
+                Integer.parseInt(f[2].trim()), Integer.parseInt(f[3].trim()), Long.parseLong(f[4].trim()),
+                Long.parseLong(f[5].trim()), Integer.parseInt(f[6].trim()), Integer.parseInt(f[7].trim()),
+                Integer.parseInt(f[8].trim()), Long.parseLong(f[9].trim()), 0L);
+    }
+
+    static String toJson(PlayerStatsSnapshot s) {
+        return "{\"uuid\":\"" + s.uuid + "\",\"totalAttempts\":" + s.totalAttempts + ",\"passes\":" + s.passes
+                + ",\"fails\":" + s.fails + ",\"penaltyUntil\":" + s.penaltyUntil + ",\"cooldownUntil\":" + s.cooldownUntil
+                + ",\"failChainCount\":" + s.failChainCount + ",\"captchaFails\":" + s.captchaFails
+                + ",\"movementPatternPercent\":" + s.movementPatternPercent + ",\"lastUpdated\":" + s.lastUpdated + "}";
+    }
+
+    /**
+     * Parses one flat record object as written by {@link #toJson}. Missing numbers default to 0.
+     */
+    static PlayerStatsSnapshot fromJson(String line) {
+        if (!line.startsWith("{") || !line.endsWith("}")) {
+            throw new IllegalArgumentException("not a JSON object");
+        }
+        Properties fields = new Properties();
+        for (String pair : line.substring(1, line.length() - 1).split(",")) {
+            int colon = pair.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            fields.setProperty(unquote(pair.substring(0, colon)), unquote(pair.substring(colon + 1)));
+        }
+        String uuid = fields.getProperty("uuid");
+        if (uuid == null) {
+            throw new IllegalArgumentException("missing uuid");
+        }
+        return new PlayerStatsSnapshot(UUID.fromString(uuid), intField(fields, "totalAttempts"),
+                intField(fields, "passes"), intField(fields, "fails"), longField(fields, "penaltyUntil"),
+                longField(fields, "cooldownUntil"), intField(fields, "failChainCount"), intField(fields, "captchaFails"),
+                intField(fields, "movementPatternPercent"), longField(fields, "lastUpdated"), 0L);
+    }
+
+    private static String unquote(String value) {
+        value = value.trim();
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    private static int intField(Properties fields, String name) {
+        return Integer.parseInt(fields.getProperty(name, "0"));
+    }
+
+    private static long longField(Properties fields, String name) {
+        return Long.parseLong(fields.getProperty(name, "0"));
+    }
+}
@@ -1,150 +1,1080 @@
 package net.minecadia.cactuscaptcha.storage;
 
 import net.minecadia.cactuscaptcha.CactusCaptcha;
+import net.minecadia.cactuscaptcha.listener.PlayerDataListener;
+import org.bukkit.Bukkit;
 import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 public class StorageManager {
 
+    // Records per read when streaming storage for the lazy mode totals
+    private static final int SEED_PAGE_SIZE = 1000;
+    private static final long MAIN_THREAD_TIMEOUT_SECONDS = 30L;
+    private static final long IMPORT_RETRY_MS = 50L;
+
     private final CactusCaptcha plugin;
     private final ConcurrentHashMap<UUID, PlayerStats> playerStats;
     private final StorageBackend storageBackend;
+    // Non-blocking access to the backend for reads, queries and deletes
+    private final AsyncStorage asyncStorage;
     private BukkitRunnable autoSaveTask;
 
+    // Players whose stats changed since they were last handed to the write-behind queue
+    private final Set<UUID> dirtyPlayers = ConcurrentHashMap.newKeySet();
+    // Sole writer to the backend: coalesces snapshots per player and saves them in batches
+    private final WriteBehindQueue writeQueue;
+    // Crash safety between saves; null when storage.journal.enabled is false
+    private final StatsJournal journal;
+    // Images replayed from the previous run's journal and not yet saved to the backend
+    private final Map<UUID, PlayerStatsSnapshot> unrecovered = new ConcurrentHashMap<>();
+    // Server-wide totals, updated alongside every change
+    private final StatsAggregates aggregates = new StatsAggregates();
+    // Sorted views over the in-memory records for paged reads
+    private final PlayerStatsIndex index = new PlayerStatsIndex();
+    // Last-update buckets for the retention job; covers stored records, not just loaded ones
+    private final RetentionIndex retentionIndex = new RetentionIndex();
+    private BukkitRunnable retentionTask;
+
+    // Full mode: set once the startup load is merged; records are not saved or journaled before
+    private volatile boolean allLoaded;
+    private final AtomicBoolean loadingAll = new AtomicBoolean();
+
+    // Lazy mode: only online (and recently online) players are kept in memory
+    private final boolean lazyLoad;
+    private final long evictAfterQuitTicks;
+    private final Map<UUID, BukkitTask> pendingEvictions = new ConcurrentHashMap<>();
+    private final LoadTracker loads = new LoadTracker();
+
     public StorageManager(CactusCaptcha plugin) {
         this.plugin = plugin;
         this.playerStats = new ConcurrentHashMap<>();
+        this.lazyLoad = plugin.getConfig().getBoolean("storage.lazyLoad", false);
+        this.evictAfterQuitTicks = Math.max(0, plugin.getConfig().getInt("storage.evictAfterQuitSeconds", 300)) * 20L;
         
         // Initialize storage backend based on config
-        boolean mysqlEnabled = plugin.getConfig().getBoolean("mysql.enabled", false);
-        if (mysqlEnabled) {
-            this.storageBackend = new MySqlStorage(plugin);
-        } else {
-            this.storageBackend = new YamlStorage(plugin);
-        }
+        this.storageBackend = createBackend();
+        this.asyncStorage = new AsyncStorage(plugin, storageBackend,
+                plugin.getConfig().getInt("storage.async.threads", 2),
+                plugin.getConfig().getInt("storage.async.queueCapacity", 1000));
+        this.writeQueue = new WriteBehindQueue(storageBackend::saveData, this::onSnapshotsWritten,
+                plugin.getConfig().getLong("storage.writeBehind.flushIntervalMs", 1000L),
+                plugin.getConfig().getInt("storage.writeBehind.batchSize", 500),
+                plugin.getConfig().getInt("storage.writeBehind.maxPending", 10000),
+                plugin.getLogger());
+        CompletableFuture<Void> initialized = asyncStorage.initialize();
+        migrateFromPreviousBackend(initialized);
+        this.journal = openJournal();
         
-        // Load existing data
-        loadAllData();
+        // Once the backend is ready, save what the journal recovered, then load existing data -
+        // in lazy mode each player is loaded at pre-login instead
+        initialized.handle((ignored, error) -> null)
+                .thenCompose(ignored -> asyncStorage.run(this::recoverJournal))
+                .whenComplete((ignored, error) -> {
+                    if (!lazyLoad) {
+                        loadAllData();
+                    } else {
+                        seedAggregates();
+                    }
+                });
+        plugin.getServer().getPluginManager().registerEvents(new PlayerDataListener(this), plugin);
         
         // Start auto-save task (every 30 seconds)
         startAutoSave();
+        startRetention();
+    }
+
+    /**
+     * Reads the changes journaled by a previous run that never reached the backend (crash),
+     * then starts a fresh journal segment. The recovered changes are saved by
+     * {@link #recoverJournal()} once the backend is ready.
+     */
+    private StatsJournal openJournal() {
+        if (!plugin.getConfig().getBoolean("storage.journal.enabled", true)) {
+            return null;
+        }
+
+        StatsJournal opened = new StatsJournal(new File(plugin.getDataFolder(), "journal"),
+                plugin.getConfig().getLong("storage.journal.groupCommitMs", 50L), plugin.getLogger());
+        try {
+            unrecovered.putAll(opened.replay());
+        } catch (IOException e) {
+            // The old segments are kept, so the next start can try again
+            plugin.getLogger().severe("Failed to read statistics journal: " + e.getMessage());
+        }
+
+        try {
+            opened.start();
+            return opened;
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to open statistics journal, continuing without it: " + e.getMessage());
+            return null;
+        }
     }
 
+    /**
+     * I/O thread: saves the changes replayed from the previous run's journal and, once the
+     * backend holds them on disk, drops that run's segments. On failure the segments stay
+     * for the next start. Images older than the stored record are skipped, since segments
+     * kept by a failed recovery may be replayed after the player was saved again.
+     */
+    private void recoverJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            List<PlayerStatsSnapshot> newer = new ArrayList<>(unrecovered.size());
+            for (PlayerStatsSnapshot image : unrecovered.values()) {
+                PlayerStats stored = storageBackend.loadPlayerData(image.uuid);
+                if (stored == null || stored.getLastUpdated() <= image.lastUpdated) {
+                    newer.add(image);
+                }
+            }
+            if (!newer.isEmpty()) {
+                storageBackend.saveData(newer);
+                storageBackend.sync();
+                plugin.getLogger().info("Recovered " + newer.size() + " player records from the statistics journal");
+            }
+            unrecovered.clear();
+            journal.discardReplayed();
+        } catch (Exception e) {
+            plugin.getLogger().severe("Failed to replay statistics journal, keeping it for the next start: " + e.getMessage());
+        }
+    }
+
+    private StorageBackend createBackend() {
+        // mysql.enabled predates storage.type and still takes precedence
+        if (plugin.getConfig().getBoolean("mysql.enabled", false)) {
+            return withCircuitBreaker(new MySqlStorage(plugin));
+        }
+
+        String type = plugin.getConfig().getString("storage.type", "yaml").toLowerCase(Locale.ROOT);
+        if (type.equals("mysql")) {
+            return withCircuitBreaker(new MySqlStorage(plugin));
+        }
+        return createBackend(type);
+    }
+
+    private StorageBackend createBackend(String type) {
+        switch (type) {
+            case "mysql":
+                return new MySqlStorage(plugin);
+            case "log":
+                return new LogStorage(plugin);
+            case "mapped":
+                return new MappedStorage(plugin);
+            case "sqlite":
+                return new SqliteStorage(plugin);
+            case "yaml":
+                return new YamlStorage(plugin);
+            default:
+                plugin.getLogger().warning("Unknown storage.type '" + type + "', falling back to yaml");
+                return new YamlStorage(plugin);
+        }
+    }
+
+    /**
+     * Copies everything from the backend named by storage.migration.from into the active one,
+     * once. Runs during startup, before anything else touches the active backend; a migration
+     * killed part way resumes from its checkpoint on the next start.
+     *
+     * @param initialized Setup of the active backend, which the copy has to wait for
+     */
+    private void migrateFromPreviousBackend(CompletableFuture<Void> initialized) {
+        String from = plugin.getConfig().getString("storage.migration.from", "").toLowerCase(Locale.ROOT);
+        if (from.isEmpty()) {
+            return;
+        }
+
+        File checkpointFile = new File(plugin.getDataFolder(), "migration-" + from + ".checkpoint");
+        StorageBackend source = null;
+        try {
+            if (BackendMigrator.isComplete(checkpointFile)) {
+                return;
+            }
+            source = createBackend(from);
+            source.initialize();
+            initialized.join();
+            // Straight into the backend: a copy spooled by the circuit breaker could never verify
+            StorageBackend target = storageBackend instanceof CircuitBreakerStorage
+                    ? ((CircuitBreakerStorage) storageBackend).getDelegate() : storageBackend;
+            BackendMigrator migrator = new BackendMigrator(source, target, checkpointFile,
+                    plugin.getConfig().getInt("storage.migration.batchSize", 1000),
+                    plugin.getConfig().getInt("storage.migration.threads", 4),
+                    plugin.getLogger());
+            plugin.getLogger().info("Migrating player statistics from " + from + " storage");
+            if (!migrator.migrate()) {
+                plugin.getLogger().severe("Migrated data does not match the " + from + " storage; check the log above before relying on it");
+            }
+        } catch (Exception e) {
+            plugin.getLogger().severe("Storage migration from " + from + " failed, it resumes on the next start: " + e.getMessage());
+        } finally {
+            if (source != null) {
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * Wraps a remote backend so an outage spools saves locally instead of failing them.
+     */
+    private StorageBackend withCircuitBreaker(StorageBackend backend) {
+        if (!plugin.getConfig().getBoolean("mysql.circuitBreaker.enabled", true)) {
+            return backend;
+        }
+        return new CircuitBreakerStorage(backend, new File(plugin.getDataFolder(), "mysql-spool.dat"),
+                plugin.getConfig().getInt("mysql.circuitBreaker.failureThreshold", 3),
+                plugin.getConfig().getLong("mysql.circuitBreaker.retryIntervalMs", 30000L),
+                plugin.getConfig().getInt("mysql.circuitBreaker.replayBatchSize", 500),
+                plugin.getLogger());
+    }
+
+    /**
+     * Loads every stored record, unless that is already done or running. Until it finishes,
+     * records created in memory hold only the changes made since startup, so they are neither
+     * saved nor journaled; either would overwrite the stored record with that partial image.
+     * A failed load is retried by the next autosave.
+     */
     private void loadAllData() {
-        // Load data asynchronously
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                try {
-                    storageBackend.loadAllData(playerStats);
-                    plugin.getLogger().info("Loaded player statistics from storage");
-                } catch (Exception e) {
-                    plugin.getLogger().severe("Failed to load player statistics: " + e.getMessage());
+        if (allLoaded || !loadingAll.compareAndSet(false, true)) {
+            return;
+        }
+
+        // Loaded into a separate map so records created while loading are merged, not overwritten
+        asyncStorage.loadAll().whenComplete((loaded, error) -> {
+            if (error != null) {
+                loadingAll.set(false);
+                plugin.getLogger().severe("Failed to load player statistics, holding back saves until it succeeds: "
+                        + error.getMessage());
+                return;
+            }
+            for (PlayerStats stats : loaded.values()) {
+                // A record of unknown age could never expire; its age starts now, and the
+                // loop below saves it with that time
+                stats.stampUnknownAge();
+                mergeLoaded(stats, false);
+            }
+            allLoaded = true;
+
+            // Changes made while loading were held back; journal and save the full records now
+            for (PlayerStats stats : playerStats.values()) {
+                if (stats.isDirty()) {
+                    markDirty(stats);
                 }
             }
-        }.runTaskAsynchronously(plugin);
+            plugin.getLogger().info("Loaded player statistics from storage");
+        });
+    }
+
+    /**
+     * Lazy mode only: reads storage once at startup to seed the server-wide totals,
+     * since the records themselves are only loaded as players join. Streams one page at
+     * a time so only a page of records is ever in memory. Records of unknown age are
+     * saved again with the current time, so the retention job can expire them.
+     */
+    private void seedAggregates() {
+        asyncStorage.run(() -> {
+            long seeded = 0L;
+            UUID after = null;
+            try {
+                while (true) {
+                    List<PlayerStats> page = storageBackend.loadPlayersAfter(after, SEED_PAGE_SIZE);
+                    List<PlayerStatsSnapshot> stamped = new ArrayList<>();
+                    long now = System.currentTimeMillis();
+                    for (PlayerStats stats : page) {
+                        PlayerStatsSnapshot snapshot = stats.snapshot();
+                        aggregates.addCounters(snapshot.passes, snapshot.fails, snapshot.totalAttempts);
+                        if (!playerStats.containsKey(snapshot.uuid)) {
+                            // Hot records already report their own, newer expiries
+                            aggregates.penaltyChanged(snapshot.uuid, snapshot.penaltyUntil);
+                            aggregates.cooldownChanged(snapshot.uuid, snapshot.cooldownUntil);
+                            if (snapshot.lastUpdated <= 0L) {
+                                // Version 0, so it never marks a record loaded meanwhile as saved;
+                                // queued, so a save of that record still lands after this one
+                                snapshot = new PlayerStatsSnapshot(snapshot.uuid, snapshot.totalAttempts,
+                                        snapshot.passes, snapshot.fails, snapshot.penaltyUntil, snapshot.cooldownUntil,
+                                        snapshot.failChainCount, snapshot.captchaFails,
+                                        snapshot.movementPatternPercent, now, 0L);
+                                stamped.add(snapshot);
+                            }
+                        }
+                        retentionIndex.record(snapshot.uuid, snapshot.lastUpdated);
+                    }
+                    writeQueue.enqueueAll(stamped);
+                    aggregates.addPlayers(page.size());
+                    seeded += page.size();
+                    if (page.size() < SEED_PAGE_SIZE) {
+                        return;
+                    }
+                    after = page.get(page.size() - 1).uuid;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                plugin.getLogger().warning("Failed to compute player statistics totals after " + seeded
+                        + " records: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Puts a record read from storage into memory. If a record for the same player was
+     * already created in memory (before the load finished), the stored values are folded
+     * into it so neither side's changes are lost.
+     *
+     * @param loaded The stored record
+     * @param seeded true if the stored values are already part of the aggregates (lazy mode)
+     */
+    private void mergeLoaded(PlayerStats loaded, boolean seeded) {
+        PlayerStats merged = playerStats.merge(loaded.uuid, loaded, (existing, fromStorage) -> {
+            existing.absorb(fromStorage);
+            return existing;
+        });
+
+        if (!seeded) {
+            PlayerStatsSnapshot stored = loaded.snapshot();
+            aggregates.addCounters(stored.passes, stored.fails, stored.totalAttempts);
+            if (merged == loaded) {
+                aggregates.addPlayer();
+            }
+        } else if (merged != loaded) {
+            aggregates.addPlayers(-1); // Counted once as new and once by the seed
+        }
+
+        PlayerStatsSnapshot current = merged.snapshot();
+        aggregates.penaltyChanged(current.uuid, current.penaltyUntil);
+        aggregates.cooldownChanged(current.uuid, current.cooldownUntil);
+
+        if (merged != loaded) {
+            markDirty(merged); // absorb() bumped the version; also updates the indexes
+        } else {
+            index.update(current);
+            retentionIndex.record(current.uuid, current.lastUpdated);
+        }
+    }
+
+    /**
+     * Loads a single player's statistics from storage. Blocks on I/O, so it must only be
+     * called off the main thread - normally from AsyncPlayerPreLoginEvent.
+     *
+     * @param playerId The player's UUID
+     * @throws Exception if the backend could not be read
+     */
+    public void loadPlayer(UUID playerId) throws Exception {
+        BukkitTask eviction = pendingEvictions.remove(playerId);
+        if (eviction != null) {
+            eviction.cancel();
+        }
+
+        if (!lazyLoad || loads.isLoaded(playerId)) {
+            return; // Still hot from a recent session, or everything is loaded anyway
+        }
+        // Waits out an import replacing the stored record
+        boolean started = loads.startLoadAfterWrites(playerId);
+        PlayerStats stored;
+        try {
+            stored = storageBackend.loadPlayerData(playerId);
+        } catch (Exception e) {
+            if (started) {
+                loads.loadFailed(playerId);
+            }
+            throw e;
+        }
+        completeLoad(playerId, stored);
+    }
+
+    /**
+     * Whether the player's in-memory record (if any) already holds their stored data and
+     * may therefore be saved and journaled.
+     */
+    private boolean isLoaded(UUID playerId) {
+        return lazyLoad ? loads.isLoaded(playerId) : allLoaded;
+    }
+
+    /**
+     * Lazy mode: loads a player's stored record off the main thread unless that is already
+     * done or running. A failed load is retried by the next autosave or eviction attempt.
+     */
+    private void loadInBackground(UUID playerId) {
+        if (!loads.startLoad(playerId)) {
+            return;
+        }
+        asyncStorage.loadPlayer(playerId).whenComplete((stored, error) -> {
+            if (error != null) {
+                loads.loadFailed(playerId);
+                return;
+            }
+            completeLoad(playerId, stored);
+        });
+    }
+
+    /**
+     * Lazy mode: merges a player's stored record (null if they have none) into memory, once.
+     */
+    private void completeLoad(UUID playerId, PlayerStats stored) {
+        // Journaled before a crash and not saved yet, unless the player was saved again since
+        PlayerStatsSnapshot recovered = unrecovered.get(playerId);
+        boolean useRecovered = recovered != null && (stored == null || stored.getLastUpdated() <= recovered.lastUpdated);
+        PlayerStats newest = useRecovered ? new PlayerStats(recovered) : stored;
+        if (!loads.complete(playerId, () -> {
+            if (newest != null) {
+                mergeLoaded(newest, true);
+            }
+        })) {
+            return;
+        }
+
+        // Changes made before the load were held back, and a recovered image is not stored
+        // yet; journal and save the full record now
+        PlayerStats current = playerStats.get(playerId);
+        if (current != null && (current.isDirty() || useRecovered)) {
+            markDirty(current);
+        }
+    }
+
+    /**
+     * Flushes a leaving player's statistics and, in lazy mode, schedules their eviction.
+     *
+     * @param playerId The player's UUID
+     */
+    public void handleQuit(UUID playerId) {
+        flushPlayer(playerId);
+
+        if (lazyLoad) {
+            scheduleEviction(playerId, evictAfterQuitTicks);
+        }
+    }
+
+    private void scheduleEviction(UUID playerId, long delayTicks) {
+        BukkitTask previous = pendingEvictions.put(playerId,
+                Bukkit.getScheduler().runTaskLater(plugin, () -> evict(playerId), delayTicks));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private void evict(UUID playerId) {
+        pendingEvictions.remove(playerId);
+        if (Bukkit.getPlayer(playerId) != null) {
+            return; // Came back
+        }
+
+        PlayerStats stats = playerStats.get(playerId);
+        if (stats == null) {
+            return;
+        }
+
+        if (!loads.isLoaded(playerId)) {
+            // Its changes cannot be saved before the stored record is merged in
+            loadInBackground(playerId);
+            scheduleEviction(playerId, 20L * 30);
+            return;
+        }
+        if (stats.isDirty()) {
+            // Not on disk yet - save first and try again later
+            flushPlayer(playerId);
+            scheduleEviction(playerId, 20L * 30);
+            return;
+        }
+        if (playerStats.remove(playerId, stats)) {
+            index.remove(playerId);
+            loads.forget(playerId);
+        }
+    }
+
+    /**
+     * Fetches a page of player statistics ordered by UUID, including offline players.
+     * In lazy mode the page is read from storage off the main thread; the callback always
+     * runs on the main thread.
+     *
+     * @param after The last player on the previous page, or null for the first page
+     * @param limit Maximum number of records to return
+     * @param callback Receives the page on the main thread
+     */
+    public void getPlayerPage(UUID after, int limit, Consumer<List<PlayerStats>> callback) {
+        getPlayerPage(PlayerStatsIndex.SortOrder.UUID, false, after, limit, callback);
+    }
+
+    /**
+     * Fetches the page of player statistics that follows the given player in the given
+     * order. Only the requested page is touched. In lazy mode, ascending UUID pages come from
+     * storage and so include offline players; other orders cover the players in memory.
+     *
+     * @param order Sort order
+     * @param descending true for highest values first
+     * @param after The last player on the previous page, or null for the first page
+     * @param limit Maximum number of records to return
+     * @param callback Receives the page on the main thread
+     */
+    public void getPlayerPage(PlayerStatsIndex.SortOrder order, boolean descending, UUID after, int limit,
+                              Consumer<List<PlayerStats>> callback) {
+        if (!lazyLoad || order != PlayerStatsIndex.SortOrder.UUID || descending) {
+            callback.accept(getLoadedPlayerPage(order, descending, after, limit));
+            return;
+        }
+
+        asyncStorage.loadPageAfter(after, limit)
+                .exceptionally(error -> {
+                    plugin.getLogger().warning("Failed to query player statistics page: " + error.getMessage());
+                    return new ArrayList<>();
+                })
+                .thenAcceptAsync(page -> {
+                    // Hot records are newer than what storage has
+                    List<PlayerStats> result = new ArrayList<>(page.size());
+                    for (PlayerStats stored : page) {
+                        PlayerStats hot = playerStats.get(stored.uuid);
+                        result.add(hot != null ? hot : stored);
+                    }
+                    callback.accept(result);
+                }, asyncStorage.mainThread());
+    }
+
+    /**
+     * Returns the page of in-memory player statistics that follows the given player.
+     */
+    public List<PlayerStats> getLoadedPlayerPage(PlayerStatsIndex.SortOrder order, boolean descending, UUID after, int limit) {
+        List<UUID> ids = index.page(order, descending, after, limit);
+        List<PlayerStats> page = new ArrayList<>(ids.size());
+        for (UUID playerId : ids) {
+            PlayerStats stats = playerStats.get(playerId);
+            if (stats != null) {
+                page.add(stats);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Non-blocking storage calls; see {@link AsyncStorage} for threading rules.
+     */
+    public AsyncStorage getAsyncStorage() {
+        return asyncStorage;
+    }
+
+    public boolean isLazyLoad() {
+        return lazyLoad;
     }
 
     private void startAutoSave() {
         autoSaveTask = new BukkitRunnable() {
             @Override
             public void run() {
-                saveAllData();
+                // Already on an async thread - may block briefly if the queue is backed up
+                checkpoint();
             }
         };
         autoSaveTask.runTaskTimerAsynchronously(plugin, 600L, 600L); // Every 30 seconds (600 ticks)
     }
 
-    public void saveAllData() {
-        new BukkitRunnable() {
+    /**
+     * Saves everything dirty and, once the backend holds it on disk, drops the journal
+     * segments that covered those changes.
+     */
+    private void checkpoint() {
+        try {
+            // Changes journaled before the rotation are all dirty, queued or saved by now
+            long sealed = journal != null ? journal.rotate() : 0L;
+            enqueueDirty();
+            if (writeQueue.awaitDrained(10000L)) {
+                storageBackend.sync();
+                if (journal != null) {
+                    journal.deleteUpTo(sealed);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            plugin.getLogger().severe("Failed to checkpoint player statistics: " + e.getMessage());
+        }
+    }
+
+    private void startRetention() {
+        if (!plugin.getConfig().getBoolean("storage.retention.enabled", false)) {
+            return;
+        }
+
+        long maxAgeMs = plugin.getConfig().getLong("storage.retention.maxAgeDays", 90L) * 24L * 60L * 60L * 1000L;
+        int chunkSize = Math.max(1, plugin.getConfig().getInt("storage.retention.chunkSize", 500));
+        long intervalTicks = Math.max(1L, plugin.getConfig().getLong("storage.retention.intervalMinutes", 10L)) * 60L * 20L;
+
+        retentionTask = new BukkitRunnable() {
             @Override
             public void run() {
-                try {
-                    storageBackend.saveAllData(playerStats);
-                } catch (Exception e) {
-                    plugin.getLogger().severe("Failed to save player statistics: " + e.getMessage());
+                pruneStale(System.currentTimeMillis() - maxAgeMs, chunkSize);
+            }
+        };
+        retentionTask.runTaskTimerAsynchronously(plugin, intervalTicks, intervalTicks);
+    }
+
+    /**
+     * Deletes at most one chunk of records not updated since the cutoff, from storage and
+     * from memory. Runs on an async thread; each run is bounded so storage is never
+     * locked or busy for long, and reads the stored-only records in one batch. Records
+     * that are online or not saved yet are passed over, not counted against the chunk.
+     * Nothing leaves memory or the totals until the delete has succeeded, so a failed
+     * run changes nothing and is simply retried.
+     *
+     * @return The number of records deleted
+     */
+    int pruneStale(long cutoff, int chunkSize) {
+        // Active again, or not saved yet
+        List<UUID> stale = retentionIndex.staleCandidates(cutoff, chunkSize, playerId -> {
+            PlayerStats stats = playerStats.get(playerId);
+            return stats != null && !isPrunable(playerId, stats, cutoff);
+        });
+        Map<UUID, PlayerStats> held = new HashMap<>();
+        List<UUID> notHeld = new ArrayList<>();
+        Iterator<UUID> iterator = stale.iterator();
+        while (iterator.hasNext()) {
+            UUID playerId = iterator.next();
+            PlayerStats stats = playerStats.get(playerId);
+            if (stats == null) {
+                notHeld.add(playerId);
+            } else if (isPrunable(playerId, stats, cutoff)) {
+                held.put(playerId, stats);
+            } else {
+                iterator.remove(); // Used since it was picked
+            }
+        }
+
+        List<PlayerStats> storedOnly = new ArrayList<>();
+        if (lazyLoad && !notHeld.isEmpty()) {
+            try {
+                // Only stored - load them so the totals can be corrected
+                storedOnly = storageBackend.loadPlayers(notHeld);
+            } catch (Exception e) {
+                plugin.getLogger().warning("Failed to read stale player records: " + e.getMessage());
+                stale.removeAll(notHeld);
+            }
+        }
+        if (stale.isEmpty()) {
+            return 0;
+        }
+
+        int deleted;
+        try {
+            deleted = storageBackend.deletePlayers(stale);
+        } catch (Exception e) {
+            plugin.getLogger().warning("Failed to prune stale player records: " + e.getMessage());
+            return 0;
+        }
+
+        List<PlayerStats> removed = new ArrayList<>();
+        for (Map.Entry<UUID, PlayerStats> entry : held.entrySet()) {
+            UUID playerId = entry.getKey();
+            PlayerStats stats = entry.getValue();
+            if (isPrunable(playerId, stats, cutoff) && playerStats.remove(playerId, stats)) {
+                index.remove(playerId);
+                loads.forget(playerId);
+                retentionIndex.remove(playerId);
+                removed.add(stats);
+            } else {
+                // Used while it was being deleted: save it again, which re-indexes it too
+                markDirty(stats);
+            }
+        }
+        for (PlayerStats stats : storedOnly) {
+            PlayerStats live = playerStats.get(stats.uuid);
+            if (live != null) {
+                markDirty(live); // Loaded while it was being deleted
+            } else {
+                removed.add(stats);
+            }
+        }
+        for (UUID playerId : stale) {
+            if (!held.containsKey(playerId) && !playerStats.containsKey(playerId)) {
+                retentionIndex.remove(playerId);
+            }
+        }
+
+        for (PlayerStats stats : removed) {
+            PlayerStatsSnapshot snapshot = stats.snapshot();
+            aggregates.addCounters(-snapshot.passes, -snapshot.fails, -snapshot.totalAttempts);
+            aggregates.penaltyChanged(snapshot.uuid, 0L);
+            aggregates.cooldownChanged(snapshot.uuid, 0L);
+        }
+        aggregates.addPlayers(-removed.size());
+        plugin.getLogger().info("Pruned " + deleted + " player records not updated in the retention period");
+        return deleted;
+    }
+
+    private boolean isPrunable(UUID playerId, PlayerStats stats, long cutoff) {
+        return !stats.isDirty() && plugin.getServer().getPlayer(playerId) == null
+                && stats.getLastUpdated() < cutoff;
+    }
+
+    /**
+     * Streams every stored record to the transfer's file, after saving everything changed
+     * in memory. Blocks for the whole export, so it must run off the main thread.
+     *
+     * @return The number of records exported
+     */
+    public long exportPlayers(StatsTransfer transfer, LongConsumer progress) throws Exception {
+        checkpoint();
+        return transfer.exportFrom(storageBackend, progress);
+    }
+
+    /**
+     * Streams the transfer's file into storage, replacing the records of the players in it.
+     * Blocks for the whole import, so it must run off the main thread.
+     *
+     * @return The number of records imported
+     */
+    public long importPlayers(StatsTransfer transfer, LongConsumer progress) throws Exception {
+        return transfer.importTo(this::importRecords, progress);
+    }
+
+    /**
+     * Applies one page of imported records. Players held in memory take the imported values
+     * and are saved through the write-behind queue as usual; in lazy mode, players not in
+     * memory are written straight to the backend, reading their old record first so the
+     * totals stay correct. Those players are claimed in the load tracker until the write is
+     * done, so a player joining meanwhile loads the imported record, not the old one; a
+     * player whose load is already running is applied again once it is in memory.
+     */
+    private void importRecords(Collection<PlayerStatsSnapshot> records) throws Exception {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(MAIN_THREAD_TIMEOUT_SECONDS);
+        Collection<PlayerStatsSnapshot> pending = records;
+        while (!pending.isEmpty()) {
+            Collection<PlayerStatsSnapshot> page = pending;
+            List<PlayerStatsSnapshot> loading = new ArrayList<>();
+            // Live records are changed by the main thread, so the imported values are applied there too
+            CompletableFuture<List<PlayerStatsSnapshot>> applied = CompletableFuture
+                    .supplyAsync(() -> applyImported(page, loading), asyncStorage.mainThread());
+            List<PlayerStatsSnapshot> offline;
+            try {
+                // Bounded, since the main thread stops running tasks once the plugin is disabled
+                offline = applied.get(MAIN_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                applied.cancel(false);
+                releaseImported(page);
+                throw new TimeoutException("Main thread did not apply the imported records in time");
+            }
+
+            try {
+                writeOffline(offline);
+            } finally {
+                releaseImported(offline);
+            }
+
+            if (!loading.isEmpty()) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new TimeoutException(loading.size() + " imported players are still loading");
                 }
+                Thread.sleep(IMPORT_RETRY_MS);
+            }
+            pending = loading;
+        }
+    }
+
+    private void releaseImported(Collection<PlayerStatsSnapshot> records) {
+        List<UUID> playerIds = new ArrayList<>(records.size());
+        for (PlayerStatsSnapshot record : records) {
+            playerIds.add(record.uuid);
+        }
+        loads.releaseWrites(playerIds);
+    }
+
+    /**
+     * Lazy mode: stores imported records of players not in memory, correcting the totals.
+     */
+    private void writeOffline(List<PlayerStatsSnapshot> offline) throws Exception {
+        if (offline.isEmpty()) {
+            return;
+        }
+
+        for (PlayerStatsSnapshot record : offline) {
+            PlayerStats stored = storageBackend.loadPlayerData(record.uuid);
+            if (stored == null) {
+                aggregates.addPlayer();
+            } else {
+                PlayerStatsSnapshot before = stored.snapshot();
+                aggregates.addCounters(-before.passes, -before.fails, -before.totalAttempts);
             }
-        }.runTaskAsynchronously(plugin);
+            aggregates.addCounters(record.passes, record.fails, record.totalAttempts);
+            aggregates.penaltyChanged(record.uuid, record.penaltyUntil);
+            aggregates.cooldownChanged(record.uuid, record.cooldownUntil);
+            retentionIndex.record(record.uuid, record.lastUpdated);
+        }
+        storageBackend.saveData(offline);
+    }
+
+    /**
+     * Main thread: restores imported records into the players held in memory.
+     *
+     * @param loading Receives the records of players not in memory whose load is running
+     * @return The records of players not in memory, claimed for writing
+     */
+    private List<PlayerStatsSnapshot> applyImported(Collection<PlayerStatsSnapshot> records,
+                                                    List<PlayerStatsSnapshot> loading) {
+        List<PlayerStatsSnapshot> offline = new ArrayList<>();
+        for (PlayerStatsSnapshot record : records) {
+            PlayerStats live = lazyLoad ? playerStats.get(record.uuid) : getPlayerStats(record.uuid);
+            if (live == null) {
+                if (loads.claimWrite(record.uuid)) {
+                    offline.add(record);
+                } else {
+                    loading.add(record);
+                }
+                continue;
+            }
+
+            PlayerStatsSnapshot before = live.snapshot();
+            live.restore(record);
+            aggregates.addCounters(record.passes - before.passes, record.fails - before.fails,
+                    record.totalAttempts - before.totalAttempts);
+            aggregates.penaltyChanged(record.uuid, record.penaltyUntil);
+            aggregates.cooldownChanged(record.uuid, record.cooldownUntil);
+            markDirty(live);
+        }
+        return offline;
+    }
+
+    /**
+     * Queues all changed player statistics for saving, on the storage I/O pool.
+     */
+    public void saveAllData() {
+        asyncStorage.run(() -> {
+            enqueueDirty();
+            writeQueue.requestFlush();
+        }).whenComplete((ignored, error) -> {
+            if (error != null) {
+                plugin.getLogger().warning("Failed to queue player statistics for saving: " + error.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Queues a single player's statistics if they changed and asks for an early flush.
+     * Called when the player leaves so their record does not wait for the next autosave.
+     *
+     * @param playerId The player's UUID
+     */
+    public void flushPlayer(UUID playerId) {
+        if (!isLoaded(playerId) || !dirtyPlayers.remove(playerId)) {
+            return;
+        }
+
+        PlayerStats stats = playerStats.get(playerId);
+        if (stats != null) {
+            writeQueue.enqueue(stats.snapshot());
+            writeQueue.requestFlush();
+        }
+    }
+
+    /**
+     * Hands a snapshot of every dirty record to the write-behind queue.
+     * Must not be called from the main thread, since the queue may apply backpressure.
+     */
+    private void enqueueDirty() {
+        List<PlayerStatsSnapshot> changed = new ArrayList<>();
+        Iterator<UUID> iterator = dirtyPlayers.iterator();
+        while (iterator.hasNext()) {
+            UUID playerId = iterator.next();
+            if (!isLoaded(playerId)) {
+                // Saved once the stored record is merged in
+                if (lazyLoad) {
+                    loadInBackground(playerId);
+                } else {
+                    loadAllData();
+                }
+                continue;
+            }
+            iterator.remove();
+            PlayerStats stats = playerStats.get(playerId);
+            if (stats != null && stats.isDirty()) {
+                changed.add(stats.snapshot());
+            }
+        }
+
+        try {
+            writeQueue.enqueueAll(changed);
+        } catch (InterruptedException e) {
+            // Whatever was not queued goes back to the dirty set for the next run
+            for (PlayerStatsSnapshot snapshot : changed) {
+                dirtyPlayers.add(snapshot.uuid);
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Called on the write-behind thread once a batch is stored.
+     */
+    private void onSnapshotsWritten(List<PlayerStatsSnapshot> written) {
+        for (PlayerStatsSnapshot snapshot : written) {
+            PlayerStats live = playerStats.get(snapshot.uuid);
+            if (live != null) {
+                live.markSaved(snapshot.version);
+            }
+        }
+    }
+
+    public WriteBehindQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    /**
+     * Records that a player's stats changed so the next save picks them up.
+     * The record bumps its own version as part of each change.
+     */
+    private void markDirty(PlayerStats stats) {
+        dirtyPlayers.add(stats.uuid); // Before journaling, so a checkpoint can never miss it
+        // One copy under the record's lock serves the indexes and the journal alike
+        PlayerStatsSnapshot snapshot = stats.snapshot();
+        index.update(snapshot);
+        retentionIndex.record(snapshot.uuid, snapshot.lastUpdated);
+        if (journal != null && isLoaded(stats.uuid)) {
+            journal.append(snapshot);
+        }
     }
 
     public PlayerStats getPlayerStats(UUID playerId) {
-        return playerStats.computeIfAbsent(playerId, k -> new PlayerStats(playerId));
+        PlayerStats stats = playerStats.get(playerId);
+        if (stats != null) {
+            return stats;
+        }
+        stats = playerStats.computeIfAbsent(playerId, k -> {
+            PlayerStats created = new PlayerStats(playerId);
+            aggregates.addPlayer();
+            index.update(created.snapshot());
+            return created;
+        });
+
+        if (lazyLoad && !loads.isLoaded(playerId)) {
+            // Created without the stored record, e.g. for an offline player: fetch it,
+            // and let it go again later if the player is not online to keep it hot
+            loadInBackground(playerId);
+            if (Bukkit.getPlayer(playerId) == null && !pendingEvictions.containsKey(playerId)) {
+                scheduleEviction(playerId, evictAfterQuitTicks);
+            }
+        }
+        return stats;
     }
 
     public void incrementPasses(UUID playerId) {
         PlayerStats stats = getPlayerStats(playerId);
-        stats.passes++;
-        stats.totalAttempts++;
+        stats.recordPass();
+        aggregates.addPass();
+        markDirty(stats);
     }
 
     public void incrementFails(UUID playerId) {
         PlayerStats stats = getPlayerStats(playerId);
-        stats.fails++;
-        stats.totalAttempts++;
+        stats.recordFail();
+        aggregates.addFail();
+        markDirty(stats);
     }
 
     public void setPenalty(UUID playerId, long penaltyUntil) {
         PlayerStats stats = getPlayerStats(playerId);
-        stats.penaltyUntil = penaltyUntil;
+        stats.setPenaltyUntil(penaltyUntil);
+        aggregates.penaltyChanged(playerId, penaltyUntil);
+        markDirty(stats);
+    }
+
+    public void setMovementPatternPercent(UUID playerId, int movementPatternPercent) {
+        PlayerStats stats = getPlayerStats(playerId);
+        if (stats.getMovementPatternPercent() != movementPatternPercent) {
+            stats.setMovementPatternPercent(movementPatternPercent);
+            markDirty(stats);
+        }
     }
 
     public boolean isPenalized(UUID playerId) {
         PlayerStats stats = getPlayerStats(playerId);
-        return stats.penaltyUntil > System.currentTimeMillis();
+        return stats.isPenalized();
     }
 
     public long getPenaltyTimeRemaining(UUID playerId) {
         PlayerStats stats = getPlayerStats(playerId);
-        long remaining = stats.penaltyUntil - System.currentTimeMillis();
-        return Math.max(0, remaining);
+        return stats.getPenaltyTimeRemaining();
     }
 
     public void resetPlayerStats(UUID playerId) {
         PlayerStats stats = getPlayerStats(playerId);
-        stats.passes = 0;
-        stats.fails = 0;
-        stats.totalAttempts = 0;
-        stats.penaltyUntil = 0;
+        PlayerStatsSnapshot before = stats.snapshot();
+        stats.reset();
+        aggregates.addCounters(-before.passes, -before.fails, -before.totalAttempts);
+        aggregates.penaltyChanged(playerId, 0L);
+        markDirty(stats);
     }
 
     public void removePenalty(UUID playerId) {
         PlayerStats stats = getPlayerStats(playerId);
-        stats.penaltyUntil = 0;
+        stats.setPenaltyUntil(0);
+        aggregates.penaltyChanged(playerId, 0L);
+        markDirty(stats);
+    }
+
+    public long getTotalPasses() {
+        return aggregates.getTotalPasses();
     }
 
-    public int getTotalPasses() {
-        return playerStats.values().stream().mapToInt(stats -> stats.passes).sum();
+    public long getTotalFails() {
+        return aggregates.getTotalFails();
     }
 
-    public int getTotalFails() {
-        return playerStats.values().stream().mapToInt(stats -> stats.fails).sum();
+    /**
+     * Server-wide totals. Every read is O(1) regardless of how many players are stored.
+     */
+    public StatsAggregates getAggregates() {
+        return aggregates;
     }
 
     public long getPenaltyUntil(UUID playerId) {
         PlayerStats stats = getPlayerStats(playerId);
-        return stats.penaltyUntil;
+        return stats.getPenaltyUntil();
     }
 
-    public java.util.List<UUID> getAllPlayersWithData() {
-        return new java.util.ArrayList<>(playerStats.keySet());
+    /**
+     * Read-only live view of the players held in memory. Nothing is copied.
+     */
+    public Set<UUID> getAllPlayersWithData() {
+        return Collections.unmodifiableSet(playerStats.keySet());
     }
 
-    public ConcurrentHashMap<UUID, PlayerStats> getAllPlayerStats() {
-        return new ConcurrentHashMap<>(playerStats);
+    /**
+     * Read-only live view of the in-memory player statistics. Nothing is copied;
+     * use {@link #getPlayerPage} to display a subset.
+     */
+    public Map<UUID, PlayerStats> getAllPlayerStats() {
+        return Collections.unmodifiableMap(playerStats);
     }
     
     // New methods for retry limit and cooldown system
     public void incrementCaptchaFails(UUID playerId) {
         PlayerStats stats = getPlayerStats(playerId);
         stats.incrementFail();
+        markDirty(stats);
     }
     
     public void resetCaptchaFails(UUID playerId) {
         PlayerStats stats = getPlayerStats(playerId);
         stats.resetFails();
+        markDirty(stats);
     }
     
     public int getCaptchaFails(UUID playerId) {
@@ -155,6 +1085,7 @@ public class StorageManager {
     public void recordFailureChain(UUID playerId) {
         PlayerStats stats = getPlayerStats(playerId);
         stats.recordFailureChain();
+        markDirty(stats);
     }
     
     public int getFailChainCount(UUID playerId) {
@@ -165,11 +1096,14 @@ public class StorageManager {
     public void resetFailChain(UUID playerId) {
         PlayerStats stats = getPlayerStats(playerId);
         stats.resetFailChain();
+        markDirty(stats);
     }
     
     public void setCooldownUntil(UUID playerId, long timestamp) {
         PlayerStats stats = getPlayerStats(playerId);
         stats.setCooldownUntil(timestamp);
+        aggregates.cooldownChanged(playerId, timestamp);
+        markDirty(stats);
     }
     
     public long getCooldownUntil(UUID playerId) {
@@ -186,39 +1120,58 @@ public class StorageManager {
         if (autoSaveTask != null) {
             autoSaveTask.cancel();
         }
+        if (retentionTask != null) {
+            retentionTask.cancel();
+        }
+        for (BukkitTask eviction : pendingEvictions.values()) {
+            eviction.cancel();
+        }
+        pendingEvictions.clear();
         
-        // Final save
-        try {
-            storageBackend.saveAllData(playerStats);
+        // Final save - queue whatever is still dirty and let the I/O thread drain it
+        enqueueDirty();
+        boolean saved = writeQueue.shutdown(30000L);
+        if (saved) {
             plugin.getLogger().info("Final save completed");
-        } catch (Exception e) {
-            plugin.getLogger().severe("Failed to perform final save: " + e.getMessage());
+        } else {
+            plugin.getLogger().severe("Failed to perform final save for " + writeQueue.getDepth() + " players");
+        }
+        if (journal != null) {
+            // Unsaved changes stay journaled and are replayed on the next start
+            journal.close(saved);
+        }
+
+        if (!asyncStorage.shutdown(10000L)) {
+            plugin.getLogger().warning("Storage calls still running at shutdown were abandoned");
         }
-        
         storageBackend.close();
     }
 
     // Inner class for player statistics
     public static class PlayerStats {
         public final UUID uuid;
-        public int totalAttempts;
-        public int passes;
-        public int fails;
-        public long penaltyUntil; // epoch ms
-        public int movementPatternPercent; // repetition percentage
+
+        // Guards every field below. Single-field getters are meant for the main thread, which
+        // makes the changes; other threads read through snapshot(), which is always consistent.
+        private final StampedLock lock = new StampedLock();
+        private int totalAttempts;
+        private int passes;
+        private int fails;
+        private long penaltyUntil; // epoch ms
+        private int movementPatternPercent; // repetition percentage
         
-        // New fields for retry limit and cooldown system
-        public int failChainCount = 0;
-        public int captchaFails = 0;
-        public long cooldownUntil = 0L;
+        // Retry limit and cooldown system
+        private int failChainCount = 0;
+        private int captchaFails = 0;
+        private long cooldownUntil = 0L;
+        private long lastUpdated = 0L; // epoch ms of the last change
+
+        // Dirty tracking: version is bumped on every change, savedVersion is what the backend has
+        private volatile long version = 0L;
+        private volatile long savedVersion = 0L;
 
         public PlayerStats(UUID uuid) {
             this.uuid = uuid;
-            this.totalAttempts = 0;
-            this.passes = 0;
-            this.fails = 0;
-            this.penaltyUntil = 0;
-            this.movementPatternPercent = 0;
         }
 
         public PlayerStats(UUID uuid, int totalAttempts, int passes, int fails, long penaltyUntil) {
@@ -227,12 +1180,117 @@ public class StorageManager {
             this.passes = passes;
             this.fails = fails;
             this.penaltyUntil = penaltyUntil;
-            this.movementPatternPercent = 0;
+        }
+
+        /**
+         * Rebuilds a record from a stored snapshot. The result counts as saved.
+         */
+        public PlayerStats(PlayerStatsSnapshot stored) {
+            this(stored.uuid, stored.totalAttempts, stored.passes, stored.fails, stored.penaltyUntil);
+            this.cooldownUntil = stored.cooldownUntil;
+            this.failChainCount = stored.failChainCount;
+            this.captchaFails = stored.captchaFails;
+            this.movementPatternPercent = stored.movementPatternPercent;
+            this.lastUpdated = stored.lastUpdated;
+        }
+
+        /**
+         * Takes a consistent copy of this record for saving. Never blocks unless a write
+         * is in progress at that exact moment.
+         */
+        public PlayerStatsSnapshot snapshot() {
+            long stamp = lock.tryOptimisticRead();
+            PlayerStatsSnapshot snapshot = copyFields();
+            if (lock.validate(stamp)) {
+                return snapshot;
+            }
+
+            stamp = lock.readLock();
+            try {
+                return copyFields();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private PlayerStatsSnapshot copyFields() {
+            return new PlayerStatsSnapshot(uuid, totalAttempts, passes, fails, penaltyUntil, cooldownUntil,
+                    failChainCount, captchaFails, movementPatternPercent, lastUpdated, version);
+        }
+
+        /**
+         * Must be called with the write lock held, after the change has been applied.
+         */
+        private void touch() {
+            lastUpdated = System.currentTimeMillis();
+            version++;
+        }
+
+        public void recordPass() {
+            long stamp = lock.writeLock();
+            try {
+                passes++;
+                totalAttempts++;
+                touch();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        public void recordFail() {
+            long stamp = lock.writeLock();
+            try {
+                fails++;
+                totalAttempts++;
+                touch();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        public void reset() {
+            long stamp = lock.writeLock();
+            try {
+                passes = 0;
+                fails = 0;
+                totalAttempts = 0;
+                penaltyUntil = 0;
+                touch();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        public int getTotalAttempts() {
+            return totalAttempts;
+        }
+
+        public int getPasses() {
+            return passes;
+        }
+
+        public int getFails() {
+            return fails;
         }
 
         public double getSuccessRate() {
-            if (totalAttempts == 0) return 0.0;
-            return (double) passes / totalAttempts;
+            PlayerStatsSnapshot snapshot = snapshot();
+            if (snapshot.totalAttempts == 0) return 0.0;
+            return (double) snapshot.passes / snapshot.totalAttempts;
+        }
+
+        public long getPenaltyUntil() {
+            return penaltyUntil;
+        }
+
+        public void setPenaltyUntil(long penaltyUntil) {
+            long stamp = lock.writeLock();
+            try {
+                this.penaltyUntil = penaltyUntil;
+                touch();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
         }
 
         public boolean isPenalized() {
@@ -249,16 +1307,34 @@ public class StorageManager {
         }
 
         public void setMovementPatternPercent(int movementPatternPercent) {
-            this.movementPatternPercent = movementPatternPercent;
+            long stamp = lock.writeLock();
+            try {
+                this.movementPatternPercent = movementPatternPercent;
+                touch();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
         }
         
-        // New methods for retry limit and cooldown system
+        // Retry limit and cooldown system
         public void incrementFail() { 
-            captchaFails++; 
+            long stamp = lock.writeLock();
+            try {
+                captchaFails++;
+                touch();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
         }
         
         public void resetFails() { 
-            captchaFails = 0; 
+            long stamp = lock.writeLock();
+            try {
+                captchaFails = 0;
+                touch();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
         }
 
         public int getCaptchaFails() { 
@@ -266,7 +1342,13 @@ public class StorageManager {
         }
 
         public void recordFailureChain() { 
-            failChainCount++; 
+            long stamp = lock.writeLock();
+            try {
+                failChainCount++;
+                touch();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
         }
         
         public int getFailChainCount() { 
@@ -274,11 +1356,23 @@ public class StorageManager {
         }
         
         public void resetFailChain() { 
-            failChainCount = 0; 
+            long stamp = lock.writeLock();
+            try {
+                failChainCount = 0;
+                touch();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
         }
 
         public void setCooldownUntil(long ts) { 
-            cooldownUntil = ts; 
+            long stamp = lock.writeLock();
+            try {
+                cooldownUntil = ts;
+                touch();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
         }
         
         public long getCooldownUntil() { 
@@ -288,12 +1382,185 @@ public class StorageManager {
         public boolean isOnCooldown() {
             return System.currentTimeMillis() < cooldownUntil;
         }
+
+        public long getLastUpdated() {
+            return lastUpdated;
+        }
+
+        /**
+         * Folds a copy of this player's record read from storage into this in-memory record,
+         * which only holds changes made since it was created.
+         */
+        void absorb(PlayerStats stored) {
+            PlayerStatsSnapshot from = stored.snapshot();
+            long stamp = lock.writeLock();
+            try {
+                totalAttempts += from.totalAttempts;
+                passes += from.passes;
+                fails += from.fails;
+                failChainCount += from.failChainCount;
+                captchaFails += from.captchaFails;
+                penaltyUntil = Math.max(penaltyUntil, from.penaltyUntil);
+                cooldownUntil = Math.max(cooldownUntil, from.cooldownUntil);
+                if (movementPatternPercent == 0) {
+                    movementPatternPercent = from.movementPatternPercent;
+                }
+                touch();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Replaces every value with an imported record, keeping its last update time.
+         */
+        void restore(PlayerStatsSnapshot imported) {
+            long stamp = lock.writeLock();
+            try {
+                totalAttempts = imported.totalAttempts;
+                passes = imported.passes;
+                fails = imported.fails;
+                penaltyUntil = imported.penaltyUntil;
+                cooldownUntil = imported.cooldownUntil;
+                failChainCount = imported.failChainCount;
+                captchaFails = imported.captchaFails;
+                movementPatternPercent = imported.movementPatternPercent;
+                touch();
+                if (imported.lastUpdated > 0L) {
+                    lastUpdated = imported.lastUpdated;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Gives a record that was stored without a last update time the current time, so it
+         * can age out like any other. The record counts as changed afterwards.
+         */
+        void stampUnknownAge() {
+            long stamp = lock.writeLock();
+            try {
+                if (lastUpdated <= 0L) {
+                    touch();
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Records that the backend now holds the given version of this record.
+         */
+        void markSaved(long savedVersion) {
+            this.savedVersion = savedVersion;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public boolean isDirty() {
+            return version != savedVersion;
+        }
     }
 
     // Interface for storage backends
     public interface StorageBackend {
         void loadAllData(ConcurrentHashMap<UUID, PlayerStats> playerStats) throws Exception;
-        void saveAllData(ConcurrentHashMap<UUID, PlayerStats> playerStats) throws Exception;
+
+        /**
+         * Persists only the given records, which are the ones changed since the last save.
+         */
+        void saveData(Collection<PlayerStatsSnapshot> changed) throws Exception;
+
+        /**
+         * Loads a single player's record.
+         *
+         * @return The stored record, or null if the player has none
+         */
+        PlayerStats loadPlayerData(UUID uuid) throws Exception;
+
+        /**
+         * Loads the records of the given players in as few reads as the backend allows.
+         * Players without a record are left out.
+         */
+        default List<PlayerStats> loadPlayers(Collection<UUID> uuids) throws Exception {
+            List<PlayerStats> found = new ArrayList<>(uuids.size());
+            for (UUID uuid : uuids) {
+                PlayerStats stats = loadPlayerData(uuid);
+                if (stats != null) {
+                    found.add(stats);
+                }
+            }
+            return found;
+        }
+
+        /**
+         * Order every backend stores and pages records in: unsigned, most significant bits
+         * first. This is the order of the UUIDs' string and big-endian binary forms, so it
+         * matches what the SQL backends sort by and how the YAML shards are laid out.
+         */
+        Comparator<UUID> UUID_ORDER = (a, b) -> {
+            int result = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+            return result != 0 ? result : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+        };
+
+        /**
+         * Loads a page of records in UUID_ORDER.
+         */
+        List<PlayerStats> loadPlayerPage(int offset, int limit) throws Exception;
+
+        /**
+         * Loads up to limit records that follow the given UUID in UUID_ORDER. Unlike an
+         * offset, the key stays valid while records are added or deleted, so paging with it
+         * never skips or repeats a record.
+         *
+         * @param after The last UUID of the previous page, or null to start from the first record
+         */
+        List<PlayerStats> loadPlayersAfter(UUID after, int limit) throws Exception;
+
+        /**
+         * Deletes the given players' records as one bounded operation.
+         *
+         * @return The number of records deleted
+         */
+        int deletePlayers(Collection<UUID> uuids) throws Exception;
+
+        /**
+         * Deletes a single player's record.
+         *
+         * @return true if a record was deleted
+         */
+        boolean deletePlayerData(UUID uuid) throws Exception;
+
+        boolean hasPlayerData(UUID uuid) throws Exception;
+
+        int getStoredPlayerCount() throws Exception;
+
+        /**
+         * Makes every earlier save durable. Called at each autosave checkpoint, before the
+         * journal segments covering those saves are dropped. Backends that sync on every
+         * write have nothing to do here.
+         */
+        default void sync() throws Exception {
+        }
+
+        /**
+         * One-time setup that is too slow for the constructor, such as a schema upgrade.
+         * Runs on an I/O thread at startup; calls made before it finishes may fail.
+         */
+        default void initialize() throws Exception {
+        }
+
+        default void saveAllData(ConcurrentHashMap<UUID, PlayerStats> playerStats) throws Exception {
+            List<PlayerStatsSnapshot> snapshots = new ArrayList<>(playerStats.size());
+            for (PlayerStats stats : playerStats.values()) {
+                snapshots.add(stats.snapshot());
+            }
+            saveData(snapshots);
+        }
+
         void close();
     }
 }
\ No newline at end of file
@@ -0,0 +1,306 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind queue for player statistics, keyed by UUID.
+ * Only the latest snapshot per player is kept, so repeated changes to the same player
+ * between flushes collapse into one write. A single I/O thread drains the queue in
+ * batches whenever the flush interval elapses or the batch size is reached.
+ */
+public class WriteBehindQueue {
+
+    /**
+     * Receives drained batches on the I/O thread.
+     */
+    public interface Sink {
+        void write(Collection<PlayerStatsSnapshot> batch) throws Exception;
+    }
+
+    private final Sink sink;
+    private final Consumer<List<PlayerStatsSnapshot>> onWritten;
+    private final long flushIntervalMs;
+    private final int batchSize;
+    private final int maxPending;
+    private final Logger logger;
+
+    private final Map<UUID, PlayerStatsSnapshot> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wakeUp = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+    private final Thread ioThread;
+    private volatile boolean flushRequested;
+    private volatile boolean flushing;
+    private volatile boolean running = true;
+
+    // Counters
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong backpressureWaits = new AtomicLong();
+    private volatile long flushCount;
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+    private volatile long totalFlushNanos;
+
+    /**
+     * Creates the queue and starts its I/O thread.
+     *
+     * @param sink Writes a batch to storage
+     * @param onWritten Called on the I/O thread with every batch that was written successfully
+     * @param flushIntervalMs Maximum time a snapshot waits before being written
+     * @param batchSize Flush early once this many players are pending; also the maximum batch size
+     * @param maxPending Bulk producers block while more than this many players are pending
+     * @param logger Logger for flush failures
+     */
+    public WriteBehindQueue(Sink sink, Consumer<List<PlayerStatsSnapshot>> onWritten,
+                            long flushIntervalMs, int batchSize, int maxPending, Logger logger) {
+        this.sink = sink;
+        this.onWritten = onWritten;
+        this.flushIntervalMs = Math.max(50L, flushIntervalMs);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxPending = Math.max(this.batchSize, maxPending);
+        this.logger = logger;
+
+        this.ioThread = new Thread(this::runLoop, "CactusCaptcha-WriteBehind");
+        this.ioThread.setDaemon(true);
+        this.ioThread.start();
+    }
+
+    /**
+     * Queues a snapshot, replacing any older one for the same player. Never blocks,
+     * so it is safe to call from the main thread.
+     */
+    public void enqueue(PlayerStatsSnapshot snapshot) {
+        enqueued.incrementAndGet();
+        if (pending.put(snapshot.uuid, snapshot) != null) {
+            coalesced.incrementAndGet();
+        }
+        if (pending.size() >= batchSize) {
+            signal();
+        }
+    }
+
+    /**
+     * Queues many snapshots. Blocks the calling thread while the queue is over its limit,
+     * so only call this from async threads.
+     */
+    public void enqueueAll(Collection<PlayerStatsSnapshot> snapshots) throws InterruptedException {
+        for (PlayerStatsSnapshot snapshot : snapshots) {
+            if (pending.size() >= maxPending) {
+                awaitCapacity();
+            }
+            enqueue(snapshot);
+        }
+    }
+
+    private void awaitCapacity() throws InterruptedException {
+        backpressureWaits.incrementAndGet();
+        lock.lock();
+        try {
+            flushRequested = true;
+            wakeUp.signal();
+            while (running && pending.size() >= maxPending) {
+                drained.await(flushIntervalMs, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Asks the I/O thread to flush now instead of waiting for the interval.
+     */
+    public void requestFlush() {
+        flushRequested = true;
+        signal();
+    }
+
+    private void signal() {
+        lock.lock();
+        try {
+            wakeUp.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runLoop() {
+        while (running) {
+            lock.lock();
+            try {
+                if (!flushRequested && pending.size() < batchSize) {
+                    wakeUp.await(flushIntervalMs, TimeUnit.MILLISECONDS);
+                }
+                flushRequested = false;
+            } catch (InterruptedException e) {
+                // Woken for shutdown
+            } finally {
+                lock.unlock();
+            }
+
+            drain();
+        }
+        drain();
+    }
+
+    /**
+     * Writes everything pending in batches. Failed batches go back into the queue
+     * unless a newer snapshot for the same player arrived meanwhile.
+     */
+    private void drain() {
+        flushing = true;
+        try {
+            drainBatches();
+        } finally {
+            flushing = false;
+            lock.lock();
+            try {
+                drained.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void drainBatches() {
+        while (!pending.isEmpty()) {
+            List<PlayerStatsSnapshot> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+            Iterator<UUID> iterator = pending.keySet().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                PlayerStatsSnapshot snapshot = pending.remove(iterator.next());
+                if (snapshot != null) {
+                    batch.add(snapshot);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            try {
+                sink.write(batch);
+                recordFlush(System.nanoTime() - start);
+                written.addAndGet(batch.size());
+                onWritten.accept(batch);
+            } catch (Exception e) {
+                failedFlushes.incrementAndGet();
+                for (PlayerStatsSnapshot snapshot : batch) {
+                    pending.putIfAbsent(snapshot.uuid, snapshot);
+                }
+                logger.severe("Failed to save player statistics: " + e.getMessage());
+                return; // Retry on the next interval
+            } finally {
+                lock.lock();
+                try {
+                    drained.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private void recordFlush(long nanos) {
+        flushCount++;
+        lastFlushNanos = nanos;
+        totalFlushNanos += nanos;
+        if (nanos > maxFlushNanos) {
+            maxFlushNanos = nanos;
+        }
+    }
+
+    /**
+     * Asks for a flush and waits until everything queued so far is written.
+     *
+     * @param timeoutMs How long to wait
+     * @return true if the queue was fully written, false on timeout (e.g. the backend is failing)
+     */
+    public boolean awaitDrained(long timeoutMs) throws InterruptedException {
+        requestFlush();
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        lock.lock();
+        try {
+            while (!pending.isEmpty() || flushing) {
+                if (remaining <= 0L) {
+                    return false;
+                }
+                remaining = drained.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the I/O thread after writing everything still pending.
+     *
+     * @param timeoutMs How long to wait for the final drain
+     * @return true if the queue is empty afterwards
+     */
+    public boolean shutdown(long timeoutMs) {
+        running = false;
+        ioThread.interrupt();
+        try {
+            ioThread.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return pending.isEmpty();
+    }
+
+    public int getDepth() {
+        return pending.size();
+    }
+
+    public long getEnqueuedCount() {
+        return enqueued.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getFailedFlushCount() {
+        return failedFlushes.get();
+    }
+
+    public long getBackpressureWaitCount() {
+        return backpressureWaits.get();
+    }
+
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    public double getLastFlushMillis() {
+        return lastFlushNanos / 1_000_000.0;
+    }
+
+    public double getMaxFlushMillis() {
+        return maxFlushNanos / 1_000_000.0;
+    }
+
+    public double getAverageFlushMillis() {
+        long flushes = flushCount;
+        return flushes == 0 ? 0.0 : (totalFlushNanos / (double) flushes) / 1_000_000.0;
+    }
+}
@@ -5,86 +5,264 @@ import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Stores one YAML file per player. Files are spread over 256 shard directories named
+ * after the first two hex digits of the UUID (data/ab/ab12...yml), so no directory
+ * grows past a few hundred entries. Files left in the old flat layout are moved into
+ * their shard the first time the whole store is read.
+ */
 public class YamlStorage implements StorageManager.StorageBackend {
 
+    private static final int SHARD_PREFIX_LENGTH = 2;
+
     private final CactusCaptcha plugin;
     private final File dataFolder;
+    private volatile boolean migrated;
 
     public YamlStorage(CactusCaptcha plugin) {
         this.plugin = plugin;
         this.dataFolder = new File(plugin.getDataFolder(), "data");
-        
+
         // Create data directory if it doesn't exist
         if (!dataFolder.exists()) {
             dataFolder.mkdirs();
         }
     }
 
+    private File shardFolder(String uuidString) {
+        return new File(dataFolder, uuidString.substring(0, SHARD_PREFIX_LENGTH));
+    }
+
+    private File playerFile(UUID uuid) {
+        String uuidString = uuid.toString();
+        return new File(shardFolder(uuidString), uuidString + ".yml");
+    }
+
+    /**
+     * Shard directories in UUID order, which is also the order of the players inside them.
+     */
+    private File[] shardFolders() {
+        File[] shards = dataFolder.listFiles(file -> file.isDirectory() && file.getName().length() == SHARD_PREFIX_LENGTH);
+        if (shards == null) {
+            return new File[0];
+        }
+        Arrays.sort(shards);
+        return shards;
+    }
+
+    private static String[] playerFileNames(File shard) {
+        String[] names = shard.list((dir, name) -> name.endsWith(".yml"));
+        return names != null ? names : new String[0];
+    }
+
+    /**
+     * Moves files from the old flat data/ layout into their shard directories. Runs once.
+     */
+    private synchronized void migrateFlatFiles() {
+        if (migrated) {
+            return;
+        }
+
+        File[] flatFiles = dataFolder.listFiles(file -> file.isFile() && file.getName().endsWith(".yml"));
+        if (flatFiles != null && flatFiles.length > 0) {
+            int moved = 0;
+            for (File file : flatFiles) {
+                try {
+                    File shard = shardFolder(file.getName());
+                    if (!shard.exists()) {
+                        shard.mkdirs();
+                    }
+                    Files.move(file.toPath(), new File(shard, file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    moved++;
+                } catch (IOException e) {
+                    plugin.getLogger().warning("Failed to move " + file.getName() + " into its shard: " + e.getMessage());
+                }
+            }
+            plugin.getLogger().info("Moved " + moved + " player files into sharded data directories");
+        }
+        migrated = true;
+    }
+
     @Override
     public void loadAllData(ConcurrentHashMap<UUID, StorageManager.PlayerStats> playerStats) throws Exception {
-        File[] files = dataFolder.listFiles((dir, name) -> name.endsWith(".yml"));
-        
-        if (files == null) {
-            return;
+        migrateFlatFiles();
+        File[] shards = shardFolders();
+
+        // Parse shards in parallel; SnakeYAML parsing dominates, not disk reads
+        long start = System.nanoTime();
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger loadedCount = new AtomicInteger();
+        ForkJoinPool loader = new ForkJoinPool(threads);
+        try {
+            loader.submit(() -> Arrays.stream(shards).parallel().forEach(shard -> {
+                for (String name : playerFileNames(shard)) {
+                    try {
+                        StorageManager.PlayerStats stats = readPlayerFile(new File(shard, name));
+                        playerStats.put(stats.uuid, stats);
+                        loadedCount.incrementAndGet();
+
+                    } catch (Exception e) {
+                        plugin.getLogger().warning("Failed to load data for file " + name + ": " + e.getMessage());
+                    }
+                }
+            })).get();
+        } finally {
+            loader.shutdown();
+            loader.awaitTermination(5, TimeUnit.SECONDS);
+        }
+
+        long elapsedMs = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        plugin.getLogger().info("Loaded " + loadedCount.get() + " player records from YAML storage in " + elapsedMs + "ms ("
+                + (loadedCount.get() * 1000L / elapsedMs) + " records/s on " + threads + " threads)");
+    }
+
+    private StorageManager.PlayerStats readPlayerFile(File file) {
+        String fileName = file.getName();
+        String uuidString = fileName.substring(0, fileName.length() - 4); // Remove .yml extension
+        UUID uuid = UUID.fromString(uuidString);
+
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+
+        int totalAttempts = config.getInt("totalAttempts", 0);
+        int passes = config.getInt("passes", 0);
+        int fails = config.getInt("fails", 0);
+        long penaltyUntil = config.getLong("penaltyUntil", 0);
+        long cooldownUntil = config.getLong("cooldownUntil", 0);
+        int failChainCount = config.getInt("failChainCount", 0);
+        int captchaFails = config.getInt("captchaFails", 0);
+        int movementPatternPercent = config.getInt("movementPatternPercent", 0);
+        long lastUpdated = config.getLong("lastUpdated", file.lastModified());
+
+        return new StorageManager.PlayerStats(new PlayerStatsSnapshot(uuid, totalAttempts, passes, fails, penaltyUntil,
+                cooldownUntil, failChainCount, captchaFails, movementPatternPercent, lastUpdated, 0L));
+    }
+
+    @Override
+    public StorageManager.PlayerStats loadPlayerData(UUID uuid) {
+        File playerFile = playerFile(uuid);
+        if (!playerFile.exists() && !migrated) {
+            playerFile = new File(dataFolder, uuid.toString() + ".yml"); // Not moved yet
         }
+        return playerFile.exists() ? readPlayerFile(playerFile) : null;
+    }
+
+    @Override
+    public List<StorageManager.PlayerStats> loadPlayerPage(int offset, int limit) {
+        migrateFlatFiles();
+        List<StorageManager.PlayerStats> page = new ArrayList<>();
 
-        for (File file : files) {
-            try {
-                String fileName = file.getName();
-                String uuidString = fileName.substring(0, fileName.length() - 4); // Remove .yml extension
-                UUID uuid = UUID.fromString(uuidString);
-                
-                YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
-                
-                int totalAttempts = config.getInt("totalAttempts", 0);
-                int passes = config.getInt("passes", 0);
-                int fails = config.getInt("fails", 0);
-                long penaltyUntil = config.getLong("penaltyUntil", 0);
-                
-                StorageManager.PlayerStats stats = new StorageManager.PlayerStats(uuid, totalAttempts, passes, fails, penaltyUntil);
-                playerStats.put(uuid, stats);
-                
-            } catch (Exception e) {
-                plugin.getLogger().warning("Failed to load data for file " + file.getName() + ": " + e.getMessage());
+        // Whole shards before the offset are skipped by count; only the files on the page are parsed
+        int skip = offset;
+        for (File shard : shardFolders()) {
+            if (page.size() >= limit) {
+                break;
             }
+            String[] names = playerFileNames(shard);
+            if (skip >= names.length) {
+                skip -= names.length;
+                continue;
+            }
+
+            Arrays.sort(names);
+            for (int i = skip; i < names.length && page.size() < limit; i++) {
+                try {
+                    page.add(readPlayerFile(new File(shard, names[i])));
+                } catch (Exception e) {
+                    plugin.getLogger().warning("Failed to load data for file " + names[i] + ": " + e.getMessage());
+                }
+            }
+            skip = 0;
         }
-        
-        plugin.getLogger().info("Loaded " + playerStats.size() + " player records from YAML storage");
+        return page;
     }
 
     @Override
-    public void saveAllData(ConcurrentHashMap<UUID, StorageManager.PlayerStats> playerStats) throws Exception {
-        for (StorageManager.PlayerStats stats : playerStats.values()) {
+    public List<StorageManager.PlayerStats> loadPlayersAfter(UUID after, int limit) {
+        migrateFlatFiles();
+        List<StorageManager.PlayerStats> page = new ArrayList<>();
+
+        // File names sort like the UUIDs they hold, so shards and files before the key are skipped by name
+        String afterName = after != null ? after.toString() + ".yml" : null;
+        String afterShard = after != null ? afterName.substring(0, SHARD_PREFIX_LENGTH) : null;
+        for (File shard : shardFolders()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            if (afterShard != null && shard.getName().compareTo(afterShard) < 0) {
+                continue;
+            }
+
+            String[] names = playerFileNames(shard);
+            Arrays.sort(names);
+            for (int i = 0; i < names.length && page.size() < limit; i++) {
+                if (afterName != null && names[i].compareTo(afterName) <= 0) {
+                    continue;
+                }
+                try {
+                    page.add(readPlayerFile(new File(shard, names[i])));
+                } catch (Exception e) {
+                    plugin.getLogger().warning("Failed to load data for file " + names[i] + ": " + e.getMessage());
+                }
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void saveData(Collection<PlayerStatsSnapshot> changed) throws Exception {
+        for (PlayerStatsSnapshot stats : changed) {
             savePlayerData(stats);
         }
     }
 
-    private void savePlayerData(StorageManager.PlayerStats stats) throws IOException {
-        File playerFile = new File(dataFolder, stats.uuid.toString() + ".yml");
+    private void savePlayerData(PlayerStatsSnapshot stats) throws IOException {
+        File playerFile = playerFile(stats.uuid);
+        File shard = playerFile.getParentFile();
+        if (!shard.exists()) {
+            shard.mkdirs();
+        }
         YamlConfiguration config = new YamlConfiguration();
-        
+
         config.set("uuid", stats.uuid.toString());
         config.set("totalAttempts", stats.totalAttempts);
         config.set("passes", stats.passes);
         config.set("fails", stats.fails);
         config.set("penaltyUntil", stats.penaltyUntil);
-        config.set("lastUpdated", System.currentTimeMillis());
-        
+        config.set("cooldownUntil", stats.cooldownUntil);
+        config.set("failChainCount", stats.failChainCount);
+        config.set("captchaFails", stats.captchaFails);
+        config.set("movementPatternPercent", stats.movementPatternPercent);
+        config.set("lastUpdated", stats.lastUpdated > 0 ? stats.lastUpdated : System.currentTimeMillis());
+
         config.save(playerFile);
+
+        if (!migrated) {
+            // The sharded file now supersedes any flat one
+            new File(dataFolder, stats.uuid.toString() + ".yml").delete();
+        }
     }
 
-    public void savePlayerDataAsync(StorageManager.PlayerStats stats) {
-        // Save individual player data asynchronously
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            try {
-                savePlayerData(stats);
-            } catch (IOException e) {
-                plugin.getLogger().warning("Failed to save data for player " + stats.uuid + ": " + e.getMessage());
+    @Override
+    public int deletePlayers(Collection<UUID> uuids) {
+        int deleted = 0;
+        for (UUID uuid : uuids) {
+            if (deletePlayerData(uuid)) {
+                deleted++;
             }
-        });
+        }
+        return deleted;
     }
 
     @Override
@@ -97,27 +275,26 @@ public class YamlStorage implements StorageManager.StorageBackend {
      * Clean up old player data files (optional maintenance method)
      */
     public void cleanupOldData(long maxAgeMs) {
-        File[] files = dataFolder.listFiles((dir, name) -> name.endsWith(".yml"));
-        
-        if (files == null) {
-            return;
-        }
-
+        migrateFlatFiles();
         long currentTime = System.currentTimeMillis();
         int deletedCount = 0;
 
-        for (File file : files) {
-            try {
-                YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
-                long lastUpdated = config.getLong("lastUpdated", 0);
-                
+        // Replay, import and shard migration rewrite files without a player update, so only the
+        // stored lastUpdated is authoritative. It is never newer than the file, though, so a file
+        // untouched since the cutoff is stale without parsing it.
+        for (File shard : shardFolders()) {
+            for (String name : playerFileNames(shard)) {
+                File file = new File(shard, name);
+                long lastUpdated = file.lastModified();
+                if (lastUpdated > 0 && (currentTime - lastUpdated) <= maxAgeMs) {
+                    lastUpdated = YamlConfiguration.loadConfiguration(file).getLong("lastUpdated", lastUpdated);
+                }
+
                 if (lastUpdated > 0 && (currentTime - lastUpdated) > maxAgeMs) {
                     if (file.delete()) {
                         deletedCount++;
                     }
                 }
-            } catch (Exception e) {
-                plugin.getLogger().warning("Failed to check age of file " + file.getName() + ": " + e.getMessage());
             }
         }
 
@@ -129,24 +306,34 @@ public class YamlStorage implements StorageManager.StorageBackend {
     /**
      * Get the number of stored player records
      */
+    @Override
     public int getStoredPlayerCount() {
-        File[] files = dataFolder.listFiles((dir, name) -> name.endsWith(".yml"));
-        return files != null ? files.length : 0;
+        migrateFlatFiles();
+        int count = 0;
+        for (File shard : shardFolders()) {
+            count += playerFileNames(shard).length;
+        }
+        return count;
     }
 
     /**
      * Check if data exists for a specific player
      */
+    @Override
     public boolean hasPlayerData(UUID uuid) {
-        File playerFile = new File(dataFolder, uuid.toString() + ".yml");
-        return playerFile.exists();
+        return playerFile(uuid).exists()
+                || (!migrated && new File(dataFolder, uuid.toString() + ".yml").exists());
     }
 
     /**
      * Delete data for a specific player
      */
+    @Override
     public boolean deletePlayerData(UUID uuid) {
-        File playerFile = new File(dataFolder, uuid.toString() + ".yml");
-        return playerFile.delete();
+        boolean deleted = playerFile(uuid).delete();
+        if (!migrated) {
+            deleted |= new File(dataFolder, uuid.toString() + ".yml").delete();
+        }
+        return deleted;
     }
-}
\ No newline at end of file
+}
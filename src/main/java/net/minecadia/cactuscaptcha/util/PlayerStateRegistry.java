@@ -0,0 +1,159 @@
+package net.minecadia.cactuscaptcha.util;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * One place that knows every piece of per-player state the plugin keeps. Subsystems register
+ * their per-player maps (or a release callback) here once, and the quit listener purges a
+ * player from all of them with one remove per subsystem instead of each subsystem scanning
+ * its map for offline players.
+ *
+ * State that has to outlive the session (e.g. when a player last passed a captcha) is
+ * registered as retained: on quit it is scheduled on a timing wheel and released once its
+ * time to live is up, unless the player joins again first.
+ *
+ * The wheel moves in whole seconds and is caught up on every join, quit and count, so no
+ * task of its own is needed. Main thread only.
+ */
+public final class PlayerStateRegistry {
+
+    private static final PlayerStateRegistry INSTANCE = new PlayerStateRegistry(System::currentTimeMillis);
+
+    private static final class Subsystem {
+        final Consumer<UUID> release;
+        final IntSupplier size;
+        final long ttlSeconds;
+        final TimingWheel<UUID> expiries; // null unless retained
+
+        Subsystem(Consumer<UUID> release, IntSupplier size, long ttlSeconds) {
+            this.release = release;
+            this.size = size;
+            this.ttlSeconds = ttlSeconds;
+            this.expiries = ttlSeconds > 0L ? new TimingWheel<>(64) : null;
+        }
+    }
+
+    private final Map<String, Subsystem> subsystems = new LinkedHashMap<>();
+    private final LongSupplier clock;
+    private long lastAdvanceMs;
+
+    PlayerStateRegistry(LongSupplier clock) {
+        this.clock = clock;
+        this.lastAdvanceMs = clock.getAsLong();
+    }
+
+    public static PlayerStateRegistry get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers per-player state that is dropped as soon as the player quits.
+     * Registering the same name again replaces the earlier registration.
+     */
+    public void register(String name, Consumer<UUID> release, IntSupplier size) {
+        subsystems.put(name, new Subsystem(release, size, 0L));
+    }
+
+    public void register(String name, Map<UUID, ?> map) {
+        register(name, map::remove, map::size);
+    }
+
+    public void register(String name, Collection<UUID> players) {
+        register(name, players::remove, players::size);
+    }
+
+    /**
+     * Registers per-player state that is kept for the given time after the player quits.
+     */
+    public void registerRetained(String name, Consumer<UUID> release, IntSupplier size, long ttlSeconds) {
+        subsystems.put(name, new Subsystem(release, size, Math.max(1L, ttlSeconds)));
+    }
+
+    public void registerRetained(String name, Map<UUID, ?> map, long ttlSeconds) {
+        registerRetained(name, map::remove, map::size, ttlSeconds);
+    }
+
+    public void registerRetained(String name, Collection<UUID> players, long ttlSeconds) {
+        registerRetained(name, players::remove, players::size, ttlSeconds);
+    }
+
+    /**
+     * Purges a player who quit from every subsystem, or starts the clock on retained state.
+     */
+    public void handleQuit(UUID playerId) {
+        expire();
+        for (Subsystem subsystem : subsystems.values()) {
+            if (subsystem.expiries != null) {
+                subsystem.expiries.schedule(playerId, subsystem.ttlSeconds);
+            } else {
+                subsystem.release.accept(playerId);
+            }
+        }
+    }
+
+    /**
+     * Keeps retained state for a player who came back before it expired.
+     */
+    public void handleJoin(UUID playerId) {
+        expire();
+        for (Subsystem subsystem : subsystems.values()) {
+            if (subsystem.expiries != null) {
+                subsystem.expiries.cancel(playerId);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of players held by each subsystem, in registration order.
+     */
+    public Map<String, Integer> getCounts() {
+        expire();
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, Subsystem> entry : subsystems.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().size.getAsInt());
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the number of retained players waiting to expire in each retained subsystem.
+     */
+    public Map<String, Integer> getPendingExpiries() {
+        Map<String, Integer> pending = new LinkedHashMap<>();
+        for (Map.Entry<String, Subsystem> entry : subsystems.entrySet()) {
+            if (entry.getValue().expiries != null) {
+                pending.put(entry.getKey(), entry.getValue().expiries.size());
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Moves every retention wheel on by the whole seconds elapsed and releases what expired.
+     */
+    private void expire() {
+        long nowMs = clock.getAsLong();
+        long seconds = (nowMs - lastAdvanceMs) / 1000L;
+        if (seconds <= 0L) {
+            return;
+        }
+        lastAdvanceMs += seconds * 1000L;
+
+        for (Subsystem subsystem : subsystems.values()) {
+            if (subsystem.expiries == null || subsystem.expiries.size() == 0) {
+                continue;
+            }
+            // Once its time to live has passed every pending entry is due anyway
+            long steps = Math.min(seconds, subsystem.ttlSeconds);
+            for (long i = 0; i < steps; i++) {
+                subsystem.expiries.advance(subsystem.release);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package net.minecadia.cactuscaptcha.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel: schedules keys to fire after a number of ticks. Deadlines are
+ * hashed into a fixed ring of slots by tick, so each advance only looks at the one slot
+ * for the current tick instead of every scheduled key. Scheduling and cancelling are O(1).
+ *
+ * A key is scheduled at most once; scheduling it again replaces its deadline. Deadlines
+ * further away than one turn of the wheel stay in their slot until their turn comes.
+ *
+ * Not thread-safe: meant to be owned and advanced by the main thread, once per server tick.
+ *
+ * @param <K> Key type, e.g. a player's UUID
+ */
+public class TimingWheel<K> {
+
+    private static final class Node<K> {
+        final K key;
+        long deadline;
+        int slot;
+        Node<K> prev;
+        Node<K> next;
+
+        Node(K key) {
+            this.key = key;
+        }
+    }
+
+    private final Node<K>[] slots;
+    private final int mask;
+    private final Map<K, Node<K>> scheduled = new HashMap<>();
+    private long tick;
+
+    /**
+     * @param slotCount Number of slots, rounded up to a power of two; ideally around the longest usual delay
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(int slotCount) {
+        int size = Integer.highestOneBit(Math.max(2, slotCount) - 1) << 1;
+        this.slots = (Node<K>[]) new Node[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Schedules the key to fire after the given number of ticks (at least one), replacing
+     * any earlier schedule for it.
+     */
+    public void schedule(K key, long delayTicks) {
+        Node<K> node = scheduled.get(key);
+        if (node != null) {
+            unlink(node);
+        } else {
+            node = new Node<>(key);
+            scheduled.put(key, node);
+        }
+        node.deadline = tick + Math.max(1L, delayTicks);
+        link(node);
+    }
+
+    /**
+     * @return true if the key was scheduled
+     */
+    public boolean cancel(K key) {
+        Node<K> node = scheduled.remove(key);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    public boolean isScheduled(K key) {
+        return scheduled.containsKey(key);
+    }
+
+    /**
+     * Ticks until the key fires, or -1 if it is not scheduled.
+     */
+    public long remainingTicks(K key) {
+        Node<K> node = scheduled.get(key);
+        return node != null ? node.deadline - tick : -1L;
+    }
+
+    public int size() {
+        return scheduled.size();
+    }
+
+    /**
+     * Moves the wheel on by one tick and hands every key that is now due to the callback.
+     * The callback may schedule or cancel keys, including the one it was given.
+     */
+    public void advance(Consumer<K> onDue) {
+        tick++;
+        int slot = (int) (tick & mask);
+        List<K> due = null;
+        Node<K> node = slots[slot];
+        while (node != null) {
+            Node<K> next = node.next;
+            if (node.deadline <= tick) {
+                unlink(node);
+                scheduled.remove(node.key);
+                if (due == null) {
+                    due = new ArrayList<>();
+                }
+                due.add(node.key);
+            }
+            node = next;
+        }
+
+        if (due != null) {
+            for (K key : due) {
+                onDue.accept(key);
+            }
+        }
+    }
+
+    /**
+     * Drops every scheduled key.
+     */
+    public void clear() {
+        scheduled.clear();
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = null;
+        }
+    }
+
+    private void link(Node<K> node) {
+        int slot = (int) (node.deadline & mask);
+        node.slot = slot;
+        node.prev = null;
+        node.next = slots[slot];
+        if (node.next != null) {
+            node.next.prev = node;
+        }
+        slots[slot] = node;
+    }
+
+    private void unlink(Node<K> node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            slots[node.slot] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+}
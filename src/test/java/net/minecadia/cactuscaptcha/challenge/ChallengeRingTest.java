@@ -0,0 +1,64 @@
+package net.minecadia.cactuscaptcha.challenge;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for ChallengeRing packing and ring behaviour.
+ */
+public class ChallengeRingTest {
+
+    @Test
+    public void testPermutationTablesAreInverse() {
+        Set<String> orders = new HashSet<>();
+        for (int permutation = 0; permutation < ChallengeRing.PERMUTATIONS; permutation++) {
+            int packed = ChallengeRing.pack(7, permutation);
+            StringBuilder order = new StringBuilder();
+            for (int slot = 0; slot < 4; slot++) {
+                int choice = ChallengeRing.choiceAt(packed, slot);
+                assertEquals("Slot lookup should invert choice lookup", slot, ChallengeRing.slotOf(packed, choice));
+                order.append(choice);
+            }
+            orders.add(order.toString());
+        }
+        assertEquals("Every ordering of four choices should appear once", 24, orders.size());
+    }
+
+    @Test
+    public void testPackRoundTrip() {
+        int packed = ChallengeRing.pack(1234, 23);
+        assertEquals(1234, ChallengeRing.questionId(packed));
+        assertEquals(23, ChallengeRing.permutation(packed));
+    }
+
+    @Test
+    public void testFillAndPop() {
+        ChallengeRing ring = new ChallengeRing(16, 10, 42L);
+        assertTrue(ring.needsRefill());
+        assertEquals(16, ring.fill());
+        assertEquals("A full ring should take nothing more", 0, ring.fill());
+        assertFalse(ring.needsRefill());
+
+        for (int i = 0; i < 8; i++) {
+            int packed = ring.pop();
+            assertTrue(ChallengeRing.questionId(packed) < 10);
+            assertTrue(ChallengeRing.permutation(packed) < ChallengeRing.PERMUTATIONS);
+        }
+        assertEquals(8, ring.size());
+        assertTrue(ring.needsRefill());
+        assertEquals(8, ring.fill());
+    }
+
+    @Test
+    public void testEmptyRingStillServes() {
+        ChallengeRing ring = new ChallengeRing(4, 3, 1L);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(ChallengeRing.questionId(ring.pop()) < 3);
+        }
+        assertEquals(0, ring.size());
+    }
+}
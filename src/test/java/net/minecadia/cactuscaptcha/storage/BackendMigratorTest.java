@@ -0,0 +1,212 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for BackendMigrator between two in-memory backends.
+ */
+public class BackendMigratorTest {
+
+    private File checkpointFile;
+    private MemoryBackend source;
+    private MemoryBackend target;
+
+    @Before
+    public void setUp() throws IOException {
+        checkpointFile = Files.createTempFile("cactuscaptcha-migration", ".checkpoint").toFile();
+        checkpointFile.delete();
+        source = new MemoryBackend();
+        target = new MemoryBackend();
+        for (int i = 0; i < 1050; i++) {
+            UUID uuid = UUID.randomUUID();
+            source.rows.put(uuid, new PlayerStatsSnapshot(uuid, i, i / 2, i - i / 2, 0L, 0L, 0, i % 4, 0, 1000L + i, 1L));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        checkpointFile.delete();
+    }
+
+    private BackendMigrator migrator() {
+        return new BackendMigrator(source, target, checkpointFile, 100, 4, Logger.getLogger("BackendMigratorTest"));
+    }
+
+    @Test
+    public void testCopiesAndVerifies() throws Exception {
+        assertTrue("Copy should verify", migrator().migrate());
+        assertEquals(source.rows.size(), target.rows.size());
+        BackendMigrator.Fingerprint[] fingerprints = BackendMigrator.fingerprints(source, target);
+        assertEquals(fingerprints[0], fingerprints[1]);
+        assertTrue("Finished migration should be recorded", BackendMigrator.isComplete(checkpointFile));
+    }
+
+    @Test
+    public void testKilledMigrationResumes() throws Exception {
+        target.failAfterWrites.set(5);
+        try {
+            migrator().migrate();
+            fail("Migration should fail when the target does");
+        } catch (IOException expected) {
+            // Expected
+        }
+        assertFalse(BackendMigrator.isComplete(checkpointFile));
+        assertTrue("Progress should be checkpointed", checkpointFile.exists());
+
+        target.failAfterWrites.set(Integer.MAX_VALUE);
+        int writesBefore = target.writes.get();
+        assertTrue(migrator().migrate());
+        assertTrue("Resumed run should skip checkpointed pages", target.writes.get() - writesBefore < 11);
+        assertEquals(source.rows.size(), target.rows.size());
+    }
+
+    @Test
+    public void testResumeIsNotShiftedBySourceChanges() throws Exception {
+        target.failAfterWrites.set(5);
+        try {
+            migrator().migrate();
+            fail("Migration should fail when the target does");
+        } catch (IOException expected) {
+            // Expected
+        }
+
+        // Removing an already copied record must not move later records past the resume point
+        source.rows.remove(source.rows.firstKey());
+        target.failAfterWrites.set(Integer.MAX_VALUE);
+        assertTrue(migrator().migrate());
+        for (UUID uuid : source.rows.keySet()) {
+            assertTrue("Every source record should be copied", target.rows.containsKey(uuid));
+        }
+    }
+
+    @Test
+    public void testVerificationIgnoresOtherTargetRecords() throws Exception {
+        UUID stray = UUID.randomUUID();
+        target.rows.put(stray, new PlayerStatsSnapshot(stray, 1, 1, 0, 0L, 0L, 0, 0, 0, 1L, 1L));
+
+        assertTrue("Players already in the target should not fail verification", migrator().migrate());
+        assertTrue(target.rows.containsKey(stray));
+    }
+
+    @Test
+    public void testVerificationCatchesMismatch() throws Exception {
+        target.lost = source.rows.keySet().iterator().next();
+
+        assertFalse("A record missing from the target should fail verification", migrator().migrate());
+        assertFalse(BackendMigrator.isComplete(checkpointFile));
+    }
+
+    @Test
+    public void testUnsetLastUpdatedIsNotCompared() throws Exception {
+        UUID unstamped = UUID.randomUUID();
+        source.rows.put(unstamped, new PlayerStatsSnapshot(unstamped, 3, 2, 1, 0L, 0L, 0, 0, 0, 0L, 1L));
+        target.stampOnSave = true;
+
+        assertTrue("Save time stamped by the target should not fail verification", migrator().migrate());
+    }
+
+    /**
+     * In-memory backend serving pages in UUID order; saves fail once the write budget is spent.
+     */
+    private static class MemoryBackend implements StorageManager.StorageBackend {
+        final ConcurrentSkipListMap<UUID, PlayerStatsSnapshot> rows = new ConcurrentSkipListMap<>(UUID_ORDER);
+        final AtomicInteger failAfterWrites = new AtomicInteger(Integer.MAX_VALUE);
+        final AtomicInteger writes = new AtomicInteger();
+        volatile UUID lost; // Saves of this player are dropped
+        volatile boolean stampOnSave; // Stamps records saved without a last update time, like the real backends
+
+        @Override
+        public void saveData(Collection<PlayerStatsSnapshot> changed) throws Exception {
+            if (failAfterWrites.getAndDecrement() <= 0) {
+                throw new IOException("Injected failure");
+            }
+            writes.incrementAndGet();
+            for (PlayerStatsSnapshot row : changed) {
+                if (row.uuid.equals(lost)) {
+                    continue;
+                }
+                if (stampOnSave && row.lastUpdated <= 0) {
+                    row = new PlayerStatsSnapshot(row.uuid, row.totalAttempts, row.passes, row.fails, row.penaltyUntil,
+                            row.cooldownUntil, row.failChainCount, row.captchaFails, row.movementPatternPercent,
+                            System.currentTimeMillis(), row.version);
+                }
+                rows.put(row.uuid, row);
+            }
+        }
+
+        @Override
+        public List<StorageManager.PlayerStats> loadPlayerPage(int offset, int limit) {
+            List<StorageManager.PlayerStats> page = new ArrayList<>();
+            int index = 0;
+            for (PlayerStatsSnapshot row : rows.values()) {
+                if (index++ >= offset && page.size() < limit) {
+                    page.add(new StorageManager.PlayerStats(row));
+                }
+            }
+            return page;
+        }
+
+        @Override
+        public List<StorageManager.PlayerStats> loadPlayersAfter(UUID after, int limit) {
+            List<StorageManager.PlayerStats> page = new ArrayList<>();
+            for (PlayerStatsSnapshot row : (after != null ? rows.tailMap(after, false) : rows).values()) {
+                if (page.size() >= limit) {
+                    break;
+                }
+                page.add(new StorageManager.PlayerStats(row));
+            }
+            return page;
+        }
+
+        @Override
+        public void loadAllData(ConcurrentHashMap<UUID, StorageManager.PlayerStats> playerStats) {
+        }
+
+        @Override
+        public StorageManager.PlayerStats loadPlayerData(UUID uuid) {
+            PlayerStatsSnapshot row = rows.get(uuid);
+            return row != null ? new StorageManager.PlayerStats(row) : null;
+        }
+
+        @Override
+        public int deletePlayers(Collection<UUID> uuids) {
+            return 0;
+        }
+
+        @Override
+        public boolean deletePlayerData(UUID uuid) {
+            return rows.remove(uuid) != null;
+        }
+
+        @Override
+        public boolean hasPlayerData(UUID uuid) {
+            return rows.containsKey(uuid);
+        }
+
+        @Override
+        public int getStoredPlayerCount() {
+            return rows.size();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Logger;
+
+import static net.minecadia.cactuscaptcha.storage.TestRecords.record;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for CircuitBreakerStorage against an in-memory backend that fails on demand.
+ */
+public class CircuitBreakerStorageTest {
+
+    private File spoolFile;
+    private FlakyBackend backend;
+
+    @Before
+    public void setUp() throws IOException {
+        spoolFile = Files.createTempFile("cactuscaptcha-spool", ".dat").toFile();
+        spoolFile.delete();
+        backend = new FlakyBackend();
+    }
+
+    @After
+    public void tearDown() {
+        spoolFile.delete();
+    }
+
+    private CircuitBreakerStorage breaker(long retryIntervalMs) {
+        return new CircuitBreakerStorage(backend, spoolFile, 2, retryIntervalMs, 2, Logger.getLogger("CircuitBreakerStorageTest"));
+    }
+
+    @Test
+    public void testBreakerOpensAndStopsCallingBackend() throws Exception {
+        CircuitBreakerStorage storage = breaker(60000L);
+        backend.failing = true;
+
+        for (int i = 0; i < 5; i++) {
+            storage.saveData(Collections.singletonList(record(UUID.randomUUID(), i)));
+        }
+
+        assertEquals("Breaker should open after the failure threshold", CircuitBreakerStorage.State.OPEN, storage.getState());
+        assertEquals("No calls should reach the backend while open", 2, backend.saveCalls);
+        assertEquals("Every save should be spooled", 5, storage.getSpooledCount());
+    }
+
+    @Test
+    public void testSpoolReplaysInBatchesAfterRecovery() throws Exception {
+        CircuitBreakerStorage storage = breaker(0L);
+        backend.failing = true;
+
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            UUID uuid = UUID.randomUUID();
+            players.add(uuid);
+            storage.saveData(Collections.singletonList(record(uuid, i)));
+        }
+        assertTrue("Spool file should exist during the outage", spoolFile.exists());
+
+        backend.failing = false;
+        backend.batchSizes.clear();
+        UUID late = UUID.randomUUID();
+        storage.saveData(Collections.singletonList(record(late, 9)));
+
+        assertEquals(CircuitBreakerStorage.State.CLOSED, storage.getState());
+        assertEquals("Spool should be empty after replay", 0, storage.getSpooledCount());
+        assertFalse("Spool file should be deleted after replay", spoolFile.exists());
+        for (UUID uuid : players) {
+            assertTrue("Spooled record should reach the backend", backend.rows.containsKey(uuid));
+        }
+        assertTrue(backend.rows.containsKey(late));
+        for (int i = 0; i < backend.batchSizes.size() - 1; i++) {
+            assertTrue("Replay batches should respect the batch size", backend.batchSizes.get(i) <= 2);
+        }
+    }
+
+    @Test
+    public void testSpoolSurvivesRestart() throws Exception {
+        CircuitBreakerStorage storage = breaker(60000L);
+        backend.failing = true;
+        UUID uuid = UUID.randomUUID();
+        storage.saveData(Collections.singletonList(record(uuid, 3)));
+
+        // A new instance on the same file sees the spooled record and replays it
+        backend.failing = false;
+        CircuitBreakerStorage restarted = breaker(60000L);
+        assertEquals(1, restarted.getSpooledCount());
+        assertEquals(3, restarted.loadPlayerData(uuid).getPasses());
+
+        restarted.saveData(Collections.emptyList());
+        assertEquals(3, backend.rows.get(uuid).passes);
+        assertEquals(0, restarted.getSpooledCount());
+    }
+
+    @Test
+    public void testReadsPreferSpooledRecords() throws Exception {
+        CircuitBreakerStorage storage = breaker(60000L);
+        UUID uuid = UUID.randomUUID();
+        backend.rows.put(uuid, record(uuid, 1));
+
+        backend.failing = true;
+        storage.saveData(Collections.singletonList(record(uuid, 2)));
+        storage.saveData(Collections.singletonList(record(uuid, 4)));
+
+        assertEquals("Newest spooled record should win", 4, storage.loadPlayerData(uuid).getPasses());
+        try {
+            storage.loadPlayerData(UUID.randomUUID());
+            fail("Reads of unspooled players should fail fast while open");
+        } catch (CircuitBreakerStorage.CircuitOpenException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testDeletedPlayersAreNotReplayed() throws Exception {
+        CircuitBreakerStorage storage = breaker(0L);
+        UUID uuid = UUID.randomUUID();
+        backend.failing = true;
+        storage.saveData(Collections.singletonList(record(uuid, 1)));
+        storage.saveData(Collections.singletonList(record(uuid, 1)));
+
+        backend.failing = false;
+        assertEquals(0, storage.deletePlayers(Collections.singletonList(uuid)));
+        assertEquals(0, storage.getSpooledCount());
+
+        storage.saveData(Collections.emptyList());
+        assertFalse("Deleted player should not come back from the spool", backend.rows.containsKey(uuid));
+    }
+
+    @Test
+    public void testSpoolIsCompacted() throws Exception {
+        CircuitBreakerStorage storage = breaker(60000L);
+        backend.failing = true;
+        UUID uuid = UUID.randomUUID();
+        for (int i = 0; i < 50; i++) {
+            storage.saveData(Collections.singletonList(record(uuid, i)));
+        }
+
+        long entrySize = 8 + PlayerStatsCodec.RECORD_SIZE;
+        assertTrue("Superseded entries should be dropped from the spool", spoolFile.length() <= 3 * entrySize);
+        assertEquals(49, breaker(60000L).loadPlayerData(uuid).getPasses());
+    }
+
+    @Test
+    public void testReadsDoNotWaitOnSaves() throws Exception {
+        CircuitBreakerStorage storage = breaker(0L);
+        UUID uuid = UUID.randomUUID();
+        backend.failing = true;
+        storage.saveData(Collections.singletonList(record(uuid, 2)));
+
+        // Replaying the spool blocks in the backend until released
+        backend.failing = false;
+        backend.saveGate = new CountDownLatch(1);
+        Thread saver = new Thread(() -> {
+            try {
+                storage.saveData(Collections.singletonList(record(UUID.randomUUID(), 1)));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        saver.start();
+        while (backend.saveCalls < 2) {
+            Thread.sleep(1L);
+        }
+
+        try {
+            assertEquals("Spooled reads should not wait for the save", 2, storage.loadPlayerData(uuid).getPasses());
+        } finally {
+            backend.saveGate.countDown();
+            saver.join(5000L);
+        }
+        assertFalse(saver.isAlive());
+        assertEquals(0, storage.getSpooledCount());
+    }
+
+    @Test
+    public void testCountFailsFastWhileOpen() throws Exception {
+        CircuitBreakerStorage storage = breaker(60000L);
+        backend.failing = true;
+        storage.saveData(Collections.singletonList(record(UUID.randomUUID(), 1)));
+        storage.saveData(Collections.singletonList(record(UUID.randomUUID(), 1)));
+
+        try {
+            storage.getStoredPlayerCount();
+            fail("An open breaker should not report an empty backend");
+        } catch (CircuitBreakerStorage.CircuitOpenException expected) {
+            // Expected
+        }
+    }
+
+    /**
+     * Stand-in backend whose every call fails while {@code failing} is set.
+     */
+    private static class FlakyBackend implements StorageManager.StorageBackend {
+        final Map<UUID, PlayerStatsSnapshot> rows = new ConcurrentHashMap<>();
+        final List<Integer> batchSizes = new ArrayList<>();
+        volatile boolean failing;
+        volatile CountDownLatch saveGate;
+        volatile int saveCalls;
+
+        private void check() throws SQLException {
+            if (failing) {
+                throw new SQLException("Injected failure");
+            }
+        }
+
+        @Override
+        public void loadAllData(ConcurrentHashMap<UUID, StorageManager.PlayerStats> playerStats) throws Exception {
+            check();
+            for (PlayerStatsSnapshot row : rows.values()) {
+                playerStats.put(row.uuid, new StorageManager.PlayerStats(row));
+            }
+        }
+
+        @Override
+        public void saveData(Collection<PlayerStatsSnapshot> changed) throws Exception {
+            saveCalls++;
+            check();
+            if (saveGate != null) {
+                saveGate.await();
+            }
+            batchSizes.add(changed.size());
+            for (PlayerStatsSnapshot row : changed) {
+                rows.put(row.uuid, row);
+            }
+        }
+
+        @Override
+        public StorageManager.PlayerStats loadPlayerData(UUID uuid) throws Exception {
+            check();
+            PlayerStatsSnapshot row = rows.get(uuid);
+            return row != null ? new StorageManager.PlayerStats(row) : null;
+        }
+
+        @Override
+        public List<StorageManager.PlayerStats> loadPlayerPage(int offset, int limit) throws Exception {
+            check();
+            return new ArrayList<>();
+        }
+
+        @Override
+        public List<StorageManager.PlayerStats> loadPlayersAfter(UUID after, int limit) throws Exception {
+            check();
+            return new ArrayList<>();
+        }
+
+        @Override
+        public int deletePlayers(Collection<UUID> uuids) throws Exception {
+            check();
+            int deleted = 0;
+            for (UUID uuid : uuids) {
+                if (rows.remove(uuid) != null) {
+                    deleted++;
+                }
+            }
+            return deleted;
+        }
+
+        @Override
+        public boolean deletePlayerData(UUID uuid) throws Exception {
+            check();
+            return rows.remove(uuid) != null;
+        }
+
+        @Override
+        public boolean hasPlayerData(UUID uuid) throws Exception {
+            check();
+            return rows.containsKey(uuid);
+        }
+
+        @Override
+        public int getStoredPlayerCount() throws Exception {
+            check();
+            return rows.size();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
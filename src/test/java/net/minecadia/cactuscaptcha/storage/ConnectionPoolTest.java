@@ -0,0 +1,153 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for ConnectionPool against an embedded H2 database in MySQL mode.
+ */
+public class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        String url = "jdbc:h2:mem:pool" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        pool = new ConnectionPool(url, "sa", "", 2, 500L,
+                Connection.TRANSACTION_READ_COMMITTED, Logger.getLogger("ConnectionPoolTest"));
+
+        try (ConnectionPool.PooledConnection connection = pool.borrow();
+             Statement stmt = connection.getConnection().createStatement()) {
+            stmt.executeUpdate(MySqlStorage.CREATE_TABLE_SQL);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testConnectionsAreReused() throws Exception {
+        Connection first;
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            first = connection.getConnection();
+        }
+
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            assertSame("Returned connection should be handed out again", first, connection.getConnection());
+        }
+        assertEquals("Connection should be idle after return", 1, pool.getIdleCount());
+        assertEquals("No connection should be active", 0, pool.getActiveCount());
+    }
+
+    @Test
+    public void testStatementCache() throws Exception {
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement first = connection.prepare(MySqlStorage.UPSERT_SQL);
+            PreparedStatement second = connection.prepare(MySqlStorage.UPSERT_SQL);
+            assertSame("Same SQL should reuse the cached statement", first, second);
+        }
+    }
+
+    @Test
+    public void testPoolIsBounded() throws Exception {
+        ConnectionPool.PooledConnection a = pool.borrow();
+        ConnectionPool.PooledConnection b = pool.borrow();
+        try {
+            pool.borrow();
+            fail("Borrowing beyond the pool size should time out");
+        } catch (SQLException expected) {
+            assertTrue(expected.getMessage().contains("Timed out"));
+        } finally {
+            a.close();
+            b.close();
+        }
+    }
+
+    @Test
+    public void testUncommittedTransactionIsRolledBackOnReturn() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            connection.begin();
+            PreparedStatement stmt = connection.prepare(MySqlStorage.UPSERT_SQL);
+            bind(stmt, uuid, 1);
+            stmt.executeUpdate();
+            // Returned without commit
+        }
+
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            assertTrue("Connection should be back in auto-commit mode", connection.getConnection().getAutoCommit());
+            assertEquals("Uncommitted row should not be visible", 0, countRows(connection));
+        }
+    }
+
+    @Test
+    public void testParallelSavesUseSeparateConnections() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch bothBorrowed = new CountDownLatch(2);
+        try {
+            Future<?>[] saves = new Future<?>[2];
+            for (int i = 0; i < saves.length; i++) {
+                int passes = i;
+                saves[i] = executor.submit(() -> {
+                    try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+                        bothBorrowed.countDown();
+                        assertTrue(bothBorrowed.await(2, TimeUnit.SECONDS));
+                        connection.begin();
+                        PreparedStatement stmt = connection.prepare(MySqlStorage.UPSERT_SQL);
+                        bind(stmt, UUID.randomUUID(), passes);
+                        stmt.executeUpdate();
+                        connection.commit();
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> save : saves) {
+                save.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            assertEquals("Both parallel saves should be committed", 2, countRows(connection));
+        }
+    }
+
+    private void bind(PreparedStatement stmt, UUID uuid, int passes) throws SQLException {
+        stmt.setBytes(1, MySqlStorage.toBytes(uuid));
+        stmt.setInt(2, passes);
+        stmt.setInt(3, passes);
+        stmt.setInt(4, 0);
+        stmt.setLong(5, 0L);
+        stmt.setLong(6, 0L);
+        stmt.setInt(7, 0);
+        stmt.setInt(8, 0);
+        stmt.setInt(9, 0);
+        stmt.setLong(10, System.currentTimeMillis());
+    }
+
+    private int countRows(ConnectionPool.PooledConnection connection) throws SQLException {
+        try (ResultSet rs = connection.prepare("SELECT COUNT(*) FROM cactuscaptcha_players").executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
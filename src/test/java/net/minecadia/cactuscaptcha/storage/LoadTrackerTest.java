@@ -0,0 +1,88 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for LoadTracker.
+ */
+public class LoadTrackerTest {
+
+    private LoadTracker loads;
+    private UUID player;
+
+    @Before
+    public void setUp() {
+        loads = new LoadTracker();
+        player = UUID.randomUUID();
+    }
+
+    @Test
+    public void testOnlyOneBackgroundLoadAtATime() {
+        assertTrue(loads.startLoad(player));
+        assertFalse("A second load should not start while one is running", loads.startLoad(player));
+
+        loads.loadFailed(player);
+        assertFalse(loads.isLoaded(player));
+        assertTrue("A failed load should be retried", loads.startLoad(player));
+    }
+
+    @Test
+    public void testMergesOnce() {
+        AtomicInteger merges = new AtomicInteger();
+        assertTrue(loads.complete(player, merges::incrementAndGet));
+        // A pre-login load racing a background load must not merge the stored record twice
+        assertFalse(loads.complete(player, merges::incrementAndGet));
+
+        assertEquals(1, merges.get());
+        assertTrue(loads.isLoaded(player));
+        assertFalse("Loaded players need no background load", loads.startLoad(player));
+    }
+
+    @Test
+    public void testNotLoadedUntilMergeRan() {
+        AtomicBoolean loadedDuringMerge = new AtomicBoolean(true);
+        loads.complete(player, () -> loadedDuringMerge.set(loads.isLoaded(player)));
+        assertFalse("Record must not be saved before the merge finished", loadedDuringMerge.get());
+        assertTrue(loads.isLoaded(player));
+    }
+
+    @Test
+    public void testForgetLoadsAgain() {
+        loads.complete(player, () -> { });
+        loads.forget(player);
+
+        assertFalse(loads.isLoaded(player));
+        assertTrue("An evicted player should be loaded again", loads.startLoad(player));
+    }
+
+    @Test
+    public void testClaimedWriteHoldsBackLoads() throws Exception {
+        assertTrue(loads.claimWrite(player));
+        assertFalse("No background load while the stored record is replaced", loads.startLoad(player));
+
+        AtomicBoolean started = new AtomicBoolean();
+        Thread preLogin = new Thread(() -> {
+            try {
+                started.set(loads.startLoadAfterWrites(player));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        preLogin.start();
+        preLogin.join(200L);
+        assertTrue("A joining player should wait for the write", preLogin.isAlive());
+
+        loads.releaseWrites(Collections.singletonList(player));
+        preLogin.join(5000L);
+        assertTrue(started.get());
+        assertFalse("No write may be claimed while a load is running", loads.claimWrite(player));
+    }
+}
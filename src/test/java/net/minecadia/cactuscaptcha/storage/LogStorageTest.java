@@ -0,0 +1,205 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import static net.minecadia.cactuscaptcha.storage.TestRecords.record;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for LogStorage's log format, replay and compaction.
+ */
+public class LogStorageTest {
+
+    private File dataFolder;
+    private LogStorage storage;
+
+    @Before
+    public void setUp() throws IOException {
+        dataFolder = Files.createTempDirectory("cactuscaptcha-log").toFile();
+        storage = open();
+    }
+
+    @After
+    public void tearDown() {
+        storage.close();
+        File[] files = dataFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dataFolder.delete();
+    }
+
+    private LogStorage open() {
+        return new LogStorage(null, dataFolder, 1.5, Logger.getLogger("LogStorageTest"));
+    }
+
+    private LogStorage reopen() {
+        storage.close();
+        storage = open();
+        return storage;
+    }
+
+    private File logFile() {
+        return new File(dataFolder, "players.log");
+    }
+
+    @Test
+    public void testRoundTripKeepsEveryField() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        storage.saveData(Collections.singletonList(record(uuid, 7)));
+
+        StorageManager.PlayerStats stats = reopen().loadPlayerData(uuid);
+        assertNotNull("Saved record should replay", stats);
+        assertEquals(8, stats.getTotalAttempts());
+        assertEquals(7, stats.getPasses());
+        assertEquals(1, stats.getFails());
+        assertEquals(5000L, stats.getCooldownUntil());
+        assertEquals(2, stats.getFailChainCount());
+        assertEquals(3, stats.getCaptchaFails());
+        assertEquals(40, stats.getMovementPatternPercent());
+        assertEquals(1007L, stats.getLastUpdated());
+    }
+
+    @Test
+    public void testLastEntryWins() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        storage.saveData(Collections.singletonList(record(uuid, 1)));
+        storage.saveData(Collections.singletonList(record(uuid, 2)));
+        storage.saveData(Collections.singletonList(record(uuid, 3)));
+
+        ConcurrentHashMap<UUID, StorageManager.PlayerStats> loaded = new ConcurrentHashMap<>();
+        reopen().loadAllData(loaded);
+        assertEquals(1, loaded.size());
+        assertEquals(3, loaded.get(uuid).getPasses());
+    }
+
+    @Test
+    public void testDeleteSurvivesReplay() throws Exception {
+        UUID kept = UUID.randomUUID();
+        UUID deleted = UUID.randomUUID();
+        storage.saveData(Arrays.asList(record(kept, 1), record(deleted, 2)));
+
+        assertTrue(storage.deletePlayerData(deleted));
+        assertFalse("Second delete should find nothing", storage.deletePlayerData(deleted));
+
+        reopen();
+        assertTrue(storage.hasPlayerData(kept));
+        assertFalse("Deleted record should stay deleted", storage.hasPlayerData(deleted));
+    }
+
+    @Test
+    public void testTornTailIsTruncated() throws Exception {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        storage.saveData(Collections.singletonList(record(first, 1)));
+        storage.close();
+        long validLength = logFile().length();
+
+        storage.saveData(Collections.singletonList(record(second, 2)));
+        storage.close();
+        // Cut the second entry in half as if the server died mid-write
+        try (RandomAccessFile file = new RandomAccessFile(logFile(), "rw")) {
+            file.setLength(validLength + (file.length() - validLength) / 2);
+        }
+
+        reopen();
+        assertTrue(storage.hasPlayerData(first));
+        assertFalse("Torn entry should be dropped", storage.hasPlayerData(second));
+        assertEquals("Torn bytes should be cut off", validLength, logFile().length());
+
+        // Appends after the truncation replay cleanly
+        storage.saveData(Collections.singletonList(record(second, 3)));
+        assertEquals(3, reopen().loadPlayerData(second).getPasses());
+    }
+
+    @Test
+    public void testCorruptEntryStopsReplay() throws Exception {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        storage.saveData(Collections.singletonList(record(first, 1)));
+        storage.close();
+        long validLength = logFile().length();
+        storage.saveData(Collections.singletonList(record(second, 2)));
+        storage.close();
+
+        // Flip a payload byte of the second entry so its checksum no longer matches
+        try (RandomAccessFile file = new RandomAccessFile(logFile(), "rw")) {
+            file.seek(validLength + 30);
+            int b = file.read();
+            file.seek(validLength + 30);
+            file.write(b ^ 0xFF);
+        }
+
+        reopen();
+        assertTrue(storage.hasPlayerData(first));
+        assertFalse("Entry with a bad checksum should be dropped", storage.hasPlayerData(second));
+    }
+
+    @Test
+    public void testCompactionKeepsLatestRecords() throws Exception {
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            players.add(UUID.randomUUID());
+        }
+        // 100 players rewritten 15 times is well past the minimum entry count and ratio
+        for (int round = 0; round < 15; round++) {
+            List<PlayerStatsSnapshot> batch = new ArrayList<>();
+            for (UUID uuid : players) {
+                batch.add(record(uuid, round));
+            }
+            storage.saveData(batch);
+        }
+        storage.deletePlayerData(players.get(0));
+
+        long uncompactedSize = 1500L * (9 + PlayerStatsCodec.RECORD_SIZE);
+        assertTrue("Log should have been compacted", logFile().length() < uncompactedSize / 2);
+        assertFalse("No compaction file should be left behind", new File(dataFolder, "players.log.compact").exists());
+
+        reopen();
+        assertEquals(99, storage.getStoredPlayerCount());
+        assertFalse(storage.hasPlayerData(players.get(0)));
+        for (int i = 1; i < players.size(); i++) {
+            assertEquals(14, storage.loadPlayerData(players.get(i)).getPasses());
+        }
+
+        // Appends after compaction go to the new file
+        storage.saveData(Collections.singletonList(record(players.get(1), 20)));
+        assertEquals(20, reopen().loadPlayerData(players.get(1)).getPasses());
+    }
+
+    @Test
+    public void testPagesInKeyOrder() throws Exception {
+        List<PlayerStatsSnapshot> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            batch.add(record(UUID.randomUUID(), i));
+        }
+        storage.saveData(batch);
+
+        List<StorageManager.PlayerStats> first = storage.loadPlayerPage(0, 6);
+        List<StorageManager.PlayerStats> second = storage.loadPlayerPage(6, 6);
+        assertEquals(6, first.size());
+        assertEquals(4, second.size());
+        assertTrue(StorageManager.StorageBackend.UUID_ORDER.compare(first.get(5).uuid, second.get(0).uuid) < 0);
+
+        List<StorageManager.PlayerStats> after = storage.loadPlayersAfter(first.get(5).uuid, 6);
+        assertEquals(4, after.size());
+        assertEquals(second.get(0).uuid, after.get(0).uuid);
+        assertEquals(6, storage.loadPlayersAfter(null, 6).size());
+    }
+}
@@ -0,0 +1,127 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static net.minecadia.cactuscaptcha.storage.TestRecords.record;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for MappedStorage's slot table.
+ */
+public class MappedStorageTest {
+
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = PlayerStatsCodec.RECORD_SIZE + 4;
+
+    private File dataFolder;
+    private MappedStorage storage;
+
+    @Before
+    public void setUp() throws IOException {
+        dataFolder = Files.createTempDirectory("cactuscaptcha-mapped").toFile();
+        storage = open();
+    }
+
+    @After
+    public void tearDown() {
+        storage.close();
+        File[] files = dataFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dataFolder.delete();
+    }
+
+    private MappedStorage open() {
+        return new MappedStorage(null, dataFolder, 64, Logger.getLogger("MappedStorageTest"));
+    }
+
+    private MappedStorage reopen() {
+        storage.close();
+        storage = open();
+        return storage;
+    }
+
+    @Test
+    public void testRecordsSurviveReopen() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        storage.saveData(Collections.singletonList(record(uuid, 4)));
+        storage.saveData(Collections.singletonList(record(uuid, 5)));
+
+        StorageManager.PlayerStats stats = reopen().loadPlayerData(uuid);
+        assertNotNull(stats);
+        assertEquals(5, stats.getPasses());
+        assertEquals(2, stats.getFailChainCount());
+        assertEquals(1, storage.getStoredPlayerCount());
+    }
+
+    @Test
+    public void testGrowsPastInitialCapacity() throws Exception {
+        UUID[] players = new UUID[200];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = UUID.randomUUID();
+            storage.saveData(Collections.singletonList(record(players[i], i)));
+        }
+
+        reopen();
+        assertEquals(players.length, storage.getStoredPlayerCount());
+        assertEquals(150, storage.loadPlayerData(players[150]).getPasses());
+    }
+
+    @Test
+    public void testDeletedSlotIsReused() throws Exception {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        storage.saveData(Collections.singletonList(record(first, 1)));
+        assertTrue(storage.deletePlayerData(first));
+        storage.saveData(Collections.singletonList(record(second, 2)));
+
+        reopen();
+        assertFalse(storage.hasPlayerData(first));
+        assertTrue(storage.hasPlayerData(second));
+    }
+
+    @Test
+    public void testTornSlotIsDropped() throws Exception {
+        UUID intact = UUID.randomUUID();
+        UUID torn = UUID.randomUUID();
+        storage.saveData(Arrays.asList(record(intact, 1), record(torn, 2)));
+        storage.close();
+
+        // Overwrite part of the record as if the crash hit mid-write
+        File table = new File(dataFolder, "players.dat");
+        try (RandomAccessFile file = new RandomAccessFile(table, "rw")) {
+            int slot = findSlot(file, torn);
+            assertTrue("Record should be in the table", slot >= 0);
+            file.seek(HEADER_SIZE + (long) slot * SLOT_SIZE + 20);
+            file.writeInt(12345);
+        }
+
+        reopen();
+        assertTrue(storage.hasPlayerData(intact));
+        assertFalse("Record with a bad checksum should be dropped", storage.hasPlayerData(torn));
+    }
+
+    private static int findSlot(RandomAccessFile file, UUID uuid) throws IOException {
+        for (int slot = 0; slot < 2; slot++) {
+            file.seek(HEADER_SIZE + (long) slot * SLOT_SIZE);
+            if (file.readLong() == uuid.getMostSignificantBits() && file.readLong() == uuid.getLeastSignificantBits()) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,103 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for PlayerStatsIndex.
+ */
+public class PlayerStatsIndexTest {
+
+    private PlayerStatsIndex index;
+
+    @Before
+    public void setUp() {
+        index = new PlayerStatsIndex();
+    }
+
+    @Test
+    public void testPagesFollowSortOrder() {
+        StorageManager.PlayerStats low = new StorageManager.PlayerStats(UUID.randomUUID(), 4, 3, 1, 0L);
+        StorageManager.PlayerStats high = new StorageManager.PlayerStats(UUID.randomUUID(), 5, 0, 5, 0L);
+        index.update(low);
+        index.update(high);
+
+        List<UUID> byFails = index.page(PlayerStatsIndex.SortOrder.FAILS, true, null, 10);
+        assertEquals(high.uuid, byFails.get(0));
+        assertEquals(low.uuid, byFails.get(1));
+
+        List<UUID> bySuccessRate = index.page(PlayerStatsIndex.SortOrder.SUCCESS_RATE, true, null, 1);
+        assertEquals("Limit should cut the page", 1, bySuccessRate.size());
+        assertEquals(low.uuid, bySuccessRate.get(0));
+
+        List<UUID> secondPage = index.page(PlayerStatsIndex.SortOrder.FAILS, true, byFails.get(0), 10);
+        assertEquals(1, secondPage.size());
+        assertEquals(low.uuid, secondPage.get(0));
+    }
+
+    @Test
+    public void testUpdateMovesPlayerAndRemoveDropsThem() {
+        StorageManager.PlayerStats stats = new StorageManager.PlayerStats(UUID.randomUUID());
+        StorageManager.PlayerStats other = new StorageManager.PlayerStats(UUID.randomUUID(), 1, 0, 1, 0L);
+        index.update(stats);
+        index.update(other);
+        assertEquals(other.uuid, index.page(PlayerStatsIndex.SortOrder.FAILS, true, null, 1).get(0));
+
+        stats.recordFail();
+        stats.recordFail();
+        index.update(stats);
+        assertEquals(stats.uuid, index.page(PlayerStatsIndex.SortOrder.FAILS, true, null, 1).get(0));
+        assertEquals("A player should only be filed once per index", 2,
+                index.page(PlayerStatsIndex.SortOrder.FAILS, false, null, 10).size());
+
+        index.remove(stats.uuid);
+        assertEquals(1, index.size());
+        assertFalse(index.page(PlayerStatsIndex.SortOrder.LAST_UPDATED, false, null, 10).contains(stats.uuid));
+    }
+
+    @Test
+    public void testCursorWalksEveryPlayerOnceInStorageOrder() {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            // Half of these have the sign bit set, which signed UUID order would put first
+            UUID uuid = UUID.randomUUID();
+            index.update(new StorageManager.PlayerStats(uuid, i, i % 3, i - i % 3, 0L));
+            expected.add(uuid.toString());
+        }
+        expected.sort(null);
+
+        List<String> walked = new ArrayList<>();
+        UUID after = null;
+        while (true) {
+            List<UUID> page = index.page(PlayerStatsIndex.SortOrder.UUID, false, after, 7);
+            if (page.isEmpty()) {
+                break;
+            }
+            for (UUID uuid : page) {
+                walked.add(uuid.toString());
+            }
+            after = page.get(page.size() - 1);
+        }
+        assertEquals("Pages should follow the UUIDs' string order, like the SQL and YAML backends", expected, walked);
+
+        List<UUID> byFails = new ArrayList<>();
+        after = null;
+        while (true) {
+            List<UUID> page = index.page(PlayerStatsIndex.SortOrder.FAILS, true, after, 9);
+            if (page.isEmpty()) {
+                break;
+            }
+            byFails.addAll(page);
+            after = page.get(page.size() - 1);
+        }
+        assertEquals(100, byFails.size());
+        assertEquals(100, new HashSet<>(byFails).size());
+    }
+}
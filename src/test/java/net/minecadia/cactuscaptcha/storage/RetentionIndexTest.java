@@ -0,0 +1,57 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for RetentionIndex.
+ */
+public class RetentionIndexTest {
+
+    private static final long HOUR = RetentionIndex.BUCKET_MS;
+
+    private RetentionIndex index;
+
+    @Before
+    public void setUp() {
+        index = new RetentionIndex();
+    }
+
+    @Test
+    public void testCandidatesAreOldestFirstAndBeforeCutoff() {
+        UUID oldest = UUID.randomUUID();
+        UUID older = UUID.randomUUID();
+        UUID recent = UUID.randomUUID();
+        index.record(recent, 10 * HOUR);
+        index.record(older, 3 * HOUR);
+        index.record(oldest, HOUR);
+
+        List<UUID> candidates = index.staleCandidates(5 * HOUR, 10, playerId -> false);
+        assertEquals(2, candidates.size());
+        assertEquals(oldest, candidates.get(0));
+        assertEquals(older, candidates.get(1));
+    }
+
+    @Test
+    public void testSkippedPlayersDoNotHoldBackTheRest() {
+        UUID online = UUID.randomUUID();
+        UUID offline = UUID.randomUUID();
+        index.record(online, HOUR);
+        index.record(offline, HOUR);
+
+        List<UUID> candidates = index.staleCandidates(5 * HOUR, 1, online::equals);
+        assertEquals(Collections.singletonList(offline), candidates);
+    }
+
+    @Test
+    public void testUnknownAgeIsNotIndexed() {
+        index.record(UUID.randomUUID(), 0L);
+        assertEquals(0, index.size());
+    }
+}
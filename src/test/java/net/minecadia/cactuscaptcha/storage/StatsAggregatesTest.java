@@ -0,0 +1,68 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for StatsAggregates.
+ */
+public class StatsAggregatesTest {
+
+    private StatsAggregates aggregates;
+
+    @Before
+    public void setUp() {
+        aggregates = new StatsAggregates();
+    }
+
+    @Test
+    public void testCountersFollowChanges() {
+        aggregates.addPlayer();
+        aggregates.addPass();
+        aggregates.addPass();
+        aggregates.addFail();
+
+        assertEquals(1, aggregates.getPlayerCount());
+        assertEquals(2, aggregates.getTotalPasses());
+        assertEquals(1, aggregates.getTotalFails());
+        assertEquals(3, aggregates.getTotalAttempts());
+
+        // Resetting a player subtracts their counters
+        aggregates.addCounters(-2, -1, -3);
+        assertEquals(0, aggregates.getTotalPasses());
+        assertEquals(0, aggregates.getTotalFails());
+        assertEquals(0, aggregates.getTotalAttempts());
+    }
+
+    @Test
+    public void testPenaltiesCountOnlyWhileActive() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        long now = System.currentTimeMillis();
+
+        aggregates.penaltyChanged(first, now + 60000L);
+        aggregates.penaltyChanged(second, now + 60000L);
+        assertEquals(2, aggregates.getPenalizedCount());
+
+        // Replacing a penalty must not count the player twice
+        aggregates.penaltyChanged(first, now + 120000L);
+        assertEquals(2, aggregates.getPenalizedCount());
+
+        aggregates.penaltyChanged(second, 0L);
+        assertEquals("Removed penalty should no longer count", 1, aggregates.getPenalizedCount());
+    }
+
+    @Test
+    public void testExpiredCooldownsDropOut() throws InterruptedException {
+        UUID playerId = UUID.randomUUID();
+        aggregates.cooldownChanged(playerId, System.currentTimeMillis() + 50L);
+        assertEquals(1, aggregates.getOnCooldownCount());
+
+        Thread.sleep(100L);
+        assertEquals("Expired cooldown should drop out by itself", 0, aggregates.getOnCooldownCount());
+    }
+}
@@ -0,0 +1,171 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for StatsJournal segments, replay and checkpoints.
+ */
+public class StatsJournalTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("cactuscaptcha-journal").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private StatsJournal open() throws IOException {
+        StatsJournal journal = new StatsJournal(directory, 10L, Logger.getLogger("StatsJournalTest"));
+        journal.replay();
+        journal.start();
+        return journal;
+    }
+
+    private static PlayerStatsSnapshot image(UUID uuid, int fails, long cooldownUntil, int failChainCount) {
+        return new PlayerStatsSnapshot(uuid, fails, 0, fails, 0L, cooldownUntil, failChainCount, fails, 0, 1000L, fails);
+    }
+
+    private Map<UUID, PlayerStatsSnapshot> replayFresh() throws IOException {
+        return new StatsJournal(directory, 10L, Logger.getLogger("StatsJournalTest")).replay();
+    }
+
+    @Test
+    public void testReplayKeepsNewestImageWithCooldowns() throws IOException {
+        UUID uuid = UUID.randomUUID();
+        StatsJournal journal = open();
+        journal.append(image(uuid, 1, 0L, 0));
+        journal.append(image(uuid, 3, 90000L, 2));
+        journal.close(false); // Crash: the backend never saw these
+
+        Map<UUID, PlayerStatsSnapshot> replayed = replayFresh();
+        assertEquals(1, replayed.size());
+        PlayerStatsSnapshot recovered = replayed.get(uuid);
+        assertEquals(3, recovered.fails);
+        assertEquals("Cooldowns should survive a crash", 90000L, recovered.cooldownUntil);
+        assertEquals("Fail chains should survive a crash", 2, recovered.failChainCount);
+    }
+
+    @Test
+    public void testCheckpointDropsSealedSegments() throws IOException {
+        UUID saved = UUID.randomUUID();
+        UUID unsaved = UUID.randomUUID();
+        StatsJournal journal = open();
+        journal.append(image(saved, 1, 0L, 0));
+        long sealed = journal.rotate();
+        journal.append(image(unsaved, 2, 0L, 1));
+        journal.deleteUpTo(sealed); // The backend holds everything before the rotation
+        journal.close(false);
+
+        Map<UUID, PlayerStatsSnapshot> replayed = replayFresh();
+        assertFalse("Checkpointed changes should not be replayed", replayed.containsKey(saved));
+        assertTrue("Changes after the checkpoint should be replayed", replayed.containsKey(unsaved));
+    }
+
+    @Test
+    public void testPreviousRunKeptUntilReplaySaved() throws IOException {
+        UUID crashed = UUID.randomUUID();
+        StatsJournal journal = open();
+        journal.append(image(crashed, 4, 0L, 0));
+        journal.close(false);
+
+        // The next run checkpoints before its replay reached the backend
+        journal = open();
+        journal.deleteUpTo(journal.rotate());
+        journal.close(true);
+        assertTrue("Unsaved replay must survive checkpoints and clean closes", replayFresh().containsKey(crashed));
+
+        journal = open();
+        journal.discardReplayed();
+        journal.close(true);
+        assertTrue(replayFresh().isEmpty());
+    }
+
+    @Test
+    public void testStrayFileIsIgnored() throws IOException {
+        UUID uuid = UUID.randomUUID();
+        StatsJournal journal = open();
+        journal.append(image(uuid, 1, 0L, 0));
+        journal.close(false);
+        assertTrue(new File(directory, "journal-backup.wal").createNewFile());
+
+        assertTrue(replayFresh().containsKey(uuid));
+    }
+
+    @Test
+    public void testCleanCloseDiscardsJournal() throws IOException {
+        StatsJournal journal = open();
+        journal.append(image(UUID.randomUUID(), 1, 0L, 0));
+        journal.close(true);
+
+        assertTrue(replayFresh().isEmpty());
+    }
+
+    @Test
+    public void testTornTailIsIgnored() throws IOException {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        StatsJournal journal = open();
+        journal.append(image(first, 1, 0L, 0));
+        journal.rotate();
+        journal.append(image(second, 2, 0L, 0));
+        journal.close(false);
+
+        File[] segments = directory.listFiles((dir, name) -> name.endsWith(".wal"));
+        assertNotNull(segments);
+        File last = segments[0];
+        for (File segment : segments) {
+            if (segment.getName().compareTo(last.getName()) > 0) {
+                last = segment;
+            }
+        }
+        try (RandomAccessFile file = new RandomAccessFile(last, "rw")) {
+            file.setLength(file.length() - 3); // Crash mid-write
+        }
+
+        Map<UUID, PlayerStatsSnapshot> replayed = replayFresh();
+        assertTrue(replayed.containsKey(first));
+        assertFalse("Torn entry should not be replayed", replayed.containsKey(second));
+    }
+
+    @Test
+    public void testNewSegmentsFollowReplayedOnes() throws IOException {
+        UUID before = UUID.randomUUID();
+        UUID after = UUID.randomUUID();
+        StatsJournal journal = open();
+        journal.append(image(before, 1, 0L, 0));
+        journal.close(false);
+
+        // Restart without a checkpoint: the new segment must sort after the old one
+        journal = open();
+        journal.append(image(before, 5, 0L, 0));
+        journal.append(image(after, 1, 0L, 0));
+        journal.close(false);
+
+        Map<UUID, PlayerStatsSnapshot> replayed = replayFresh();
+        assertEquals(5, replayed.get(before).fails);
+        assertTrue(replayed.containsKey(after));
+    }
+}
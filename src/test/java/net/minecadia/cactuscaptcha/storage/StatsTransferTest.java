@@ -0,0 +1,225 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for StatsTransfer export and import round trips.
+ */
+public class StatsTransferTest {
+
+    private File folder;
+    private PagedBackend backend;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("cactuscaptcha-transfer").toFile();
+        backend = new PagedBackend();
+        for (int i = 0; i < 25; i++) {
+            UUID uuid = UUID.randomUUID();
+            backend.rows.put(uuid, new PlayerStatsSnapshot(uuid, i * 2, i, i, 1000L + i, 2000L + i, i % 3, i % 5, i, 5000L + i, 1L));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    private void assertRoundTrip(String fileName) throws Exception {
+        File file = new File(folder, fileName);
+        assertEquals(25, new StatsTransfer(file, 10).exportFrom(backend, count -> { }));
+
+        List<PlayerStatsSnapshot> imported = new ArrayList<>();
+        assertEquals(25, new StatsTransfer(file, 7).importTo(imported::addAll, count -> { }));
+        assertEquals(25, imported.size());
+        for (PlayerStatsSnapshot record : imported) {
+            PlayerStatsSnapshot original = backend.rows.get(record.uuid);
+            assertNotNull("Imported player should exist in the source", original);
+            assertEquals(StatsTransfer.toCsv(original), StatsTransfer.toCsv(record));
+        }
+        assertFalse("Finished runs should leave no checkpoint", new File(file.getPath() + ".checkpoint").exists());
+    }
+
+    @Test
+    public void testJsonlRoundTrip() throws Exception {
+        assertRoundTrip("players.jsonl");
+    }
+
+    @Test
+    public void testGzipCsvRoundTrip() throws Exception {
+        assertRoundTrip("players.csv.gz");
+    }
+
+    @Test
+    public void testExportResumesWithoutDuplicates() throws Exception {
+        File file = new File(folder, "players.jsonl.gz");
+        backend.failAfterPages = 2;
+        try {
+            new StatsTransfer(file, 10).exportFrom(backend, count -> { });
+            fail("Export should fail on the third page");
+        } catch (IOException expected) {
+            // Expected
+        }
+        assertTrue(new StatsTransfer(file, 10).hasCheckpoint(true));
+
+        backend.failAfterPages = -1;
+        assertEquals(25, new StatsTransfer(file, 10).exportFrom(backend, count -> { }));
+
+        List<PlayerStatsSnapshot> imported = new ArrayList<>();
+        new StatsTransfer(file, 10).importTo(imported::addAll, count -> { });
+        assertEquals("Resumed export should contain each player once", 25, imported.size());
+    }
+
+    @Test
+    public void testResumedExportSkipsNothingAfterDeletes() throws Exception {
+        File file = new File(folder, "players.jsonl");
+        List<UUID> firstPage = new ArrayList<>(backend.rows.keySet()).subList(0, 3);
+        backend.failAfterPages = 1;
+        try {
+            new StatsTransfer(file, 10).exportFrom(backend, count -> { });
+            fail("Export should fail on the second page");
+        } catch (IOException expected) {
+            // Expected
+        }
+
+        // Players already exported are deleted before the export resumes
+        for (UUID uuid : new ArrayList<>(firstPage)) {
+            backend.rows.remove(uuid);
+        }
+        backend.failAfterPages = -1;
+        assertEquals(25, new StatsTransfer(file, 10).exportFrom(backend, count -> { }));
+
+        List<PlayerStatsSnapshot> imported = new ArrayList<>();
+        new StatsTransfer(file, 10).importTo(imported::addAll, count -> { });
+        assertEquals("Every player should be exported exactly once", 25, imported.size());
+    }
+
+    @Test
+    public void testImportResumesFromCheckpoint() throws Exception {
+        File file = new File(folder, "players.csv");
+        new StatsTransfer(file, 10).exportFrom(backend, count -> { });
+
+        List<PlayerStatsSnapshot> imported = new ArrayList<>();
+        try {
+            new StatsTransfer(file, 10).importTo(batch -> {
+                if (imported.size() >= 10) {
+                    throw new IOException("Injected failure");
+                }
+                imported.addAll(batch);
+            }, count -> { });
+            fail("Import should fail on the second page");
+        } catch (IOException expected) {
+            // Expected
+        }
+
+        assertEquals(25, new StatsTransfer(file, 10).importTo(imported::addAll, count -> { }));
+        assertEquals("Resumed import should skip the committed page", 25, imported.size());
+    }
+
+    @Test
+    public void testUnknownFileTypeIsRejected() {
+        try {
+            new StatsTransfer(new File(folder, "players.txt"), 10);
+            fail("Only .jsonl and .csv files should be accepted");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    /**
+     * In-memory backend serving pages in UUID order, optionally failing after some pages.
+     */
+    private static class PagedBackend implements StorageManager.StorageBackend {
+        final TreeMap<UUID, PlayerStatsSnapshot> rows = new TreeMap<>(UUID_ORDER);
+        int failAfterPages = -1;
+        private int pagesServed;
+
+        @Override
+        public List<StorageManager.PlayerStats> loadPlayerPage(int offset, int limit) throws Exception {
+            if (failAfterPages >= 0 && pagesServed++ >= failAfterPages) {
+                throw new IOException("Injected failure");
+            }
+            List<StorageManager.PlayerStats> page = new ArrayList<>();
+            int index = 0;
+            for (PlayerStatsSnapshot row : rows.values()) {
+                if (index++ >= offset && page.size() < limit) {
+                    page.add(new StorageManager.PlayerStats(row));
+                }
+            }
+            return page;
+        }
+
+        @Override
+        public List<StorageManager.PlayerStats> loadPlayersAfter(UUID after, int limit) throws Exception {
+            if (failAfterPages >= 0 && pagesServed++ >= failAfterPages) {
+                throw new IOException("Injected failure");
+            }
+            List<StorageManager.PlayerStats> page = new ArrayList<>();
+            for (PlayerStatsSnapshot row : (after != null ? rows.tailMap(after, false) : rows).values()) {
+                if (page.size() >= limit) {
+                    break;
+                }
+                page.add(new StorageManager.PlayerStats(row));
+            }
+            return page;
+        }
+
+        @Override
+        public void loadAllData(ConcurrentHashMap<UUID, StorageManager.PlayerStats> playerStats) {
+        }
+
+        @Override
+        public void saveData(Collection<PlayerStatsSnapshot> changed) {
+        }
+
+        @Override
+        public StorageManager.PlayerStats loadPlayerData(UUID uuid) {
+            return null;
+        }
+
+        @Override
+        public int deletePlayers(Collection<UUID> uuids) {
+            return 0;
+        }
+
+        @Override
+        public boolean deletePlayerData(UUID uuid) {
+            return false;
+        }
+
+        @Override
+        public boolean hasPlayerData(UUID uuid) {
+            return rows.containsKey(uuid);
+        }
+
+        @Override
+        public int getStoredPlayerCount() {
+            return rows.size();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
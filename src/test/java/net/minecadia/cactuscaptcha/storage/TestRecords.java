@@ -0,0 +1,19 @@
+package net.minecadia.cactuscaptcha.storage;
+
+import java.util.UUID;
+
+/**
+ * Record fixtures shared by the storage backend tests.
+ */
+final class TestRecords {
+
+    private TestRecords() {
+    }
+
+    /**
+     * A record with every field set, distinguished by its pass count.
+     */
+    static PlayerStatsSnapshot record(UUID uuid, int passes) {
+        return new PlayerStatsSnapshot(uuid, passes + 1, passes, 1, 0L, 5000L, 2, 3, 40, 1000L + passes, 1L);
+    }
+}
@@ -0,0 +1,74 @@
+package net.minecadia.cactuscaptcha.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for PlayerStateRegistry.
+ */
+public class PlayerStateRegistryTest {
+
+    private long now;
+    private PlayerStateRegistry registry;
+    private Map<UUID, Integer> sessionState;
+    private Set<UUID> retainedState;
+    private UUID player;
+
+    @Before
+    public void setUp() {
+        now = 1000000L;
+        registry = new PlayerStateRegistry(() -> now);
+        sessionState = new HashMap<>();
+        retainedState = new HashSet<>();
+        registry.register("session", sessionState);
+        registry.registerRetained("retained", retainedState, 60L);
+
+        player = UUID.randomUUID();
+        sessionState.put(player, 1);
+        retainedState.add(player);
+    }
+
+    @Test
+    public void testQuitPurgesSessionState() {
+        registry.handleQuit(player);
+        assertFalse(sessionState.containsKey(player));
+        assertTrue("Retained state should survive the quit", retainedState.contains(player));
+        assertEquals(Integer.valueOf(1), registry.getPendingExpiries().get("retained"));
+    }
+
+    @Test
+    public void testRetainedStateExpires() {
+        registry.handleQuit(player);
+        now += 59000L;
+        assertEquals(Integer.valueOf(1), registry.getCounts().get("retained"));
+        now += 1000L;
+        assertEquals(Integer.valueOf(0), registry.getCounts().get("retained"));
+    }
+
+    @Test
+    public void testRejoinKeepsRetainedState() {
+        registry.handleQuit(player);
+        now += 30000L;
+        registry.handleJoin(player);
+        now += 3600000L;
+        assertEquals("Long idle gaps should not release online players", Integer.valueOf(1), registry.getCounts().get("retained"));
+        assertEquals(Integer.valueOf(0), registry.getPendingExpiries().get("retained"));
+    }
+
+    @Test
+    public void testCountsPerSubsystem() {
+        sessionState.put(UUID.randomUUID(), 2);
+        Map<String, Integer> counts = registry.getCounts();
+        assertEquals("[session, retained]", counts.keySet().toString());
+        assertEquals(Integer.valueOf(2), counts.get("session"));
+        assertEquals(Integer.valueOf(1), counts.get("retained"));
+    }
+}
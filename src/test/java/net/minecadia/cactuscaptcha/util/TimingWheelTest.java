@@ -0,0 +1,85 @@
+package net.minecadia.cactuscaptcha.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for TimingWheel.
+ */
+public class TimingWheelTest {
+
+    private TimingWheel<String> wheel;
+    private List<String> fired;
+
+    @Before
+    public void setUp() {
+        wheel = new TimingWheel<>(8);
+        fired = new ArrayList<>();
+    }
+
+    private void advance(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            wheel.advance(fired::add);
+        }
+    }
+
+    @Test
+    public void testFiresOnDeadline() {
+        wheel.schedule("a", 3);
+        wheel.schedule("b", 5);
+
+        advance(2);
+        assertTrue("Nothing should fire early", fired.isEmpty());
+        advance(1);
+        assertEquals("[a]", fired.toString());
+        advance(2);
+        assertEquals("[a, b]", fired.toString());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testDelaysLongerThanOneTurn() {
+        wheel.schedule("late", 20); // Wheel has 8 slots
+
+        advance(19);
+        assertTrue("Key should wait for its own turn of the wheel", fired.isEmpty());
+        assertEquals(1, wheel.remainingTicks("late"));
+        advance(1);
+        assertEquals("[late]", fired.toString());
+    }
+
+    @Test
+    public void testRescheduleReplacesAndCancelRemoves() {
+        wheel.schedule("a", 2);
+        wheel.schedule("a", 6);
+        wheel.schedule("b", 2);
+        assertEquals("Rescheduling should not add a second entry", 2, wheel.size());
+        assertTrue(wheel.cancel("b"));
+        assertFalse(wheel.cancel("b"));
+
+        advance(5);
+        assertTrue(fired.isEmpty());
+        advance(1);
+        assertEquals("[a]", fired.toString());
+    }
+
+    @Test
+    public void testCallbackCanReschedule() {
+        wheel.schedule("repeat", 2);
+        for (int i = 0; i < 6; i++) {
+            wheel.advance(key -> {
+                fired.add(key);
+                if (fired.size() < 3) {
+                    wheel.schedule(key, 2);
+                }
+            });
+        }
+        assertEquals("[repeat, repeat, repeat]", fired.toString());
+        assertFalse(wheel.isScheduled("repeat"));
+    }
+}